@@ -0,0 +1,31 @@
+package com.shopease.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Receives evictions published by other nodes and applies them to the local
+ * tier of the matching {@link TwoLevelCache}.
+ */
+@RequiredArgsConstructor
+public class CacheInvalidationListener implements MessageListener {
+
+    private final CacheManager cacheManager;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length != 3 || CacheInvalidationPublisher.NODE_ID.equals(parts[0])) {
+            return;
+        }
+        Cache cache = cacheManager.getCache(parts[1]);
+        if (cache instanceof TwoLevelCache twoLevel) {
+            twoLevel.evictLocal(parts[2]);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.shopease.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.UUID;
+
+/**
+ * Broadcasts cache evictions over Redis pub/sub so that every node drops the
+ * entry from its local tier. Messages are "nodeId|cacheName|key"; a node
+ * ignores its own messages since it has already evicted locally.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class CacheInvalidationPublisher {
+
+    public static final String CHANNEL = "shopease:cache:invalidate";
+    public static final String ALL_KEYS = "*";
+
+    static final String NODE_ID = UUID.randomUUID().toString();
+
+    private final StringRedisTemplate redisTemplate;
+
+    public void publish(String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, NODE_ID + "|" + cacheName + "|" + key);
+        } catch (RuntimeException e) {
+            log.warn("[CacheInvalidation] Could not broadcast eviction of {}::{}: {}", cacheName, key,
+                    e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.shopease.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the invalidation listener subscribed. The container is not started
+ * with the context because an unreachable Redis would abort startup; instead
+ * the subscription is attempted here and retried until it succeeds. While it
+ * is down, local entries are only bounded by their TTL.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CacheInvalidationSubscriber {
+
+    private final RedisMessageListenerContainer cacheInvalidationContainer;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.cache.resubscribe-interval:PT30S}")
+    public void ensureSubscribed() {
+        if (cacheInvalidationContainer.isListening()) {
+            return;
+        }
+        cacheInvalidationContainer.stop();
+        try {
+            cacheInvalidationContainer.start();
+            log.info("[CacheInvalidation] Subscribed to {}", CacheInvalidationPublisher.CHANNEL);
+        } catch (RuntimeException e) {
+            log.warn("[CacheInvalidation] Could not subscribe to {}: {}", CacheInvalidationPublisher.CHANNEL,
+                    e.getMessage());
+        }
+    }
+}
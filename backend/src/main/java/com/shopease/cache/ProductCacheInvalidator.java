@@ -0,0 +1,48 @@
+package com.shopease.cache;
+
+import com.shopease.config.CacheConfig;
+import com.shopease.event.CategoryChangedEvent;
+import com.shopease.event.ProductChangedEvent;
+import com.shopease.event.ProductStockChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Evicts cached product details once a change has committed, so a concurrent
+ * reader cannot re-populate the cache with the pre-commit row.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductCacheInvalidator {
+
+    private final CacheManager cacheManager;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        evict(event.getProduct().getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockChanged(ProductStockChangedEvent event) {
+        event.getProductIds().forEach(this::evict);
+    }
+
+    /** Cached products embed their category, and a category change can touch many of them. */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private void evict(Long productId) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRODUCTS);
+        if (cache != null) {
+            cache.evict(productId);
+        }
+    }
+}
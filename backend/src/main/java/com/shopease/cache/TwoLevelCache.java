@@ -0,0 +1,167 @@
+package com.shopease.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Read-through cache with a bounded in-process tier (L1, Caffeine) in front of
+ * a shared Redis tier (L2). Keys are normalised to strings so they match the
+ * Redis keys and the invalidation messages exchanged between nodes.
+ *
+ * Redis failures are logged and treated as misses, so an outage degrades to
+ * database reads instead of failing requests. Evictions are applied to both
+ * tiers and broadcast so that every node drops its L1 copy.
+ */
+@Slf4j
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+    private final Cache local;
+    private final Cache remote;
+    private final CacheInvalidationPublisher publisher;
+
+    private final Counter l1Hits;
+    private final Counter l2Hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter remoteEvictions;
+    private final Counter l2Errors;
+
+    public TwoLevelCache(String name, Cache local, Cache remote, CacheInvalidationPublisher publisher,
+            MeterRegistry registry) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.publisher = publisher;
+        this.l1Hits = counter(registry, "cache.tier.gets", "result", "hit", "tier", "l1");
+        this.l2Hits = counter(registry, "cache.tier.gets", "result", "hit", "tier", "l2");
+        this.misses = counter(registry, "cache.tier.gets", "result", "miss", "tier", "none");
+        this.evictions = counter(registry, "cache.tier.evictions", "source", "local");
+        this.remoteEvictions = counter(registry, "cache.tier.evictions", "source", "remote");
+        this.l2Errors = counter(registry, "cache.tier.errors", "tier", "l2");
+    }
+
+    private Counter counter(MeterRegistry registry, String metric, String... tags) {
+        return Counter.builder(metric).tag("cache", name).tags(tags).register(registry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String k = String.valueOf(key);
+        ValueWrapper value = local.get(k);
+        if (value != null) {
+            l1Hits.increment();
+            return value;
+        }
+        try {
+            value = remote.get(k);
+        } catch (RuntimeException e) {
+            l2Errors.increment();
+            log.warn("[TwoLevelCache] Redis read failed for {}::{}: {}", name, k, e.getMessage());
+            value = null;
+        }
+        if (value != null) {
+            l2Hits.increment();
+            local.put(k, value.get());
+            return value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        return value != null ? (T) value.get() : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        try {
+            T value = valueLoader.call();
+            put(key, value);
+            return value;
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String k = String.valueOf(key);
+        local.put(k, value);
+        try {
+            remote.put(k, value);
+        } catch (RuntimeException e) {
+            l2Errors.increment();
+            log.warn("[TwoLevelCache] Redis write failed for {}::{}: {}", name, k, e.getMessage());
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = get(key);
+        if (existing != null) {
+            return existing;
+        }
+        put(key, value);
+        return new SimpleValueWrapper(null);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String k = String.valueOf(key);
+        evictions.increment();
+        local.evict(k);
+        try {
+            remote.evict(k);
+        } catch (RuntimeException e) {
+            l2Errors.increment();
+            log.warn("[TwoLevelCache] Redis evict failed for {}::{}: {}", name, k, e.getMessage());
+        }
+        publisher.publish(name, k);
+    }
+
+    @Override
+    public void clear() {
+        local.clear();
+        try {
+            remote.clear();
+        } catch (RuntimeException e) {
+            l2Errors.increment();
+            log.warn("[TwoLevelCache] Redis clear failed for {}: {}", name, e.getMessage());
+        }
+        publisher.publish(name, CacheInvalidationPublisher.ALL_KEYS);
+    }
+
+    /** Applies an invalidation received from another node to the local tier only. */
+    void evictLocal(String key) {
+        remoteEvictions.increment();
+        if (CacheInvalidationPublisher.ALL_KEYS.equals(key)) {
+            local.clear();
+        } else {
+            local.evict(key);
+        }
+    }
+}
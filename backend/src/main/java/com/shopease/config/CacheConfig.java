@@ -0,0 +1,92 @@
+package com.shopease.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shopease.cache.CacheInvalidationListener;
+import com.shopease.cache.CacheInvalidationPublisher;
+import com.shopease.cache.TwoLevelCache;
+import com.shopease.dto.response.ProductDetailsDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class CacheConfig {
+
+    public static final String PRODUCTS = "products";
+
+    @Value("${app.cache.products.local-max-size:10000}")
+    private long productsLocalMaxSize;
+
+    @Value("${app.cache.products.local-ttl:5m}")
+    private Duration productsLocalTtl;
+
+    @Value("${app.cache.products.redis-ttl:30m}")
+    private Duration productsRedisTtl;
+
+    @Bean
+    public CacheInvalidationPublisher cacheInvalidationPublisher(StringRedisTemplate redisTemplate) {
+        return new CacheInvalidationPublisher(redisTemplate);
+    }
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory, ObjectMapper objectMapper,
+            CacheInvalidationPublisher publisher, MeterRegistry meterRegistry) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> productsLocal = Caffeine.newBuilder()
+                .maximumSize(productsLocalMaxSize)
+                .expireAfterWrite(productsLocalTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, productsLocal, PRODUCTS + ".local");
+
+        RedisCacheConfiguration productsRedisConfig = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(productsRedisTtl)
+                .prefixCacheNameWith("shopease:")
+                .disableCachingNullValues()
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        new Jackson2JsonRedisSerializer<>(objectMapper.copy(), ProductDetailsDto.class)));
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .withCacheConfiguration(PRODUCTS, productsRedisConfig)
+                .build();
+        redisCacheManager.initializeCaches();
+        RedisCache productsRemote = (RedisCache) redisCacheManager.getCache(PRODUCTS);
+
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(new TwoLevelCache(PRODUCTS,
+                new CaffeineCache(PRODUCTS, productsLocal, false), productsRemote, publisher, meterRegistry)));
+        return cacheManager;
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationContainer(RedisConnectionFactory connectionFactory,
+            CacheManager cacheManager) {
+        // Started by CacheInvalidationSubscriber so a Redis outage cannot block startup
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+            @Override
+            public boolean isAutoStartup() {
+                return false;
+            }
+        };
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(new CacheInvalidationListener(cacheManager),
+                new ChannelTopic(CacheInvalidationPublisher.CHANNEL));
+        return container;
+    }
+}
@@ -1,6 +1,7 @@
 package com.shopease.controller;
 
 import com.shopease.dto.response.ApiResponse;
+import com.shopease.dto.response.CursorPage;
 import com.shopease.entity.Category;
 import com.shopease.entity.Order;
 import com.shopease.entity.Product;
@@ -8,6 +9,7 @@ import com.shopease.entity.User;
 import com.shopease.repository.OrderRepository;
 import com.shopease.repository.UserRepository;
 import com.shopease.service.CategoryService;
+import com.shopease.service.FlashSaleService;
 import com.shopease.service.OrderService;
 import com.shopease.service.ProductService;
 import lombok.RequiredArgsConstructor;
@@ -31,6 +33,7 @@ public class AdminController {
     private final ProductService productService;
     private final CategoryService categoryService;
     private final OrderService orderService;
+    private final FlashSaleService flashSaleService;
     private final UserRepository userRepository;
     private final OrderRepository orderRepository;
 
@@ -61,6 +64,22 @@ public class AdminController {
         return ResponseEntity.ok(new ApiResponse(true, "Product deleted"));
     }
 
+    /**
+     * POST /api/v1/admin/products/{id}/flash-sale
+     * Moves the product's stock into a Redis counter for a high-traffic sale.
+     */
+    @PostMapping("/products/{id}/flash-sale")
+    public ResponseEntity<ApiResponse> startFlashSale(@PathVariable Long id) {
+        flashSaleService.enable(id);
+        return ResponseEntity.ok(new ApiResponse(true, "Flash sale started"));
+    }
+
+    @DeleteMapping("/products/{id}/flash-sale")
+    public ResponseEntity<ApiResponse> endFlashSale(@PathVariable Long id) {
+        flashSaleService.disable(id);
+        return ResponseEntity.ok(new ApiResponse(true, "Flash sale ended"));
+    }
+
     // --- CATEGORIES ---
     @PostMapping("/categories")
     public ResponseEntity<Category> createCategory(@RequestBody Category category) {
@@ -84,6 +103,13 @@ public class AdminController {
         return ResponseEntity.ok(orderService.getAllOrders(pageable));
     }
 
+    @GetMapping("/orders/scroll")
+    public ResponseEntity<CursorPage<Order>> scrollAllOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(orderService.scrollAllOrders(cursor, size));
+    }
+
     @PutMapping("/orders/{id}/status")
     public ResponseEntity<Order> updateOrderStatus(
             @PathVariable Long id,
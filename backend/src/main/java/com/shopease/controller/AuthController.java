@@ -19,13 +19,17 @@ public class AuthController {
     private final AuthService authService;
 
     @PostMapping("/register")
-    public ResponseEntity<JwtResponse> registerUser(@Valid @RequestBody RegisterRequest signUpRequest) {
-        return new ResponseEntity<>(authService.registerUser(signUpRequest), HttpStatus.CREATED);
+    public ResponseEntity<JwtResponse> registerUser(
+            @Valid @RequestBody RegisterRequest signUpRequest,
+            @RequestHeader(value = GuestCartController.CART_TOKEN_HEADER, required = false) String cartToken) {
+        return new ResponseEntity<>(authService.registerUser(signUpRequest, cartToken), HttpStatus.CREATED);
     }
 
     @PostMapping("/login")
-    public ResponseEntity<JwtResponse> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
-        return ResponseEntity.ok(authService.authenticateUser(loginRequest));
+    public ResponseEntity<JwtResponse> authenticateUser(
+            @Valid @RequestBody LoginRequest loginRequest,
+            @RequestHeader(value = GuestCartController.CART_TOKEN_HEADER, required = false) String cartToken) {
+        return ResponseEntity.ok(authService.authenticateUser(loginRequest, cartToken));
     }
 
     @PostMapping("/logout")
@@ -1,79 +1,90 @@
 package com.shopease.controller;
 
+import com.shopease.dto.request.CartUpdateRequest;
+import com.shopease.dto.response.CartSummary;
 import com.shopease.entity.Cart;
-import com.shopease.entity.User;
-import com.shopease.repository.UserRepository;
+import com.shopease.security.UserDetailsImpl;
 import com.shopease.service.CartService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
 
+/**
+ * Cart endpoints. Line ids ({@code itemId}) are product ids; a line of a
+ * variant is addressed by its product id and the {@code variantId} parameter.
+ */
 @RestController
 @RequestMapping("/api/v1/cart")
 @RequiredArgsConstructor
 public class CartController {
 
     private final CartService cartService;
-    private final UserRepository userRepository;
 
-    private User getUser(UserDetails userDetails) {
-        return userRepository.findByEmail(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    @GetMapping
+    public ResponseEntity<Cart> getCart(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return ResponseEntity.ok(cartService.getCart(userDetails.getId()));
     }
 
-    @GetMapping
-    public ResponseEntity<Cart> getCart(@AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(cartService.getCartByUserId(getUser(userDetails).getId()));
+    /** Applies several line changes at once; either all take effect or none does. */
+    @PatchMapping
+    public ResponseEntity<Cart> updateCart(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @Valid @RequestBody CartUpdateRequest request) {
+        return ResponseEntity.ok(cartService.updateCart(userDetails.getId(), request.getOperations()));
     }
 
+    /** Returns a {@link CartSummary} rather than the whole cart. */
     @PostMapping("/items")
-    public ResponseEntity<Cart> addItemToCart(
-            @AuthenticationPrincipal UserDetails userDetails,
+    public ResponseEntity<CartSummary> addItemToCart(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
             @RequestBody Map<String, Integer> payload) {
 
         Long productId = Long.valueOf(payload.get("productId"));
+        Long variantId = payload.get("variantId") == null ? null : Long.valueOf(payload.get("variantId"));
         int quantity = payload.getOrDefault("quantity", 1);
 
-        return ResponseEntity.ok(cartService.addItemToCart(getUser(userDetails), productId, quantity));
+        return ResponseEntity.ok(cartService.addItemToCart(userDetails.getId(), productId, variantId, quantity));
     }
 
     @PutMapping("/items/{itemId}")
     public ResponseEntity<Cart> updateItemQuantity(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
             @PathVariable Long itemId,
+            @RequestParam(required = false) Long variantId,
             @RequestBody Map<String, Integer> payload) {
 
         int quantity = payload.get("quantity");
-        return ResponseEntity.ok(cartService.updateItemQuantity(getUser(userDetails), itemId, quantity));
+        return ResponseEntity.ok(cartService.updateItemQuantity(userDetails.getId(), itemId, variantId, quantity));
     }
 
     @DeleteMapping("/items/{itemId}")
     public ResponseEntity<Cart> removeItemFromCart(
-            @AuthenticationPrincipal UserDetails userDetails,
-            @PathVariable Long itemId) {
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @PathVariable Long itemId,
+            @RequestParam(required = false) Long variantId) {
 
-        return ResponseEntity.ok(cartService.removeItemFromCart(getUser(userDetails), itemId));
+        return ResponseEntity.ok(cartService.removeItemFromCart(userDetails.getId(), itemId, variantId));
     }
 
     @DeleteMapping
-    public ResponseEntity<Cart> clearCart(@AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(cartService.clearCart(getUser(userDetails)));
+    public ResponseEntity<Cart> clearCart(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return ResponseEntity.ok(cartService.clearCart(userDetails.getId()));
     }
 
     @PostMapping("/coupon")
     public ResponseEntity<Cart> applyCoupon(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
             @RequestBody Map<String, String> payload) {
         String code = payload.get("code");
-        return ResponseEntity.ok(cartService.applyCoupon(getUser(userDetails), code));
+        return ResponseEntity.ok(cartService.applyCoupon(userDetails.getId(), code));
     }
 
     @DeleteMapping("/coupon")
-    public ResponseEntity<Cart> removeCoupon(@AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(cartService.removeCoupon(getUser(userDetails)));
+    public ResponseEntity<Cart> removeCoupon(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return ResponseEntity.ok(cartService.removeCoupon(userDetails.getId()));
     }
 }
@@ -0,0 +1,81 @@
+package com.shopease.controller;
+
+import com.shopease.entity.Cart;
+import com.shopease.service.CartService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cart endpoints for shoppers who are not logged in. The cart is identified
+ * by the {@value #CART_TOKEN_HEADER} header; a request without one starts a
+ * new cart, and every response carries the token to send next time and on
+ * login, when the guest cart is merged into the user's cart.
+ */
+@RestController
+@RequestMapping("/api/v1/cart/guest")
+@RequiredArgsConstructor
+public class GuestCartController {
+
+    public static final String CART_TOKEN_HEADER = "X-Cart-Token";
+
+    private final CartService cartService;
+
+    @GetMapping
+    public ResponseEntity<Cart> getCart(@RequestHeader(value = CART_TOKEN_HEADER, required = false) String token) {
+        String cartToken = tokenOrNew(token);
+        return withToken(cartToken, cartService.getGuestCart(cartToken));
+    }
+
+    @PostMapping("/items")
+    public ResponseEntity<Cart> addItemToCart(
+            @RequestHeader(value = CART_TOKEN_HEADER, required = false) String token,
+            @RequestBody Map<String, Integer> payload) {
+
+        Long productId = Long.valueOf(payload.get("productId"));
+        Long variantId = payload.get("variantId") == null ? null : Long.valueOf(payload.get("variantId"));
+        int quantity = payload.getOrDefault("quantity", 1);
+
+        String cartToken = tokenOrNew(token);
+        return withToken(cartToken, cartService.addItemToGuestCart(cartToken, productId, variantId, quantity));
+    }
+
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<Cart> updateItemQuantity(
+            @RequestHeader(value = CART_TOKEN_HEADER, required = false) String token,
+            @PathVariable Long productId,
+            @RequestParam(required = false) Long variantId,
+            @RequestBody Map<String, Integer> payload) {
+
+        int quantity = payload.get("quantity");
+        String cartToken = tokenOrNew(token);
+        return withToken(cartToken, cartService.updateGuestItemQuantity(cartToken, productId, variantId, quantity));
+    }
+
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<Cart> removeItemFromCart(
+            @RequestHeader(value = CART_TOKEN_HEADER, required = false) String token,
+            @PathVariable Long productId,
+            @RequestParam(required = false) Long variantId) {
+
+        String cartToken = tokenOrNew(token);
+        return withToken(cartToken, cartService.removeItemFromGuestCart(cartToken, productId, variantId));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Cart> clearCart(@RequestHeader(value = CART_TOKEN_HEADER, required = false) String token) {
+        String cartToken = tokenOrNew(token);
+        return withToken(cartToken, cartService.clearGuestCart(cartToken));
+    }
+
+    private static String tokenOrNew(String token) {
+        return token == null || token.isBlank() ? UUID.randomUUID().toString() : token;
+    }
+
+    private static ResponseEntity<Cart> withToken(String token, Cart cart) {
+        return ResponseEntity.ok().header(CART_TOKEN_HEADER, token).body(cart);
+    }
+}
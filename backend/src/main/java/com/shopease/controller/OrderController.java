@@ -1,8 +1,11 @@
 package com.shopease.controller;
 
+import com.shopease.dto.response.CursorPage;
+import com.shopease.dto.response.OrderDto;
 import com.shopease.entity.Order;
 import com.shopease.entity.User;
 import com.shopease.repository.UserRepository;
+import com.shopease.service.IdempotencyService;
 import com.shopease.service.OrderService;
 import com.shopease.service.PaymentService;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +27,7 @@ public class OrderController {
     private final OrderService orderService;
     private final PaymentService paymentService;
     private final UserRepository userRepository;
+    private final IdempotencyService idempotencyService;
 
     private User getUser(UserDetails userDetails) {
         return userRepository.findByEmail(userDetails.getUsername())
@@ -31,15 +35,18 @@ public class OrderController {
     }
 
     @PostMapping
-    public ResponseEntity<Order> placeOrder(
+    public ResponseEntity<?> placeOrder(
             @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
             @RequestBody Map<String, Object> payload) {
 
         Long addressId = Long.valueOf(payload.get("addressId").toString());
         String notes = payload.containsKey("notes") ? payload.get("notes").toString() : null;
 
-        Order order = paymentService.placeOrderFromCart(getUser(userDetails), addressId, notes);
-        return new ResponseEntity<>(order, HttpStatus.CREATED);
+        return idempotencyService.execute(userDetails.getUsername(), "orders.place", idempotencyKey, payload, () -> {
+            Order order = paymentService.placeOrderFromCart(getUser(userDetails), addressId, notes);
+            return new ResponseEntity<>(OrderDto.of(order), HttpStatus.CREATED);
+        });
     }
 
     @GetMapping
@@ -50,6 +57,15 @@ public class OrderController {
         return ResponseEntity.ok(orderService.getUserOrders(getUser(userDetails).getId(), pageable));
     }
 
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<Order>> scrollUserOrders(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+
+        return ResponseEntity.ok(orderService.scrollUserOrders(getUser(userDetails).getId(), cursor, size));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Order> getOrderById(@PathVariable Long id) {
         return ResponseEntity.ok(orderService.getOrderById(id));
@@ -1,9 +1,14 @@
 package com.shopease.controller;
 
+import com.shopease.dto.response.PaymentDto;
 import com.shopease.entity.Payment;
+import com.shopease.service.IdempotencyService;
 import com.shopease.service.PaymentService;
+import com.shopease.service.PaymentWebhookService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -14,11 +19,17 @@ import java.util.Map;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
+    private final PaymentWebhookService paymentWebhookService;
 
     @PostMapping("/initiate")
-    public ResponseEntity<Payment> initiatePayment(@RequestBody Map<String, Long> payload) {
+    public ResponseEntity<?> initiatePayment(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody Map<String, Long> payload) {
         Long orderId = payload.get("orderId");
-        return ResponseEntity.ok(paymentService.createRazorpayOrder(orderId));
+        return idempotencyService.execute(userDetails.getUsername(), "payments.initiate", idempotencyKey, payload,
+                () -> ResponseEntity.ok(PaymentDto.of(paymentService.createRazorpayOrder(orderId))));
     }
 
     @PostMapping("/verify")
@@ -31,4 +42,14 @@ public class PaymentController {
         return ResponseEntity
                 .ok(paymentService.verifyPayment(orderId, razorpayOrderId, razorpayPaymentId, razorpaySignature));
     }
+
+    @PostMapping("/webhook")
+    public ResponseEntity<Void> receiveWebhook(
+            @RequestHeader(value = PaymentWebhookService.SIGNATURE_HEADER, required = false) String signature,
+            @RequestHeader(value = PaymentWebhookService.EVENT_ID_HEADER, required = false) String eventId,
+            @RequestBody String body) {
+        // Acknowledge once stored; the event is applied asynchronously
+        paymentWebhookService.receive(body, signature, eventId);
+        return ResponseEntity.ok().build();
+    }
 }
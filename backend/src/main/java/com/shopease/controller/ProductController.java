@@ -1,6 +1,13 @@
 package com.shopease.controller;
 
-import com.shopease.entity.Product;
+import com.shopease.dto.request.ProductFilterRequest;
+import com.shopease.dto.response.CursorPage;
+import com.shopease.dto.response.FacetedProductsResponse;
+import com.shopease.dto.response.ProductDetailsDto;
+import com.shopease.dto.response.ProductSummaryDto;
+import com.shopease.dto.response.SuggestionDto;
+import com.shopease.search.ProductSearchResult;
+import com.shopease.search.ProductSuggester;
 import com.shopease.service.ProductService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -9,27 +16,73 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/v1/products")
 @RequiredArgsConstructor
 public class ProductController {
 
+    public static final String SEARCH_SUGGESTION_HEADER = "X-Search-Suggestion";
+
     private final ProductService productService;
+    private final ProductSuggester productSuggester;
 
     @GetMapping
-    public ResponseEntity<Page<Product>> getAllProducts(
+    public ResponseEntity<Page<ProductSummaryDto>> getAllProducts(
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) BigDecimal minPrice,
             @RequestParam(required = false) BigDecimal maxPrice,
             @RequestParam(required = false) String search,
             Pageable pageable) {
 
-        return ResponseEntity.ok(productService.getProducts(categoryId, minPrice, maxPrice, search, pageable));
+        ProductSearchResult result = productService.getProducts(categoryId, minPrice, maxPrice, search, pageable);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result.getSuggestion() != null) {
+            // "Did you mean" for misspelled searches; URL-encoded so it is header-safe
+            response.header(SEARCH_SUGGESTION_HEADER,
+                    URLEncoder.encode(result.getSuggestion(), StandardCharsets.UTF_8));
+        }
+        return response.body(result.getPage());
+    }
+
+    /**
+     * GET /api/v1/products/scroll?cursor=&size=
+     * Keyset-paginated listing of active products, newest first. No count query.
+     */
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<ProductSummaryDto>> scrollProducts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(productService.scrollProducts(cursor, size));
+    }
+
+    /**
+     * GET /api/v1/products/faceted
+     * Same filters as the listing plus minRating/size/color, with category,
+     * price, rating and variant facet counts for the whole result set.
+     */
+    @GetMapping("/faceted")
+    public ResponseEntity<FacetedProductsResponse> getFacetedProducts(ProductFilterRequest filter,
+            Pageable pageable) {
+        return ResponseEntity.ok(productService.getFacetedProducts(filter, pageable));
+    }
+
+    /**
+     * GET /api/v1/products/suggest?q=
+     * Autocomplete over product names, categories and SKUs. Served from memory.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionDto>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(productSuggester.suggest(q, limit));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable Long id) {
-        return ResponseEntity.ok(productService.getProductById(id));
+    public ResponseEntity<ProductDetailsDto> getProductById(@PathVariable Long id) {
+        return ResponseEntity.ok(productService.getProductDetails(id));
     }
 }
@@ -1,7 +1,7 @@
 package com.shopease.controller;
 
 import com.shopease.entity.ProductVariant;
-import com.shopease.repository.ProductVariantRepository;
+import com.shopease.service.VariantIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,14 +13,23 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ProductVariantController {
 
-    private final ProductVariantRepository variantRepository;
+    private final VariantIndex variantIndex;
 
     /**
      * GET /api/v1/products/{id}/variants
-     * Returns all active variants for a product (size, color, price override).
+     * Returns all active variants for a product (size, color, price override),
+     * or with {@code size} and/or {@code color} the one variant matching them.
+     * Served from {@link VariantIndex}, so stock may lag by up to its refresh
+     * interval.
      */
     @GetMapping("/{id}/variants")
-    public ResponseEntity<List<ProductVariant>> getVariants(@PathVariable Long id) {
-        return ResponseEntity.ok(variantRepository.findByProductIdAndActiveTrue(id));
+    public ResponseEntity<List<ProductVariant>> getVariants(
+            @PathVariable Long id,
+            @RequestParam(required = false) String size,
+            @RequestParam(required = false) String color) {
+        if (size == null && color == null) {
+            return ResponseEntity.ok(variantIndex.variantsOf(id));
+        }
+        return ResponseEntity.ok(variantIndex.find(id, size, color).map(List::of).orElse(List.of()));
     }
 }
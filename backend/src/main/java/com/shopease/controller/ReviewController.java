@@ -1,5 +1,6 @@
 package com.shopease.controller;
 
+import com.shopease.dto.response.CursorPage;
 import com.shopease.entity.Review;
 import com.shopease.entity.User;
 import com.shopease.repository.UserRepository;
@@ -35,6 +36,14 @@ public class ReviewController {
         return ResponseEntity.ok(reviewService.getProductReviews(productId, pageable));
     }
 
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<Review>> scrollProductReviews(
+            @PathVariable Long productId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(reviewService.scrollProductReviews(productId, cursor, size));
+    }
+
     @PostMapping
     public ResponseEntity<Review> addReview(
             @AuthenticationPrincipal UserDetails userDetails,
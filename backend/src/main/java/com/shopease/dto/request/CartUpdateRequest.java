@@ -0,0 +1,49 @@
+package com.shopease.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Several cart changes applied together, in order: either all of them take
+ * effect or none does.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartUpdateRequest {
+
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 100, message = "At most 100 operations per request")
+    private List<@Valid @NotNull Operation> operations;
+
+    public enum Type {
+        /** Adds {@code quantity} to the line, creating it if needed. */
+        ADD,
+        /** Sets the quantity of an existing line; 0 removes it. */
+        UPDATE,
+        REMOVE
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Operation {
+        @NotNull(message = "Operation type is required")
+        private Type type;
+
+        @NotNull(message = "Product id is required")
+        private Long productId;
+
+        /** Null for the product itself. */
+        private Long variantId;
+
+        private Integer quantity;
+    }
+}
@@ -0,0 +1,19 @@
+package com.shopease.dto.request;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Query parameters accepted by GET /api/v1/products/faceted.
+ */
+@Data
+public class ProductFilterRequest {
+    private Long categoryId;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private String search;
+    private Integer minRating; // 1–5, "and up"
+    private String size;
+    private String color;
+}
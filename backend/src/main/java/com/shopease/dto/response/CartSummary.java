@@ -0,0 +1,26 @@
+package com.shopease.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/** What adding to the cart returns: the changed line and the cart's size, without product details. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummary {
+    private Long cartId;
+    private Long productId;
+    /** Null for a product sold without variants. */
+    private Long variantId;
+    /** Quantity of the line now in the cart. */
+    private int quantity;
+    private int lineCount;
+    private int totalQuantity;
+    /** Null when it is not known without pricing the whole cart. */
+    private BigDecimal subtotal;
+}
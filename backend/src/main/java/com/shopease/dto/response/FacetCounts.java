@@ -0,0 +1,15 @@
+package com.shopease.dto.response;
+
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+public class FacetCounts {
+    private Map<Long, Long> categories = new LinkedHashMap<>(); // category id -> products
+    private Map<String, Long> priceRanges = new LinkedHashMap<>(); // "500-1000" -> products
+    private Map<Integer, Long> ratings = new LinkedHashMap<>(); // 4 -> products rated 4 and up
+    private Map<String, Long> sizes = new LinkedHashMap<>();
+    private Map<String, Long> colors = new LinkedHashMap<>();
+}
@@ -0,0 +1,14 @@
+package com.shopease.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.web.PagedModel;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetedProductsResponse {
+    private PagedModel<ProductSummaryDto> products;
+    private FacetCounts facets;
+}
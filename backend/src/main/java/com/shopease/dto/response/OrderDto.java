@@ -0,0 +1,44 @@
+package com.shopease.dto.response;
+
+import com.shopease.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * What placing an order returns. Built from the order's own columns and
+ * lines only, so it serializes without the entity graph and can be stored
+ * as an idempotent response.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderDto {
+    private Long id;
+    private String status;
+    private BigDecimal totalAmount;
+    private BigDecimal discountAmount;
+    private Long shippingAddressId;
+    private String notes;
+    private List<OrderItemDto> items;
+    private LocalDateTime orderedAt;
+
+    public static OrderDto of(Order order) {
+        return OrderDto.builder()
+                .id(order.getId())
+                .status(order.getStatus().name())
+                .totalAmount(order.getTotalAmount())
+                .discountAmount(order.getDiscountAmount())
+                .shippingAddressId(order.getShippingAddress() != null ? order.getShippingAddress().getId() : null)
+                .notes(order.getNotes())
+                .items(order.getItems().stream().map(OrderItemDto::of).toList())
+                .orderedAt(order.getOrderedAt())
+                .build();
+    }
+}
@@ -0,0 +1,39 @@
+package com.shopease.dto.response;
+
+import com.shopease.entity.OrderItem;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/** An order line as captured at order time. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderItemDto {
+    private Long id;
+    /** Null once the product has been deleted. */
+    private Long productId;
+    private String productName;
+    private String productImageUrl;
+    private String variantLabel;
+    private int quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal subtotal;
+
+    public static OrderItemDto of(OrderItem item) {
+        return OrderItemDto.builder()
+                .id(item.getId())
+                .productId(item.getProduct() != null ? item.getProduct().getId() : null)
+                .productName(item.getProductName())
+                .productImageUrl(item.getProductImageUrl())
+                .variantLabel(item.getVariantLabel())
+                .quantity(item.getQuantity())
+                .unitPrice(item.getUnitPrice())
+                .subtotal(item.getSubtotal())
+                .build();
+    }
+}
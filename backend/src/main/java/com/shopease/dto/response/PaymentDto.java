@@ -0,0 +1,34 @@
+package com.shopease.dto.response;
+
+import com.shopease.entity.Payment;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/** What initiating a payment returns: the gateway order the client pays against. */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentDto {
+    private Long id;
+    private Long orderId;
+    private String razorpayOrderId;
+    private BigDecimal amount;
+    private String currency;
+    private String status;
+
+    public static PaymentDto of(Payment payment) {
+        return PaymentDto.builder()
+                .id(payment.getId())
+                .orderId(payment.getOrder().getId())
+                .razorpayOrderId(payment.getRazorpayOrderId())
+                .amount(payment.getAmount())
+                .currency(payment.getCurrency())
+                .status(payment.getStatus().name())
+                .build();
+    }
+}
@@ -0,0 +1,105 @@
+package com.shopease.dto.response;
+
+import com.shopease.entity.Category;
+import com.shopease.entity.Product;
+import com.shopease.entity.ProductImage;
+import com.shopease.entity.ProductVariant;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Product detail view held by the products cache. Immutable, so the instance
+ * shared through the in-process tier cannot be changed by a caller, and
+ * written to Redis as plain JSON with the same shape the entity was rendered in.
+ */
+public record ProductDetailsDto(
+        Long id,
+        String sku,
+        String name,
+        String description,
+        BigDecimal price,
+        BigDecimal salePrice,
+        int stockQuantity,
+        CategoryDto category,
+        List<ImageDto> images,
+        List<VariantDto> variants,
+        BigDecimal averageRating,
+        int reviewCount,
+        boolean active,
+        boolean flashSale,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    public ProductDetailsDto {
+        images = images == null ? List.of() : List.copyOf(images);
+        variants = variants == null ? List.of() : List.copyOf(variants);
+    }
+
+    public record CategoryDto(Long id, String name, String slug, String description, String imageUrl,
+            LocalDateTime createdAt) {
+    }
+
+    public record ImageDto(Long id, String imageUrl, boolean primary, int sortOrder) {
+    }
+
+    public record VariantDto(Long id, String size, String color, String skuSuffix, int stockQuantity,
+            BigDecimal priceOverride, boolean active, LocalDateTime createdAt) {
+    }
+
+    /** Reads the product and its category, images and variants; call inside the loading transaction. */
+    public static ProductDetailsDto of(Product product) {
+        Category category = product.getCategory();
+        return new ProductDetailsDto(product.getId(), product.getSku(), product.getName(), product.getDescription(),
+                product.getPrice(), product.getSalePrice(), product.getStockQuantity(),
+                category == null ? null : new CategoryDto(category.getId(), category.getName(), category.getSlug(),
+                        category.getDescription(), category.getImageUrl(), category.getCreatedAt()),
+                product.getImages().stream()
+                        .map(image -> new ImageDto(image.getId(), image.getImageUrl(), image.isPrimary(),
+                                image.getSortOrder()))
+                        .toList(),
+                product.getVariants().stream()
+                        .map(variant -> new VariantDto(variant.getId(), variant.getSize(), variant.getColor(),
+                                variant.getSkuSuffix(), variant.getStockQuantity(), variant.getPriceOverride(),
+                                variant.isActive(), variant.getCreatedAt()))
+                        .toList(),
+                product.getAverageRating(), product.getReviewCount(), product.isActive(), product.isFlashSale(),
+                product.getCreatedAt(), product.getUpdatedAt());
+    }
+
+    /**
+     * A detached entity built from this view, for code that prices or renders
+     * through {@link Product}. Each call returns a new instance.
+     */
+    public Product toProduct() {
+        Product product = Product.builder()
+                .id(id).sku(sku).name(name).description(description)
+                .price(price).salePrice(salePrice).stockQuantity(stockQuantity)
+                .category(category == null ? null : Category.builder()
+                        .id(category.id()).name(category.name()).slug(category.slug())
+                        .description(category.description()).imageUrl(category.imageUrl())
+                        .createdAt(category.createdAt())
+                        .build())
+                .averageRating(averageRating).reviewCount(reviewCount)
+                .active(active).flashSale(flashSale)
+                .createdAt(createdAt).updatedAt(updatedAt)
+                .build();
+        List<ProductImage> productImages = new ArrayList<>(images.size());
+        for (ImageDto image : images) {
+            productImages.add(ProductImage.builder().id(image.id()).product(product).imageUrl(image.imageUrl())
+                    .isPrimary(image.primary()).sortOrder(image.sortOrder()).build());
+        }
+        List<ProductVariant> productVariants = new ArrayList<>(variants.size());
+        for (VariantDto variant : variants) {
+            productVariants.add(ProductVariant.builder().id(variant.id()).product(product).size(variant.size())
+                    .color(variant.color()).skuSuffix(variant.skuSuffix()).stockQuantity(variant.stockQuantity())
+                    .priceOverride(variant.priceOverride()).active(variant.active()).createdAt(variant.createdAt())
+                    .build());
+        }
+        product.setImages(productImages);
+        product.setVariants(productVariants);
+        return product;
+    }
+}
@@ -0,0 +1,30 @@
+package com.shopease.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Listing view of a product, built by constructor projections in
+ * ProductRepository so a page is read without touching the entity graph.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSummaryDto {
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private BigDecimal salePrice;
+    private String imageUrl; // primary image, else the first by sort order
+    private BigDecimal averageRating;
+    private int reviewCount;
+    private boolean inStock;
+    private String categoryName;
+    @JsonIgnore
+    private LocalDateTime createdAt; // sort key of keyset pages
+}
@@ -0,0 +1,17 @@
+package com.shopease.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockShortageDto {
+    private Long productId;
+    /** Null when the shortage is of the product itself. */
+    private Long variantId;
+    private String productName;
+    private int requested;
+    private int available;
+}
@@ -0,0 +1,14 @@
+package com.shopease.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDto {
+    private String type; // PRODUCT, CATEGORY or SKU
+    private Long id;
+    private String text;
+}
@@ -11,6 +11,7 @@ import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.shopease.pricing.CartTotals;
 
 @Entity
 @Table(name = "carts")
@@ -42,4 +43,8 @@ public class Cart {
 
     @LastModifiedDate
     private LocalDateTime updatedAt;
+
+    /** Subtotal, discount and total; filled in on carts returned by CartService. */
+    @Transient
+    private CartTotals totals;
 }
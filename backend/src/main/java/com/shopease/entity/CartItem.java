@@ -7,7 +7,7 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 
 @Entity
 @Table(name = "cart_items", uniqueConstraints = {
-        @UniqueConstraint(columnNames = { "cart_id", "product_id" })
+        @UniqueConstraint(name = "cart_items_line_key", columnNames = { "cart_id", "product_id", "variant_id" })
 })
 @Getter
 @Setter
@@ -29,6 +29,22 @@ public class CartItem {
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
 
+    /** Null for a line of the product itself. */
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "variant_id")
+    private ProductVariant variant;
+
     @Column(nullable = false)
     private int quantity = 1;
+
+    /**
+     * Unique within a cart, unlike {@code id} in cart responses (the product
+     * id): the product id, or {@code productId:variantId} for a variant.
+     */
+    public String getLineId() {
+        if (product == null) {
+            return null;
+        }
+        return variant == null ? product.getId().toString() : product.getId() + ":" + variant.getId();
+    }
 }
@@ -44,6 +44,11 @@ public class Category {
     @JsonIgnore
     private Category parent;
 
+    // Materialized path "/<root id>/.../<id>/", maintained by CategoryService
+    @Column(length = 1000)
+    @JsonIgnore
+    private String path;
+
     @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL)
     @Builder.Default
     private List<Category> subcategories = new ArrayList<>();
@@ -1,5 +1,6 @@
 package com.shopease.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -26,6 +27,11 @@ public class OrderItem {
     @JoinColumn(name = "product_id")
     private Product product;
 
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "variant_id")
+    private ProductVariant variant;
+
     // Snapshot fields (preserve at order time)
     @Column(nullable = false, length = 200)
     private String productName;
@@ -33,6 +39,9 @@ public class OrderItem {
     @Column(length = 500)
     private String productImageUrl;
 
+    @Column(length = 120)
+    private String variantLabel;
+
     @Column(nullable = false)
     private int quantity;
 
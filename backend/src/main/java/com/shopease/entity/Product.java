@@ -2,6 +2,7 @@ package com.shopease.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -17,6 +18,9 @@ import java.util.List;
 @Entity
 @Table(name = "products")
 @EntityListeners(AuditingEntityListener.class)
+// Only write changed columns: stock is adjusted by InventoryService with relative
+// updates, and a full-row update from e.g. a rating change would overwrite it
+@DynamicUpdate
 @Getter
 @Setter
 @NoArgsConstructor
@@ -74,6 +78,10 @@ public class Product {
     @Column(nullable = false)
     private boolean active = true;
 
+    // Stock held in Redis while set; see FlashSaleService
+    @Column(nullable = false)
+    private boolean flashSale = false;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -1,5 +1,6 @@
 package com.shopease.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -22,6 +23,7 @@ public class ProductVariant {
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
+    @JsonIgnore
     private Product product;
 
     @Column(length = 50)
@@ -45,4 +47,16 @@ public class ProductVariant {
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
+
+    /** Size and color as shown to shoppers, e.g. "M / Black". */
+    public String label() {
+        return label(size, color);
+    }
+
+    public static String label(String size, String color) {
+        if (size == null || color == null) {
+            return size != null ? size : color;
+        }
+        return size + " / " + color;
+    }
 }
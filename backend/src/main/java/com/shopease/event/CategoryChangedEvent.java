@@ -0,0 +1,16 @@
+package com.shopease.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published by CategoryService whenever a category is created, updated or
+ * deleted. Listeners should subscribe with @TransactionalEventListener so
+ * they only see committed state.
+ */
+@Getter
+@RequiredArgsConstructor
+public class CategoryChangedEvent {
+
+    private final Long categoryId;
+}
@@ -0,0 +1,22 @@
+package com.shopease.event;
+
+import com.shopease.entity.Product;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published by ProductService whenever a product is created, updated or
+ * soft-deleted. Listeners should subscribe with @TransactionalEventListener so
+ * they only see committed state.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProductChangedEvent {
+
+    private final Product product;
+    private final Type type;
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+}
@@ -0,0 +1,16 @@
+package com.shopease.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published when what a product is charged changes: its price or sale price
+ * is edited, or it stops being sold. Cart totals computed at the old price
+ * are stale from then on.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProductPriceChangedEvent {
+
+    private final Long productId;
+}
@@ -0,0 +1,17 @@
+package com.shopease.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+
+/**
+ * Published when stock levels change outside ProductService (checkout,
+ * cancellation restock). Only caches that expose stock need to react.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProductStockChangedEvent {
+
+    private final Collection<Long> productIds;
+}
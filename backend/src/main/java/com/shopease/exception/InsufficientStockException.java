@@ -0,0 +1,21 @@
+package com.shopease.exception;
+
+import com.shopease.dto.response.StockShortageDto;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Thrown when one or more lines of a checkout cannot be reserved. Carries
+ * every failing line so the client can fix the whole cart at once.
+ */
+@Getter
+public class InsufficientStockException extends BadRequestException {
+
+    private final List<StockShortageDto> shortages;
+
+    public InsufficientStockException(List<StockShortageDto> shortages) {
+        super("Not enough stock for " + shortages.size() + " item(s) in your cart");
+        this.shortages = shortages;
+    }
+}
@@ -0,0 +1,166 @@
+package com.shopease.gateway;
+
+import com.shopease.exception.PaymentGatewayException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Timeout, bulkhead and circuit breaker around payment-gateway calls, so a
+ * slow or failing gateway costs callers at most {@code timeout} and cannot
+ * tie up more than {@code max-concurrent-calls} threads.
+ *
+ * Each call runs on its own virtual thread and the caller waits at most the
+ * timeout. The bulkhead permit is held until the underlying call really
+ * returns, so calls abandoned after a timeout still count against the limit.
+ * Timeouts and errors feed the {@link CircuitBreaker}; while it is open,
+ * calls fail immediately with a {@link PaymentGatewayException}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GatewayGuard {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.razorpay.resilience.timeout:5s}")
+    private Duration timeout;
+
+    @Value("${app.razorpay.resilience.max-concurrent-calls:20}")
+    private int maxConcurrentCalls;
+
+    @Value("${app.razorpay.resilience.window-size:20}")
+    private int windowSize;
+
+    @Value("${app.razorpay.resilience.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${app.razorpay.resilience.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${app.razorpay.resilience.open-duration:30s}")
+    private Duration openDuration;
+
+    @Value("${app.razorpay.resilience.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private Semaphore bulkhead;
+    private CircuitBreaker breaker;
+
+    @PostConstruct
+    public void init() {
+        bulkhead = new Semaphore(maxConcurrentCalls);
+        breaker = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openDuration, halfOpenCalls);
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("payments.gateway.circuit.state", breaker, b -> b.state() == state ? 1 : 0)
+                    .description("1 for the circuit breaker's current state, 0 otherwise")
+                    .tag("state", state.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("payments.gateway.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Gateway calls that can still start before the bulkhead rejects")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs {@code call} under the gateway policies.
+     *
+     * @param operation metric tag naming the gateway operation
+     * @throws PaymentGatewayException if the call is rejected, times out or fails
+     */
+    public <T> T call(String operation, Callable<T> call) {
+        if (!bulkhead.tryAcquire()) {
+            reject(operation, "bulkhead_full");
+            throw new PaymentGatewayException("Payment gateway is busy, please retry shortly");
+        }
+        if (!breaker.tryAcquire()) {
+            bulkhead.release();
+            reject(operation, "circuit_open");
+            throw new PaymentGatewayException("Payment gateway is unavailable, please retry shortly");
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                try {
+                    return call.call();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            breaker.onFailure();
+            throw new PaymentGatewayException("Payment gateway client is shutting down", e);
+        }
+
+        try {
+            T result = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            breaker.onSuccess();
+            record(sample, operation, "success");
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            breaker.onFailure();
+            record(sample, operation, "timeout");
+            log.warn("[GatewayGuard] {} timed out after {}", operation, timeout);
+            throw new PaymentGatewayException("Payment gateway did not respond in time");
+        } catch (ExecutionException e) {
+            breaker.onFailure();
+            record(sample, operation, "error");
+            if (e.getCause() instanceof PaymentGatewayException gatewayError) {
+                throw gatewayError;
+            }
+            throw new PaymentGatewayException("Payment gateway call failed: " + e.getCause().getMessage(),
+                    e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            breaker.onFailure();
+            record(sample, operation, "interrupted");
+            throw new PaymentGatewayException("Interrupted while waiting for the payment gateway", e);
+        }
+    }
+
+    private void record(Timer.Sample sample, String operation, String outcome) {
+        sample.stop(Timer.builder("payments.gateway.requests")
+                .description("Payment gateway round-trips")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private void reject(String operation, String reason) {
+        Counter.builder("payments.gateway.rejected")
+                .description("Gateway calls failed fast without reaching the gateway")
+                .tag("operation", operation)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+}
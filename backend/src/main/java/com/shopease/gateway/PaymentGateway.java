@@ -0,0 +1,29 @@
+package com.shopease.gateway;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * The payment provider as PaymentService sees it. Calls are made through
+ * {@link GatewayGuard}, never directly.
+ */
+public interface PaymentGateway {
+
+    /** @return false in development, when no gateway credentials are set */
+    boolean isConfigured();
+
+    /**
+     * Creates a gateway order the customer pays against.
+     *
+     * @param receipt our reference for the order, shown in the gateway dashboard
+     * @return the gateway's order id
+     */
+    String createOrder(BigDecimal amount, String currency, String receipt);
+
+    /**
+     * Looks up the payments made against a gateway order.
+     *
+     * @return the id of the captured payment, or empty if none was captured
+     */
+    Optional<String> findCapturedPayment(String gatewayOrderId);
+}
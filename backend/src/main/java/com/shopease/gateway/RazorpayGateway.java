@@ -0,0 +1,70 @@
+package com.shopease.gateway;
+
+import com.razorpay.RazorpayClient;
+import com.razorpay.RazorpayException;
+import com.shopease.exception.PaymentGatewayException;
+import jakarta.annotation.PostConstruct;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+@Component
+public class RazorpayGateway implements PaymentGateway {
+
+    @Value("${app.razorpay.key-id}")
+    private String keyId;
+
+    @Value("${app.razorpay.key-secret}")
+    private String keySecret;
+
+    private RazorpayClient razorpayClient;
+
+    @PostConstruct
+    public void init() {
+        if (keyId != null && !keyId.isEmpty() && keySecret != null && !keySecret.isEmpty()) {
+            try {
+                razorpayClient = new RazorpayClient(keyId, keySecret);
+            } catch (RazorpayException e) {
+                throw new RuntimeException("Could not initialize Razorpay SDK", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return razorpayClient != null;
+    }
+
+    @Override
+    public String createOrder(BigDecimal amount, String currency, String receipt) {
+        JSONObject options = new JSONObject();
+        // Razorpay considers amount in paise (multiply by 100)
+        options.put("amount", amount.multiply(new BigDecimal("100")).intValue());
+        options.put("currency", currency);
+        options.put("receipt", receipt);
+        try {
+            com.razorpay.Order razorpayOrder = razorpayClient.orders.create(options);
+            return razorpayOrder.get("id");
+        } catch (RazorpayException e) {
+            throw new PaymentGatewayException("Error creating Razorpay order: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<String> findCapturedPayment(String gatewayOrderId) {
+        try {
+            for (com.razorpay.Payment payment : razorpayClient.orders.fetchPayments(gatewayOrderId)) {
+                if ("captured".equals(payment.get("status"))) {
+                    return Optional.of(payment.get("id"));
+                }
+            }
+            return Optional.empty();
+        } catch (RazorpayException e) {
+            throw new PaymentGatewayException("Error fetching payments for Razorpay order " + gatewayOrderId
+                    + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.shopease.pricing;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+/** Cart amounts in paise, serialized in rupees like every other amount in the API. */
+public record CartTotals(@JsonIgnore long subtotalPaise, @JsonIgnore long discountPaise) {
+
+    public long totalPaise() {
+        return subtotalPaise - discountPaise;
+    }
+
+    @JsonProperty("subtotal")
+    public BigDecimal subtotal() {
+        return PricingEngine.toRupees(subtotalPaise);
+    }
+
+    @JsonProperty("discount")
+    public BigDecimal discount() {
+        return PricingEngine.toRupees(discountPaise);
+    }
+
+    @JsonProperty("total")
+    public BigDecimal total() {
+        return PricingEngine.toRupees(totalPaise());
+    }
+}
@@ -0,0 +1,79 @@
+package com.shopease.pricing;
+
+import com.shopease.entity.Coupon;
+import com.shopease.entity.Product;
+import com.shopease.entity.ProductVariant;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The one place cart and order amounts are computed. Amounts are whole paise
+ * in a {@code long}; rupee {@link BigDecimal}s are converted on the way in and
+ * out only, so sums never accumulate scale or rounding.
+ *
+ * A line is charged its variant's price override when it has one, otherwise
+ * the product's sale price when it has one, otherwise its list price. A
+ * coupon applies if it is valid and the subtotal reaches its minimum order
+ * amount; percentage discounts are rounded half-up to the paisa and no
+ * discount exceeds the subtotal.
+ */
+@Component
+public class PricingEngine {
+
+    public long unitPrice(Product product) {
+        return toPaise(product.getSalePrice() != null ? product.getSalePrice() : product.getPrice());
+    }
+
+    /** @param variant null for a product sold without variants */
+    public long unitPrice(Product product, ProductVariant variant) {
+        return variant != null && variant.getPriceOverride() != null
+                ? toPaise(variant.getPriceOverride())
+                : unitPrice(product);
+    }
+
+    public long lineTotal(Product product, int quantity) {
+        return lineTotal(product, null, quantity);
+    }
+
+    public long lineTotal(Product product, ProductVariant variant, int quantity) {
+        return Math.multiplyExact(unitPrice(product, variant), quantity);
+    }
+
+    public boolean qualifies(Coupon coupon, long subtotal) {
+        return coupon != null && coupon.isValid()
+                && (coupon.getMinOrderAmount() == null || subtotal >= toPaise(coupon.getMinOrderAmount()));
+    }
+
+    /** @return the discount {@code coupon} gives on {@code subtotal}, 0 if it does not apply */
+    public long discount(Coupon coupon, long subtotal) {
+        if (!qualifies(coupon, subtotal)) {
+            return 0;
+        }
+        long discount;
+        if ("PERCENTAGE".equalsIgnoreCase(coupon.getDiscountType())) {
+            // Basis points, so 12.5% is 1250 and the division below rounds once
+            long basisPoints = coupon.getDiscountValue().movePointRight(2).setScale(0, RoundingMode.HALF_UP)
+                    .longValueExact();
+            discount = (Math.multiplyExact(subtotal, basisPoints) + 5_000) / 10_000;
+        } else if ("FIXED".equalsIgnoreCase(coupon.getDiscountType())) {
+            discount = toPaise(coupon.getDiscountValue());
+        } else {
+            discount = 0;
+        }
+        return Math.min(discount, subtotal);
+    }
+
+    public CartTotals totals(long subtotal, Coupon coupon) {
+        return new CartTotals(subtotal, discount(coupon, subtotal));
+    }
+
+    public static long toPaise(BigDecimal rupees) {
+        return rupees.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static BigDecimal toRupees(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+}
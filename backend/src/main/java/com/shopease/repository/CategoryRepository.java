@@ -2,6 +2,9 @@ package com.shopease.repository;
 
 import com.shopease.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,6 +14,16 @@ import java.util.Optional;
 public interface CategoryRepository extends JpaRepository<Category, Long> {
     List<Category> findByParentIsNull();
 
+    /** Every category with its parent in one round trip, for building the in-memory tree. */
+    @Query("SELECT c FROM Category c LEFT JOIN FETCH c.parent ORDER BY c.id")
+    List<Category> findAllWithParent();
+
+    /** Re-roots every strict descendant of {@code oldPath} under {@code newPath}. */
+    @Modifying
+    @Query("UPDATE Category c SET c.path = CONCAT(:newPath, SUBSTRING(c.path, LENGTH(:oldPath) + 1)) " +
+            "WHERE c.path LIKE CONCAT(:oldPath, '%') AND c.path <> :oldPath")
+    int movePathPrefix(@Param("oldPath") String oldPath, @Param("newPath") String newPath);
+
     Optional<Category> findBySlug(String slug);
 
     boolean existsBySlug(String slug);
@@ -1,14 +1,46 @@
 package com.shopease.repository;
 
 import com.shopease.entity.Order;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     Page<Order> findByUserId(Long userId, Pageable pageable);
 
     Page<Order> findAllByOrderByOrderedAtDesc(Pageable pageable);
+
+    // Keyset pagination: pass PageRequest.of(0, n) to limit rows without a count query
+    @Query("SELECT o FROM Order o ORDER BY o.orderedAt DESC, o.id DESC")
+    List<Order> findFirstPage(Pageable pageable);
+
+    @Query("SELECT o FROM Order o WHERE (o.orderedAt, o.id) < (:orderedAt, :id) ORDER BY o.orderedAt DESC, o.id DESC")
+    List<Order> findAfter(@Param("orderedAt") LocalDateTime orderedAt, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId ORDER BY o.orderedAt DESC, o.id DESC")
+    List<Order> findByUserIdFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT o FROM Order o WHERE o.user.id = :userId AND (o.orderedAt, o.id) < (:orderedAt, :id) " +
+            "ORDER BY o.orderedAt DESC, o.id DESC")
+    List<Order> findByUserIdAfter(@Param("userId") Long userId, @Param("orderedAt") LocalDateTime orderedAt,
+            @Param("id") Long id, Pageable pageable);
+
+    // Serializes payment, status changes and the reservation sweeper on one order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdForUpdate(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.payment.razorpayOrderId = :razorpayOrderId")
+    Optional<Order> findByRazorpayOrderIdForUpdate(@Param("razorpayOrderId") String razorpayOrderId);
 }
@@ -2,6 +2,9 @@ package com.shopease.repository;
 
 import com.shopease.entity.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -11,4 +14,9 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     Optional<Payment> findByOrderId(Long orderId);
 
     Optional<Payment> findByRazorpayOrderId(String razorpayOrderId);
+
+    // First gateway order wins when two initiations for the same order race
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Payment p SET p.razorpayOrderId = :razorpayOrderId WHERE p.id = :id AND p.razorpayOrderId IS NULL")
+    int attachRazorpayOrderId(@Param("id") Long id, @Param("razorpayOrderId") String razorpayOrderId);
 }
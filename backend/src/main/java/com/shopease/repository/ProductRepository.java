@@ -1,14 +1,19 @@
 package com.shopease.repository;
 
+import com.shopease.dto.response.ProductSummaryDto;
 import com.shopease.entity.Product;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,21 +21,142 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
         Page<Product> findByActiveTrue(Pageable pageable);
 
+        // Listing projection: the primary image and category name come from the same
+        // statement, so a page costs one query (plus the count) whatever its size
+        String SUMMARY_SELECT = "SELECT new com.shopease.dto.response.ProductSummaryDto(" +
+                        "p.id, p.name, p.price, p.salePrice, " +
+                        "(SELECT i.imageUrl FROM ProductImage i WHERE i.product = p " +
+                        "  ORDER BY i.isPrimary DESC, i.sortOrder, i.id LIMIT 1), " +
+                        "p.averageRating, p.reviewCount, p.stockQuantity > 0, c.name, p.createdAt) " +
+                        "FROM Product p LEFT JOIN p.category c ";
+
+        @Query(value = SUMMARY_SELECT + "WHERE p.active = true",
+                        countQuery = "SELECT COUNT(p) FROM Product p WHERE p.active = true")
+        Page<ProductSummaryDto> findActiveSummaries(Pageable pageable);
+
+        /** Summaries for the given ids, in no particular order. */
+        @Query(SUMMARY_SELECT + "WHERE p.id IN :ids")
+        List<ProductSummaryDto> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+        List<Product> findAllByActiveTrue();
+
+        // Keyset pagination: pass PageRequest.of(0, n) to limit rows without a count query
+        @Query(SUMMARY_SELECT + "WHERE p.active = true ORDER BY p.createdAt DESC, p.id DESC")
+        List<ProductSummaryDto> findActiveSummariesFirstPage(Pageable pageable);
+
+        @Query(SUMMARY_SELECT + "WHERE p.active = true AND (p.createdAt, p.id) < (:createdAt, :id) " +
+                        "ORDER BY p.createdAt DESC, p.id DESC")
+        List<ProductSummaryDto> findActiveSummariesAfter(@Param("createdAt") LocalDateTime createdAt,
+                        @Param("id") Long id, Pageable pageable);
+
         Page<Product> findByCategoryIdAndActiveTrue(Long categoryId, Pageable pageable);
 
-        @Query("SELECT p FROM Product p WHERE p.active = true " +
-                        "AND (:categoryId IS NULL OR p.category.id = :categoryId) " +
-                        "AND (:minPrice IS NULL OR p.price >= :minPrice) " +
-                        "AND (:maxPrice IS NULL OR p.price <= :maxPrice) " +
+        String FILTER = "WHERE p.active = true " +
+                        "AND (:categoryPath IS NULL OR c.path LIKE CONCAT(:categoryPath, '%')) " +
+                        "AND (:minPrice IS NULL OR COALESCE(p.salePrice, p.price) >= :minPrice) " +
+                        "AND (:maxPrice IS NULL OR COALESCE(p.salePrice, p.price) <= :maxPrice) " +
                         "AND (:search IS NULL OR LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%')) " +
-                        "     OR LOWER(p.description) LIKE LOWER(CONCAT('%', :search, '%')))")
-        Page<Product> findWithFilters(
-                        @Param("categoryId") Long categoryId,
+                        "     OR LOWER(p.description) LIKE LOWER(CONCAT('%', :search, '%')))";
+
+        /**
+         * {@code categoryPath} is the materialized path of a category (V14) and
+         * matches products anywhere in its subtree.
+         */
+        @Query(value = SUMMARY_SELECT + FILTER,
+                        countQuery = "SELECT COUNT(p) FROM Product p LEFT JOIN p.category c " + FILTER)
+        Page<ProductSummaryDto> findSummariesWithFilters(
+                        @Param("categoryPath") String categoryPath,
+                        @Param("minPrice") BigDecimal minPrice,
+                        @Param("maxPrice") BigDecimal maxPrice,
+                        @Param("search") String search,
+                        Pageable pageable);
+
+        String FULL_TEXT_FILTER = "FROM products p WHERE p.active = true " +
+                        "AND (CAST(:categoryPath AS TEXT) IS NULL OR p.category_id IN " +
+                        "     (SELECT c.id FROM categories c WHERE c.path LIKE CAST(:categoryPath AS TEXT) || '%')) " +
+                        "AND (CAST(:minPrice AS NUMERIC) IS NULL OR COALESCE(p.sale_price, p.price) >= :minPrice) " +
+                        "AND (CAST(:maxPrice AS NUMERIC) IS NULL OR COALESCE(p.sale_price, p.price) <= :maxPrice) " +
+                        "AND p.search_vector @@ websearch_to_tsquery('english', :search) ";
+
+        /**
+         * Full-text search ordered by ts_rank. Uses the GIN index on
+         * products.search_vector (V11).
+         */
+        @Query(value = "SELECT p.* " + FULL_TEXT_FILTER +
+                        "ORDER BY ts_rank(p.search_vector, websearch_to_tsquery('english', :search)) DESC, p.id DESC",
+                        countQuery = "SELECT COUNT(*) " + FULL_TEXT_FILTER,
+                        nativeQuery = true)
+        Page<Product> findByFullText(
+                        @Param("categoryPath") String categoryPath,
+                        @Param("minPrice") BigDecimal minPrice,
+                        @Param("maxPrice") BigDecimal maxPrice,
+                        @Param("search") String search,
+                        Pageable pageable);
+
+        /**
+         * Same match set as {@link #findByFullText} but ordered by the pageable's
+         * sort, which must reference column names.
+         */
+        @Query(value = "SELECT p.* " + FULL_TEXT_FILTER,
+                        countQuery = "SELECT COUNT(*) " + FULL_TEXT_FILTER,
+                        nativeQuery = true)
+        Page<Product> findByFullTextSorted(
+                        @Param("categoryPath") String categoryPath,
                         @Param("minPrice") BigDecimal minPrice,
                         @Param("maxPrice") BigDecimal maxPrice,
                         @Param("search") String search,
                         Pageable pageable);
 
+        @Query(value = "SELECT p.id FROM products p WHERE p.active = true " +
+                        "AND p.search_vector @@ websearch_to_tsquery('english', :search) " +
+                        "ORDER BY ts_rank(p.search_vector, websearch_to_tsquery('english', :search)) DESC, p.id DESC",
+                        nativeQuery = true)
+        List<Long> findIdsByFullText(@Param("search") String search);
+
+        @Query("SELECT p.id FROM Product p WHERE p.active = true " +
+                        "AND (LOWER(p.name) LIKE LOWER(CONCAT('%', :search, '%')) " +
+                        "     OR LOWER(p.description) LIKE LOWER(CONCAT('%', :search, '%'))) " +
+                        "ORDER BY p.id DESC")
+        List<Long> findIdsBySearchTerm(@Param("search") String search);
+
+        String SIMILAR_NAME_FILTER = "FROM products p WHERE p.active = true " +
+                        "AND (CAST(:categoryPath AS TEXT) IS NULL OR p.category_id IN " +
+                        "     (SELECT c.id FROM categories c WHERE c.path LIKE CAST(:categoryPath AS TEXT) || '%')) " +
+                        "AND (CAST(:minPrice AS NUMERIC) IS NULL OR COALESCE(p.sale_price, p.price) >= :minPrice) " +
+                        "AND (CAST(:maxPrice AS NUMERIC) IS NULL OR COALESCE(p.sale_price, p.price) <= :maxPrice) " +
+                        "AND :search <% p.name ";
+
+        /**
+         * Typo-tolerant name match ranked by pg_trgm word similarity. Uses the
+         * trigram GIN index on products.name (V12).
+         */
+        @Query(value = "SELECT p.* " + SIMILAR_NAME_FILTER +
+                        "ORDER BY word_similarity(:search, p.name) DESC, p.id DESC",
+                        countQuery = "SELECT COUNT(*) " + SIMILAR_NAME_FILTER,
+                        nativeQuery = true)
+        @QueryHints(@QueryHint(name = "jakarta.persistence.query.timeout", value = "1000"))
+        Page<Product> findBySimilarName(
+                        @Param("categoryPath") String categoryPath,
+                        @Param("minPrice") BigDecimal minPrice,
+                        @Param("maxPrice") BigDecimal maxPrice,
+                        @Param("search") String search,
+                        Pageable pageable);
+
+        @Query("SELECT oi.product.id, SUM(oi.quantity) FROM OrderItem oi " +
+                        "WHERE oi.product IS NOT NULL GROUP BY oi.product.id")
+        List<Object[]> sumUnitsSoldByProduct();
+
+        @Query("SELECT p.category.id, COUNT(p) FROM Product p " +
+                        "WHERE p.active = true AND p.category IS NOT NULL GROUP BY p.category.id")
+        List<Object[]> countActiveByCategory();
+
+        // Scalar query: reads current values even when the entities are already loaded
+        @Query("SELECT p.id, p.name, p.stockQuantity FROM Product p WHERE p.id IN :ids")
+        List<Object[]> findStockLevels(@Param("ids") Collection<Long> ids);
+
+        @Query("SELECT p.id FROM Product p WHERE p.id IN :ids AND p.flashSale = true")
+        List<Long> findFlashSaleIds(@Param("ids") Collection<Long> ids);
+
         boolean existsBySku(String sku);
 
         List<Product> findByCategoryIdAndIdNotAndActiveTrue(Long categoryId, Long excludeId, Pageable pageable);
@@ -9,4 +9,6 @@ import java.util.List;
 @Repository
 public interface ProductVariantRepository extends JpaRepository<ProductVariant, Long> {
     List<ProductVariant> findByProductIdAndActiveTrue(Long productId);
+
+    List<ProductVariant> findByActiveTrue();
 }
@@ -0,0 +1,16 @@
+package com.shopease.repository;
+
+import com.shopease.entity.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    @Modifying
+    @Query("DELETE FROM StockReservation r WHERE r.order.id = :orderId")
+    int deleteByOrderId(@Param("orderId") Long orderId);
+}
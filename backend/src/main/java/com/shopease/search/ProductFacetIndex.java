@@ -0,0 +1,330 @@
+package com.shopease.search;
+
+import com.shopease.dto.request.ProductFilterRequest;
+import com.shopease.dto.response.FacetCounts;
+import com.shopease.entity.Product;
+import com.shopease.entity.ProductVariant;
+import com.shopease.event.ProductChangedEvent;
+import com.shopease.repository.ProductRepository;
+import com.shopease.repository.ProductVariantRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bitset-backed facet engine over active products.
+ *
+ * Each product gets a dense ordinal. Equality filters (category, variant size,
+ * variant color) are BitSet intersections; range filters (price, rating) are
+ * checked against per-ordinal metadata. Facet counts for the whole result set
+ * are then gathered in a single scan over the result bits. Price filters and
+ * bands use the sale price when a product has one.
+ *
+ * An updated product keeps its ordinal, and the ordinal of a removed product
+ * is handed to the next product added, so the index does not grow with the
+ * number of changes. Sizes and colors match ignoring case; facets are labelled
+ * with the spelling first indexed.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductFacetIndex {
+
+    /** Upper bounds of the price bands; the last band is open-ended. */
+    private static final BigDecimal[] PRICE_BANDS = {
+            new BigDecimal("500"), new BigDecimal("1000"), new BigDecimal("5000"),
+            new BigDecimal("10000"), new BigDecimal("50000") };
+
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository variantRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final List<Doc> docs = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final BitSet live = new BitSet();
+    private final Map<Long, BitSet> categoryBits = new HashMap<>();
+    private final Map<String, BitSet> sizeBits = new HashMap<>();
+    private final Map<String, BitSet> colorBits = new HashMap<>();
+    private final Map<String, String> labels = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Product> products = productRepository.findAllByActiveTrue();
+        Map<Long, List<ProductVariant>> variants = variantRepository.findByActiveTrue().stream()
+                .collect(Collectors.groupingBy(v -> v.getProduct().getId()));
+
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            docs.clear();
+            freeOrdinals.clear();
+            live.clear();
+            categoryBits.clear();
+            sizeBits.clear();
+            colorBits.clear();
+            labels.clear();
+            for (Product product : products) {
+                List<ProductVariant> productVariants = variants.getOrDefault(product.getId(), List.of());
+                add(product, distinct(productVariants, ProductVariant::getSize),
+                        distinct(productVariants, ProductVariant::getColor));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("[ProductFacetIndex] Indexed {} products", products.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        lock.writeLock().lock();
+        try {
+            Integer previous = ordinals.get(product.getId());
+            // Variants are not edited through ProductService; keep what we had
+            String[] sizes = previous != null ? labelsOf(docs.get(previous).sizes()) : new String[0];
+            String[] colors = previous != null ? labelsOf(docs.get(previous).colors()) : new String[0];
+            if (previous != null) {
+                clear(previous);
+            }
+            if (event.getType() != ProductChangedEvent.Type.DELETED && product.isActive()) {
+                add(product, sizes, colors);
+            } else if (previous != null) {
+                ordinals.remove(product.getId());
+                freeOrdinals.push(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the filters and counts facets over the result.
+     *
+     * @param rankedIds when non-null, restricts the result to these products and
+     *                  keeps their order (e.g. relevance order from a text search);
+     *                  otherwise results are ordered by {@code sort}
+     * @param categoryIds the subtree selected by {@code filter.categoryId}, or null
+     *                    for no category filter
+     */
+    public FacetResult query(ProductFilterRequest filter, Set<Long> categoryIds, List<Long> rankedIds, Sort sort) {
+        lock.readLock().lock();
+        try {
+            BitSet result = (BitSet) live.clone();
+            if (rankedIds != null) {
+                BitSet matches = new BitSet();
+                rankedIds.stream().map(ordinals::get).filter(Objects::nonNull).forEach(matches::set);
+                result.and(matches);
+            }
+            if (categoryIds != null) {
+                BitSet inCategories = new BitSet();
+                categoryIds.stream().map(categoryBits::get).filter(Objects::nonNull).forEach(inCategories::or);
+                result.and(inCategories);
+            }
+            if (filter.getSize() != null) {
+                result.and(sizeBits.getOrDefault(normalize(filter.getSize()), new BitSet()));
+            }
+            if (filter.getColor() != null) {
+                result.and(colorBits.getOrDefault(normalize(filter.getColor()), new BitSet()));
+            }
+
+            FacetCounts facets = new FacetCounts();
+            long[] priceCounts = new long[PRICE_BANDS.length + 1];
+            long[] ratingCounts = new long[6];
+            List<Integer> matched = new ArrayList<>();
+
+            for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+                Doc doc = docs.get(i);
+                if (!inRange(doc, filter)) {
+                    result.clear(i);
+                    continue;
+                }
+                matched.add(i);
+                if (doc.categoryId() != null) {
+                    facets.getCategories().merge(doc.categoryId(), 1L, Long::sum);
+                }
+                priceCounts[doc.priceBand()]++;
+                ratingCounts[doc.rating()]++;
+                for (String size : doc.sizes()) {
+                    facets.getSizes().merge(labels.get(size), 1L, Long::sum);
+                }
+                for (String color : doc.colors()) {
+                    facets.getColors().merge(labels.get(color), 1L, Long::sum);
+                }
+            }
+
+            for (int band = 0; band < priceCounts.length; band++) {
+                facets.getPriceRanges().put(priceLabel(band), priceCounts[band]);
+            }
+            long andUp = 0;
+            for (int stars = 5; stars >= 1; stars--) {
+                andUp += ratingCounts[stars];
+                facets.getRatings().put(stars, andUp);
+            }
+
+            List<Long> ids;
+            if (rankedIds != null) {
+                ids = rankedIds.stream()
+                        .filter(id -> ordinals.containsKey(id) && result.get(ordinals.get(id)))
+                        .toList();
+            } else {
+                matched.sort(comparator(sort));
+                ids = matched.stream().map(i -> docs.get(i).id()).toList();
+            }
+            return new FacetResult(ids, facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean inRange(Doc doc, ProductFilterRequest filter) {
+        if (filter.getMinPrice() != null && doc.sellingPrice().compareTo(filter.getMinPrice()) < 0) {
+            return false;
+        }
+        if (filter.getMaxPrice() != null && doc.sellingPrice().compareTo(filter.getMaxPrice()) > 0) {
+            return false;
+        }
+        return filter.getMinRating() == null || doc.rating() >= filter.getMinRating();
+    }
+
+    private Comparator<Integer> comparator(Sort sort) {
+        Comparator<Integer> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Integer> next = switch (order.getProperty()) {
+                case "price" -> Comparator.comparing(i -> docs.get(i).price());
+                case "name" -> Comparator.comparing(i -> docs.get(i).name());
+                case "createdAt" -> Comparator.comparing(i -> docs.get(i).createdAt(),
+                        Comparator.nullsLast(Comparator.naturalOrder()));
+                case "averageRating" -> Comparator.comparing(i -> docs.get(i).averageRating());
+                case "id" -> Comparator.comparing(i -> docs.get(i).id());
+                default -> null;
+            };
+            if (next == null) {
+                continue;
+            }
+            next = order.isDescending() ? next.reversed() : next;
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        Comparator<Integer> newestFirst = Comparator.comparing((Integer i) -> docs.get(i).id()).reversed();
+        return comparator == null ? newestFirst : comparator.thenComparing(newestFirst);
+    }
+
+    /** Ordinals allocated, live or free; stays flat while products are only updated. */
+    public int ordinalCount() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Reuses the product's own ordinal (it must have been cleared), else a free one, else a new one. */
+    private void add(Product product, String[] sizes, String[] colors) {
+        Integer previous = ordinals.get(product.getId());
+        int ordinal = previous != null ? previous : freeOrdinals.isEmpty() ? docs.size() : freeOrdinals.pop();
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+        BigDecimal rating = product.getAverageRating() != null ? product.getAverageRating() : BigDecimal.ZERO;
+        String[] sizeKeys = keys(sizes);
+        String[] colorKeys = keys(colors);
+        BigDecimal sellingPrice = product.getSalePrice() != null ? product.getSalePrice() : product.getPrice();
+
+        Doc doc = new Doc(product.getId(), product.getName(), product.getPrice(), sellingPrice,
+                product.getCreatedAt(), categoryId, priceBand(sellingPrice), rating, rating.intValue(), sizeKeys,
+                colorKeys);
+        if (ordinal == docs.size()) {
+            docs.add(doc);
+        } else {
+            docs.set(ordinal, doc);
+        }
+        ordinals.put(product.getId(), ordinal);
+        live.set(ordinal);
+        if (categoryId != null) {
+            categoryBits.computeIfAbsent(categoryId, k -> new BitSet()).set(ordinal);
+        }
+        for (String size : sizeKeys) {
+            sizeBits.computeIfAbsent(size, k -> new BitSet()).set(ordinal);
+        }
+        for (String color : colorKeys) {
+            colorBits.computeIfAbsent(color, k -> new BitSet()).set(ordinal);
+        }
+    }
+
+    /**
+     * Unsets the ordinal's bits. The product keeps the ordinal, so re-adding it
+     * reuses it; a caller not re-adding it frees the ordinal.
+     */
+    private void clear(int ordinal) {
+        Doc doc = docs.get(ordinal);
+        live.clear(ordinal);
+        if (doc.categoryId() != null) {
+            categoryBits.get(doc.categoryId()).clear(ordinal);
+        }
+        for (String size : doc.sizes()) {
+            sizeBits.get(size).clear(ordinal);
+        }
+        for (String color : doc.colors()) {
+            colorBits.get(color).clear(ordinal);
+        }
+    }
+
+    private static int priceBand(BigDecimal price) {
+        for (int band = 0; band < PRICE_BANDS.length; band++) {
+            if (price.compareTo(PRICE_BANDS[band]) < 0) {
+                return band;
+            }
+        }
+        return PRICE_BANDS.length;
+    }
+
+    private static String priceLabel(int band) {
+        String from = band == 0 ? "0" : PRICE_BANDS[band - 1].toPlainString();
+        return band == PRICE_BANDS.length ? from + "+" : from + "-" + PRICE_BANDS[band].toPlainString();
+    }
+
+    private static String[] distinct(List<ProductVariant> variants,
+            Function<ProductVariant, String> attribute) {
+        return variants.stream().map(attribute).filter(Objects::nonNull).distinct().toArray(String[]::new);
+    }
+
+    /** Normalized keys for {@code values}, recording the first spelling seen of each as its facet label. */
+    private String[] keys(String[] values) {
+        return Arrays.stream(values)
+                .map(value -> {
+                    String key = normalize(value);
+                    labels.putIfAbsent(key, value.trim());
+                    return key;
+                })
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    private String[] labelsOf(String[] keys) {
+        return Arrays.stream(keys).map(labels::get).toArray(String[]::new);
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public record FacetResult(List<Long> ids, FacetCounts facets) {
+    }
+
+    private record Doc(Long id, String name, BigDecimal price, BigDecimal sellingPrice, LocalDateTime createdAt,
+            Long categoryId, int priceBand, BigDecimal averageRating, int rating, String[] sizes, String[] colors) {
+    }
+}
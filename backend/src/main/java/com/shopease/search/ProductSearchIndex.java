@@ -0,0 +1,286 @@
+package com.shopease.search;
+
+import com.shopease.entity.Product;
+import com.shopease.event.ProductChangedEvent;
+import com.shopease.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over active products, ranked with BM25.
+ *
+ * Name and description are indexed as a single weighted field (name terms count
+ * NAME_BOOST times). Category and price filters are applied against the
+ * per-category posting lists and the stored document metadata, so a search
+ * never touches PostgreSQL until the final page of ids is hydrated. The price
+ * filter applies to what a product sells for: its sale price when it has one.
+ * Sorting by price stays on the list price, as in the SQL backends.
+ *
+ * The term vocabulary is also held in a {@link TrigramIndex} so that
+ * misspelled queries can be expanded to their nearest known terms.
+ *
+ * Only created when app.search.backend is "index" (the default).
+ */
+@Component
+@ConditionalOnProperty(name = "app.search.backend", havingValue = "index", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_BOOST = 3;
+    private static final int MAX_CORRECTIONS_PER_TERM = 3;
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, Set<Long>> categoryPostings = new HashMap<>();
+    private final Map<Long, IndexedProduct> documents = new HashMap<>();
+    private final TrigramIndex vocabulary = new TrigramIndex();
+    private long totalLength;
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Product> products = productRepository.findAllByActiveTrue();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            categoryPostings.clear();
+            documents.clear();
+            vocabulary.clear();
+            totalLength = 0;
+            products.forEach(this::add);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("[ProductSearchIndex] Indexed {} products, {} terms", products.size(), postings.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        lock.writeLock().lock();
+        try {
+            remove(product.getId());
+            if (event.getType() != ProductChangedEvent.Type.DELETED && product.isActive()) {
+                add(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns the ids of all matching products, ordered by the requested sort
+     * or, when unsorted, by descending BM25 score. A query with no searchable
+     * terms, e.g. only stop words, matches nothing.
+     */
+    public List<Long> search(String query, Set<Long> categoryIds, BigDecimal minPrice, BigDecimal maxPrice, Sort sort) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        SearchTokenizer.tokenize(query).forEach(term -> weights.put(term, 1d));
+        if (weights.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            return rank(weights, categoryIds, minPrice, maxPrice, sort);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Typo-tolerant variant of {@link #search}: every query term that is not in
+     * the vocabulary is replaced by its closest known terms, weighted by
+     * trigram similarity. Candidate lookup stops once {@code budget} has
+     * elapsed. The suggestion is the query rewritten with, for each term, the
+     * best correction found in a product that passed the filters; null when
+     * nothing was corrected.
+     */
+    public FuzzyResult searchFuzzy(String query, Set<Long> categoryIds, BigDecimal minPrice, BigDecimal maxPrice,
+            Sort sort, Duration budget) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        List<String> terms = SearchTokenizer.tokenize(query);
+        lock.readLock().lock();
+        try {
+            Map<String, Double> weights = new LinkedHashMap<>();
+            Map<String, List<TrigramIndex.Match>> corrections = new HashMap<>();
+            for (String term : terms) {
+                if (postings.containsKey(term)) {
+                    weights.merge(term, 1d, Math::max);
+                    continue;
+                }
+                List<TrigramIndex.Match> matches = vocabulary.closest(term, MAX_CORRECTIONS_PER_TERM, deadline);
+                matches.forEach(m -> weights.merge(m.term(), m.similarity(), Math::max));
+                corrections.put(term, matches);
+            }
+            if (weights.isEmpty()) {
+                return new FuzzyResult(List.of(), null);
+            }
+            List<Long> ids = rank(weights, categoryIds, minPrice, maxPrice, sort);
+            return new FuzzyResult(ids, suggestion(terms, corrections, new HashSet<>(ids)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Corrections are taken only from terms of the filtered results, best match first. */
+    private String suggestion(List<String> terms, Map<String, List<TrigramIndex.Match>> corrections,
+            Set<Long> results) {
+        List<String> suggestion = new ArrayList<>();
+        boolean corrected = false;
+        for (String term : terms) {
+            String replacement = corrections.getOrDefault(term, List.of()).stream()
+                    .map(TrigramIndex.Match::term)
+                    .filter(candidate -> postings.get(candidate).keySet().stream().anyMatch(results::contains))
+                    .findFirst()
+                    .orElse(null);
+            suggestion.add(replacement != null ? replacement : term);
+            corrected |= replacement != null;
+        }
+        return corrected ? String.join(" ", suggestion) : null;
+    }
+
+    private List<Long> rank(Map<String, Double> weights, Set<Long> categoryIds, BigDecimal minPrice,
+            BigDecimal maxPrice, Sort sort) {
+        Map<Long, Double> scores = score(weights);
+
+        if (categoryIds != null) {
+            Set<Long> inCategories = new HashSet<>();
+            categoryIds.forEach(id -> inCategories.addAll(categoryPostings.getOrDefault(id, Set.of())));
+            scores.keySet().retainAll(inCategories);
+        }
+        if (minPrice != null || maxPrice != null) {
+            scores.keySet().removeIf(id -> !inPriceRange(documents.get(id).sellingPrice(), minPrice, maxPrice));
+        }
+
+        List<Long> ids = new ArrayList<>(scores.keySet());
+        ids.sort(comparator(sort, scores));
+        return ids;
+    }
+
+    private Map<Long, Double> score(Map<String, Double> weights) {
+        Map<Long, Double> scores = new HashMap<>();
+        int docCount = documents.size();
+        double avgLength = docCount == 0 ? 1 : (double) totalLength / docCount;
+
+        for (Map.Entry<String, Double> weighted : weights.entrySet()) {
+            Map<Long, Integer> posting = postings.get(weighted.getKey());
+            if (posting == null) {
+                continue;
+            }
+            double idf = weighted.getValue()
+                    * Math.log(1 + (docCount - posting.size() + 0.5) / (posting.size() + 0.5));
+            posting.forEach((id, tf) -> {
+                double norm = K1 * (1 - B + B * documents.get(id).length() / avgLength);
+                scores.merge(id, idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+            });
+        }
+        return scores;
+    }
+
+    private Comparator<Long> comparator(Sort sort, Map<Long, Double> scores) {
+        Comparator<Long> comparator = null;
+        if (sort != null) {
+            for (Sort.Order order : sort) {
+                Comparator<Long> next = switch (order.getProperty()) {
+                    case "price" -> Comparator.comparing(id -> documents.get(id).price());
+                    case "name" -> Comparator.comparing(id -> documents.get(id).name());
+                    case "createdAt" -> Comparator.comparing(id -> documents.get(id).createdAt(),
+                            Comparator.nullsLast(Comparator.naturalOrder()));
+                    case "id" -> Comparator.naturalOrder();
+                    default -> null;
+                };
+                if (next == null) {
+                    continue;
+                }
+                next = order.isDescending() ? next.reversed() : next;
+                comparator = comparator == null ? next : comparator.thenComparing(next);
+            }
+        }
+        Comparator<Long> byScore = Comparator.<Long, Double>comparing(scores::get).reversed()
+                .thenComparing(Comparator.reverseOrder());
+        return comparator == null ? byScore : comparator.thenComparing(byScore);
+    }
+
+    private static boolean inPriceRange(BigDecimal price, BigDecimal min, BigDecimal max) {
+        return (min == null || price.compareTo(min) >= 0) && (max == null || price.compareTo(max) <= 0);
+    }
+
+    private void add(Product product) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        List<String> nameTokens = SearchTokenizer.tokenize(product.getName());
+        List<String> descriptionTokens = SearchTokenizer.tokenize(product.getDescription());
+        nameTokens.forEach(t -> termFrequencies.merge(t, NAME_BOOST, Integer::sum));
+        descriptionTokens.forEach(t -> termFrequencies.merge(t, 1, Integer::sum));
+
+        int length = nameTokens.size() * NAME_BOOST + descriptionTokens.size();
+        Long categoryId = product.getCategory() != null ? product.getCategory().getId() : null;
+
+        BigDecimal sellingPrice = product.getSalePrice() != null ? product.getSalePrice() : product.getPrice();
+        documents.put(product.getId(), new IndexedProduct(product.getName(), product.getPrice(), sellingPrice,
+                product.getCreatedAt(), categoryId, length, termFrequencies.keySet()));
+        termFrequencies.forEach((term, tf) -> postings.computeIfAbsent(term, k -> {
+            vocabulary.add(k);
+            return new HashMap<>();
+        }).put(product.getId(), tf));
+        if (categoryId != null) {
+            categoryPostings.computeIfAbsent(categoryId, k -> new HashSet<>()).add(product.getId());
+        }
+        totalLength += length;
+    }
+
+    private void remove(Long productId) {
+        IndexedProduct doc = documents.remove(productId);
+        if (doc == null) {
+            return;
+        }
+        for (String term : doc.terms()) {
+            Map<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(productId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                    vocabulary.remove(term);
+                }
+            }
+        }
+        if (doc.categoryId() != null) {
+            Set<Long> ids = categoryPostings.get(doc.categoryId());
+            if (ids != null) {
+                ids.remove(productId);
+            }
+        }
+        totalLength -= doc.length();
+    }
+
+    public record FuzzyResult(List<Long> ids, String suggestion) {
+    }
+
+    private record IndexedProduct(String name, BigDecimal price, BigDecimal sellingPrice, LocalDateTime createdAt,
+            Long categoryId, int length, Set<String> terms) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.shopease.search;
+
+import com.shopease.dto.response.ProductSummaryDto;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+
+/**
+ * A page of products plus an optional "did you mean" suggestion, set when the
+ * literal query matched nothing and fuzzy matching was used instead.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ProductSearchResult {
+
+    private final Page<ProductSummaryDto> page;
+    private final String suggestion;
+
+    public static ProductSearchResult of(Page<ProductSummaryDto> page) {
+        return new ProductSearchResult(page, null);
+    }
+}
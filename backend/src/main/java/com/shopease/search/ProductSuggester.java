@@ -0,0 +1,245 @@
+package com.shopease.search;
+
+import com.shopease.dto.response.SuggestionDto;
+import com.shopease.entity.Category;
+import com.shopease.entity.Product;
+import com.shopease.event.CategoryChangedEvent;
+import com.shopease.event.ProductChangedEvent;
+import com.shopease.repository.CategoryRepository;
+import com.shopease.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Autocomplete over product names, category names and SKUs, served entirely
+ * from a {@link RadixTrie}. Every word start of a product name is a key, so
+ * "gal" finds "Samsung Galaxy S24". Popularity (units sold plus review
+ * activity) is carried with each entry; units sold are reloaded every
+ * {@code popularity-refresh-interval} and the entries of products whose
+ * sales moved are re-scored, so nodes converge on the same ranking.
+ * Category entries are replaced whenever a category changes.
+ *
+ * Trie size is published as the search.suggest.* gauges.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSuggester {
+
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RadixTrie<SuggestionDto> trie = new RadixTrie<>(MAX_SUGGESTIONS);
+    private final Map<Long, IndexedProduct> indexedProducts = new HashMap<>();
+    private final Map<Long, String> categoryKeys = new HashMap<>();
+    private final Map<Long, Long> unitsSold = new HashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Product> products = productRepository.findAllByActiveTrue();
+        List<Category> categories = categoryRepository.findAll();
+        Map<Long, Long> sold = unitsSoldByProduct();
+        Map<Long, Long> productsPerCategory = products.stream()
+                .filter(p -> p.getCategory() != null)
+                .collect(Collectors.groupingBy(p -> p.getCategory().getId(), Collectors.counting()));
+
+        lock.writeLock().lock();
+        try {
+            trie.clear();
+            indexedProducts.clear();
+            categoryKeys.clear();
+            unitsSold.clear();
+            unitsSold.putAll(sold);
+            products.forEach(this::addProduct);
+            addCategories(categories, productsPerCategory);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("[ProductSuggester] Built trie with {} nodes for {} products and {} categories",
+                trie.nodeCount(), products.size(), categories.size());
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("search.suggest.memory", this, s -> s.read(s.trie::estimatedBytes))
+                .baseUnit("bytes")
+                .description("Estimated heap retained by the autocomplete trie")
+                .register(meterRegistry);
+        Gauge.builder("search.suggest.nodes", this, s -> s.read(s.trie::nodeCount))
+                .description("Nodes in the autocomplete trie")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Replaces every category entry: a deleted category takes its
+     * subcategories with it, so the changed id alone is not enough.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        List<Category> categories = categoryRepository.findAll();
+        Map<Long, Long> productsPerCategory = productRepository.countActiveByCategory().stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> ((Number) row[1]).longValue()));
+        lock.writeLock().lock();
+        try {
+            categoryKeys.forEach((id, key) -> trie.remove(key, "C" + id));
+            categoryKeys.clear();
+            addCategories(categories, productsPerCategory);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Reloads units sold and re-scores the products whose count moved. */
+    @Scheduled(fixedDelayString = "${app.search.suggest.popularity-refresh-interval:PT10M}",
+            initialDelayString = "${app.search.suggest.popularity-refresh-interval:PT10M}")
+    public void refreshPopularity() {
+        Map<Long, Long> sold;
+        try {
+            sold = unitsSoldByProduct();
+        } catch (RuntimeException e) {
+            log.warn("[ProductSuggester] Could not reload units sold, keeping the previous scores: {}",
+                    e.getMessage());
+            return;
+        }
+        int rescored = 0;
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Long, IndexedProduct> indexed : indexedProducts.entrySet()) {
+                long units = sold.getOrDefault(indexed.getKey(), 0L);
+                if (units != unitsSold.getOrDefault(indexed.getKey(), 0L)) {
+                    insertEntries(indexed.getValue(), units);
+                    rescored++;
+                }
+            }
+            unitsSold.clear();
+            unitsSold.putAll(sold);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("[ProductSuggester] Re-scored {} product(s) after reloading units sold", rescored);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        lock.writeLock().lock();
+        try {
+            removeProduct(product.getId());
+            if (event.getType() != ProductChangedEvent.Type.DELETED && product.isActive()) {
+                addProduct(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<SuggestionDto> suggest(String query, int limit) {
+        String prefix = SearchTokenizer.normalize(query).strip();
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        int max = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        lock.readLock().lock();
+        try {
+            return trie.top(prefix).stream().limit(max).map(RadixTrie.Entry::value).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addProduct(Product product) {
+        double reviewScore = product.getReviewCount()
+                + (product.getAverageRating() != null ? product.getAverageRating().doubleValue() : 0);
+        IndexedProduct indexed = new IndexedProduct(product.getId(), wordStarts(product.getName()),
+                SearchTokenizer.normalize(product.getSku()),
+                new SuggestionDto("PRODUCT", product.getId(), product.getName()),
+                new SuggestionDto("SKU", product.getId(), product.getSku()), reviewScore);
+        insertEntries(indexed, unitsSold.getOrDefault(product.getId(), 0L));
+        indexedProducts.put(product.getId(), indexed);
+    }
+
+    /** Inserts or, under the same entry ids, replaces the product's entries at {@code units} sold. */
+    private void insertEntries(IndexedProduct indexed, long units) {
+        double score = units + indexed.reviewScore();
+        RadixTrie.Entry<SuggestionDto> nameEntry = new RadixTrie.Entry<>("P" + indexed.id(), score, indexed.name());
+        for (String key : indexed.nameKeys()) {
+            trie.insert(key, nameEntry);
+        }
+        trie.insert(indexed.skuKey(), new RadixTrie.Entry<>("S" + indexed.id(), score, indexed.sku()));
+    }
+
+    private void removeProduct(Long productId) {
+        IndexedProduct indexed = indexedProducts.remove(productId);
+        if (indexed != null) {
+            indexed.nameKeys().forEach(key -> trie.remove(key, "P" + productId));
+            trie.remove(indexed.skuKey(), "S" + productId);
+        }
+    }
+
+    private void addCategories(List<Category> categories, Map<Long, Long> productsPerCategory) {
+        for (Category category : categories) {
+            String key = SearchTokenizer.normalize(category.getName());
+            double score = productsPerCategory.getOrDefault(category.getId(), 0L);
+            trie.insert(key, new RadixTrie.Entry<>("C" + category.getId(), score,
+                    new SuggestionDto("CATEGORY", category.getId(), category.getName())));
+            categoryKeys.put(category.getId(), key);
+        }
+    }
+
+    private Map<Long, Long> unitsSoldByProduct() {
+        return productRepository.sumUnitsSoldByProduct().stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> ((Number) row[1]).longValue()));
+    }
+
+    /** "Samsung Galaxy S24" -> ["samsung galaxy s24", "galaxy s24", "s24"] */
+    private static List<String> wordStarts(String name) {
+        String normalized = SearchTokenizer.normalize(name).strip().replaceAll("\\s+", " ");
+        List<String> keys = new ArrayList<>();
+        int from = 0;
+        while (from < normalized.length()) {
+            keys.add(normalized.substring(from));
+            int space = normalized.indexOf(' ', from);
+            if (space < 0) {
+                break;
+            }
+            from = space + 1;
+        }
+        return keys;
+    }
+
+    private double read(Supplier<? extends Number> supplier) {
+        lock.readLock().lock();
+        try {
+            return supplier.get().doubleValue();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** What a product's entries are rebuilt from when it is re-scored. */
+    private record IndexedProduct(Long id, List<String> nameKeys, String skuKey, SuggestionDto name,
+            SuggestionDto sku, double reviewScore) {
+    }
+}
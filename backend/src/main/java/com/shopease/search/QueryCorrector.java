@@ -0,0 +1,45 @@
+package com.shopease.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites a misspelled query against the words of a given set of texts,
+ * typically the names of the products a fuzzy search found. Since those
+ * products already passed the search's filters, the corrected query only
+ * uses words that exist under the same filters.
+ */
+public final class QueryCorrector {
+
+    private QueryCorrector() {
+    }
+
+    /**
+     * @return the query's terms with each one not found in {@code texts}
+     *         replaced by its closest word there, or null if no term was
+     *         corrected
+     */
+    public static String correct(String query, Collection<String> texts) {
+        Set<String> words = new HashSet<>();
+        texts.forEach(text -> words.addAll(SearchTokenizer.tokenize(text)));
+        TrigramIndex vocabulary = new TrigramIndex();
+        words.forEach(vocabulary::add);
+
+        List<String> corrected = new ArrayList<>();
+        boolean changed = false;
+        for (String term : SearchTokenizer.tokenize(query)) {
+            if (!words.contains(term)) {
+                List<TrigramIndex.Match> closest = vocabulary.closest(term, 1, Long.MAX_VALUE);
+                if (!closest.isEmpty()) {
+                    term = closest.get(0).term();
+                    changed = true;
+                }
+            }
+            corrected.add(term);
+        }
+        return changed ? String.join(" ", corrected) : null;
+    }
+}
@@ -0,0 +1,192 @@
+package com.shopease.search;
+
+import java.util.*;
+
+/**
+ * Compressed prefix trie where every node caches the top-k highest scoring
+ * entries of its subtree, so a prefix lookup is a walk down at most
+ * prefix-length characters followed by a copy of k entries.
+ *
+ * Several keys may point to the same logical entry (e.g. every word start of
+ * a product name); entries are de-duplicated by {@link Entry#id()} when the
+ * per-node top-k lists are rebuilt.
+ *
+ * Not thread-safe; callers guard it with their own lock.
+ */
+class RadixTrie<T> {
+
+    private final int k;
+    private final Node<T> root = new Node<>("");
+    private int nodeCount = 1;
+
+    RadixTrie(int k) {
+        this.k = k;
+    }
+
+    void insert(String key, Entry<T> entry) {
+        Deque<Node<T>> path = new ArrayDeque<>();
+        Node<T> node = root;
+        String rest = key;
+        path.push(node);
+        while (!rest.isEmpty()) {
+            Node<T> child = node.children.get(rest.charAt(0));
+            if (child == null) {
+                child = new Node<>(rest);
+                node.children.put(rest.charAt(0), child);
+                nodeCount++;
+                node = child;
+                rest = "";
+            } else {
+                int common = commonPrefix(child.label, rest);
+                if (common < child.label.length()) {
+                    child = split(node, child, common);
+                }
+                node = child;
+                rest = rest.substring(common);
+            }
+            path.push(node);
+        }
+        node.terminals.removeIf(e -> e.id().equals(entry.id()));
+        node.terminals.add(entry);
+        path.forEach(this::recomputeTop);
+    }
+
+    void remove(String key, Object entryId) {
+        Deque<Node<T>> path = new ArrayDeque<>();
+        Node<T> node = root;
+        String rest = key;
+        path.push(node);
+        while (!rest.isEmpty()) {
+            Node<T> child = node.children.get(rest.charAt(0));
+            if (child == null || !rest.startsWith(child.label)) {
+                return;
+            }
+            node = child;
+            rest = rest.substring(child.label.length());
+            path.push(node);
+        }
+        if (!node.terminals.removeIf(e -> e.id().equals(entryId))) {
+            return;
+        }
+
+        // Prune emptied leaves, then merge a leftover single-child chain node
+        Node<T> current = path.pop();
+        while (!path.isEmpty() && current.terminals.isEmpty() && current.children.isEmpty()) {
+            Node<T> parent = path.peek();
+            parent.children.remove(current.label.charAt(0));
+            nodeCount--;
+            current = path.pop();
+        }
+        if (current != root && current.terminals.isEmpty() && current.children.size() == 1 && !path.isEmpty()) {
+            Node<T> only = current.children.values().iterator().next();
+            Node<T> merged = new Node<>(current.label + only.label);
+            merged.children.putAll(only.children);
+            merged.terminals.addAll(only.terminals);
+            merged.top = only.top;
+            path.peek().children.put(merged.label.charAt(0), merged);
+            nodeCount--;
+        } else {
+            recomputeTop(current);
+        }
+        path.forEach(this::recomputeTop);
+    }
+
+    List<Entry<T>> top(String prefix) {
+        Node<T> node = root;
+        String rest = prefix;
+        while (!rest.isEmpty()) {
+            Node<T> child = node.children.get(rest.charAt(0));
+            if (child == null) {
+                return List.of();
+            }
+            int common = commonPrefix(child.label, rest);
+            if (common == rest.length()) {
+                return child.top;
+            }
+            if (common < child.label.length()) {
+                return List.of();
+            }
+            node = child;
+            rest = rest.substring(common);
+        }
+        return node.top;
+    }
+
+    void clear() {
+        root.children.clear();
+        root.terminals.clear();
+        root.top = List.of();
+        nodeCount = 1;
+    }
+
+    int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Rough retained size in bytes: object headers, labels, child maps and the
+     * cached top-k lists. Entries themselves are shared and counted once per
+     * terminal.
+     */
+    long estimatedBytes() {
+        long bytes = 0;
+        Deque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            bytes += 32 + 40 + 2L * node.label.length();
+            bytes += 48 + 36L * node.children.size();
+            bytes += 24 + 4L * node.top.size();
+            bytes += 24 + 4L * node.terminals.size() + 48L * node.terminals.size();
+            node.children.values().forEach(stack::push);
+        }
+        return bytes;
+    }
+
+    private Node<T> split(Node<T> parent, Node<T> child, int at) {
+        Node<T> middle = new Node<>(child.label.substring(0, at));
+        child.label = child.label.substring(at);
+        middle.children.put(child.label.charAt(0), child);
+        middle.top = child.top;
+        parent.children.put(middle.label.charAt(0), middle);
+        nodeCount++;
+        return middle;
+    }
+
+    private void recomputeTop(Node<T> node) {
+        Map<Object, Entry<T>> best = new HashMap<>();
+        node.terminals.forEach(e -> best.merge(e.id(), e, RadixTrie::higher));
+        node.children.values().forEach(c -> c.top.forEach(e -> best.merge(e.id(), e, RadixTrie::higher)));
+        node.top = best.values().stream()
+                .sorted(Comparator.comparingDouble(Entry<T>::score).reversed())
+                .limit(k)
+                .toList();
+    }
+
+    private static <T> Entry<T> higher(Entry<T> a, Entry<T> b) {
+        return a.score() >= b.score() ? a : b;
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    record Entry<T>(Object id, double score, T value) {
+    }
+
+    private static final class Node<T> {
+        private String label;
+        private final Map<Character, Node<T>> children = new HashMap<>(4);
+        private final List<Entry<T>> terminals = new ArrayList<>(1);
+        private List<Entry<T>> top = List.of();
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+}
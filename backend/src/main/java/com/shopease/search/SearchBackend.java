@@ -0,0 +1,14 @@
+package com.shopease.search;
+
+/**
+ * Selects how ProductService answers free-text product searches
+ * (app.search.backend).
+ */
+public enum SearchBackend {
+    /** Per-node in-memory BM25 index (ProductSearchIndex). */
+    INDEX,
+    /** PostgreSQL tsvector column with a GIN index, ranked by ts_rank. */
+    FULLTEXT,
+    /** Plain LIKE scan, kept for troubleshooting. */
+    LIKE
+}
@@ -0,0 +1,81 @@
+package com.shopease.search;
+
+import java.util.*;
+
+/**
+ * Trigram index over a vocabulary of terms, used to find the closest known
+ * terms for a misspelled query term. Similarity is the Jaccard coefficient of
+ * the padded trigram sets, as in pg_trgm.
+ *
+ * Not thread-safe; callers guard it with their own lock.
+ */
+class TrigramIndex {
+
+    private static final double MIN_SIMILARITY = 0.3;
+
+    private final Map<String, Set<String>> termsByGram = new HashMap<>();
+
+    void add(String term) {
+        for (String gram : trigrams(term)) {
+            termsByGram.computeIfAbsent(gram, k -> new HashSet<>()).add(term);
+        }
+    }
+
+    void remove(String term) {
+        for (String gram : trigrams(term)) {
+            Set<String> terms = termsByGram.get(gram);
+            if (terms != null) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    termsByGram.remove(gram);
+                }
+            }
+        }
+    }
+
+    void clear() {
+        termsByGram.clear();
+    }
+
+    /**
+     * Returns up to {@code limit} terms most similar to {@code term}, best
+     * first. Stops collecting candidates once {@code deadlineNanos} (a
+     * System.nanoTime() value) has passed and ranks what it has so far.
+     */
+    List<Match> closest(String term, int limit, long deadlineNanos) {
+        Set<String> grams = trigrams(term);
+        Map<String, Integer> overlap = new HashMap<>();
+        for (String gram : grams) {
+            Set<String> terms = termsByGram.get(gram);
+            if (terms != null) {
+                terms.forEach(t -> overlap.merge(t, 1, Integer::sum));
+            }
+            if (System.nanoTime() > deadlineNanos) {
+                break;
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        overlap.forEach((candidate, shared) -> {
+            double similarity = (double) shared / (grams.size() + trigrams(candidate).size() - shared);
+            if (similarity >= MIN_SIMILARITY) {
+                matches.add(new Match(candidate, similarity));
+            }
+        });
+        matches.sort(Comparator.comparingDouble(Match::similarity).reversed().thenComparing(Match::term));
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+
+    /** Trigrams of "  term " (two leading blanks, one trailing), matching pg_trgm padding. */
+    static Set<String> trigrams(String term) {
+        String padded = "  " + term + " ";
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    record Match(String term, double similarity) {
+    }
+}
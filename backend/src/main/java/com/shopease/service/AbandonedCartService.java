@@ -0,0 +1,254 @@
+package com.shopease.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lifecycle of carts nobody comes back to. Carts are idle from their
+ * carts.updated_at, which every change stamps (directly, or by write-behind
+ * from {@link HotCartStore}), and are walked oldest first on the
+ * (updated_at, id) index.
+ *
+ * Carts with lines idle for {@code remind-after} get one reminder email per
+ * change: a keyset page of {@code page-size} carts is marked reminded in one
+ * UPDATE and sent through {@link EmailService} as one batch, on the job's
+ * thread. At most {@code reminders-per-second} reminders are sent, paced
+ * page by page on the time each page really took to send, and at most
+ * {@code max-reminders-per-run} per run; the rest wait for the next run.
+ *
+ * Carts idle for {@code expire-after} are emptied set-based, in batches of
+ * {@code page-size} carts per transaction, and their Redis copies dropped.
+ * The carts rows themselves stay: every user has exactly one, and emptied
+ * carts are no longer picked up. Guest carts live only in Redis and expire
+ * there after {@code app.cart.guest-ttl}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AbandonedCartService {
+
+    // reminded_at < updated_at: changed since the last reminder
+    private static final String REMIND_PAGE_SQL = "SELECT c.id, c.updated_at, u.email, u.name "
+            + "FROM carts c JOIN users u ON u.id = c.user_id "
+            + "WHERE c.updated_at < ? AND c.updated_at >= ? AND (c.updated_at, c.id) > (?, ?) "
+            + "AND (c.reminded_at IS NULL OR c.reminded_at < c.updated_at) AND u.enabled "
+            + "AND EXISTS (SELECT 1 FROM cart_items i WHERE i.cart_id = c.id) "
+            + "ORDER BY c.updated_at, c.id LIMIT ?";
+    private static final String PAGE_LINES_SQL = "SELECT i.cart_id, p.name, i.quantity "
+            + "FROM cart_items i JOIN products p ON p.id = i.product_id AND p.active "
+            + "WHERE i.cart_id = ANY (?) ORDER BY i.cart_id, i.id";
+    // updated_at is re-checked, so a cart changed since the page was read is left for the next run
+    private static final String MARK_REMINDED_SQL = "UPDATE carts c SET reminded_at = ? "
+            + "FROM unnest(?::bigint[], ?::timestamp[]) AS v(id, updated_at) "
+            + "WHERE c.id = v.id AND c.updated_at = v.updated_at RETURNING c.id";
+    // Stamping updated_at makes write-behind drop any Redis copy loaded before the purge
+    private static final String EXPIRE_BATCH_SQL = "WITH expired AS ("
+            + "SELECT c.id FROM carts c WHERE c.updated_at < ? "
+            + "AND EXISTS (SELECT 1 FROM cart_items i WHERE i.cart_id = c.id) "
+            + "ORDER BY c.updated_at, c.id LIMIT ? FOR UPDATE SKIP LOCKED), "
+            + "emptied AS (UPDATE carts SET coupon_id = NULL, updated_at = ? FROM expired "
+            + "WHERE carts.id = expired.id RETURNING carts.id, carts.user_id), "
+            + "purged AS (DELETE FROM cart_items WHERE cart_id IN (SELECT id FROM emptied) RETURNING cart_id) "
+            + "SELECT e.user_id, (SELECT COUNT(*) FROM purged p WHERE p.cart_id = e.id) AS lines FROM emptied e";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EmailService emailService;
+    private final HotCartStore hotCartStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.cart.abandoned.remind-after:24h}")
+    private Duration remindAfter;
+
+    @Value("${app.cart.abandoned.expire-after:30d}")
+    private Duration expireAfter;
+
+    @Value("${app.cart.abandoned.page-size:200}")
+    private int pageSize;
+
+    @Value("${app.cart.abandoned.reminders-per-second:20}")
+    private int remindersPerSecond;
+
+    @Value("${app.cart.abandoned.max-reminders-per-run:5000}")
+    private int maxRemindersPerRun;
+
+    private Counter reminded;
+    private Counter expired;
+    private Counter purgedLines;
+    private Timer sweepTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        reminded = Counter.builder("cart.abandoned.reminded")
+                .description("Abandoned-cart reminder emails sent")
+                .register(meterRegistry);
+        expired = Counter.builder("cart.abandoned.expired")
+                .description("Carts emptied because they were idle past expiry")
+                .register(meterRegistry);
+        purgedLines = Counter.builder("cart.abandoned.purged-lines")
+                .description("Cart lines deleted from expired carts")
+                .register(meterRegistry);
+        sweepTimer = Timer.builder("cart.abandoned.sweep")
+                .description("Duration of one abandoned-cart sweep")
+                .register(meterRegistry);
+    }
+
+    /** Empties expired carts first, so none of them is reminded on its way out. */
+    @Scheduled(fixedDelayString = "${app.cart.abandoned.interval:PT15M}")
+    public void sweep() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            expire(now);
+            remind(now);
+        } catch (RuntimeException e) {
+            log.error("[AbandonedCart] Sweep failed, retrying next run", e);
+        } finally {
+            sample.stop(sweepTimer);
+        }
+    }
+
+    private void expire(LocalDateTime now) {
+        Timestamp cutoff = Timestamp.valueOf(now.minus(expireAfter));
+        int carts = 0;
+        long lines = 0;
+        List<Long> userIds;
+        do {
+            Map<Long, Long> batch = transactionTemplate.execute(status -> {
+                Map<Long, Long> emptied = new LinkedHashMap<>();
+                jdbcTemplate.query(EXPIRE_BATCH_SQL, rs -> {
+                    emptied.put(rs.getLong("user_id"), rs.getLong("lines"));
+                }, cutoff, pageSize, Timestamp.valueOf(now));
+                return emptied;
+            });
+            userIds = new ArrayList<>(batch.keySet());
+            long batchLines = batch.values().stream().mapToLong(Long::longValue).sum();
+            expired.increment(userIds.size());
+            purgedLines.increment(batchLines);
+            carts += userIds.size();
+            lines += batchLines;
+            evict(userIds);
+        } while (userIds.size() == pageSize);
+        if (carts > 0) {
+            log.info("[AbandonedCart] Emptied {} expired cart(s), deleted {} line(s)", carts, lines);
+        }
+    }
+
+    private void remind(LocalDateTime now) {
+        Timestamp newest = Timestamp.valueOf(now.minus(remindAfter));
+        Timestamp oldest = Timestamp.valueOf(now.minus(expireAfter));
+        Timestamp afterUpdatedAt = oldest;
+        long afterId = 0;
+        int sent = 0;
+        List<IdleCart> page;
+        do {
+            int limit = Math.min(pageSize, maxRemindersPerRun - sent);
+            if (limit <= 0) {
+                log.info("[AbandonedCart] Reminder cap of {} reached, continuing next run", maxRemindersPerRun);
+                break;
+            }
+            long started = System.nanoTime();
+            page = jdbcTemplate.query(REMIND_PAGE_SQL, (rs, i) -> new IdleCart(rs.getLong("id"),
+                    rs.getTimestamp("updated_at"), rs.getString("email"), rs.getString("name")),
+                    newest, oldest, afterUpdatedAt, afterId, limit);
+            if (page.isEmpty()) {
+                break;
+            }
+            afterUpdatedAt = page.get(page.size() - 1).updatedAt();
+            afterId = page.get(page.size() - 1).id();
+
+            int batch = remindPage(page, now);
+            reminded.increment(batch);
+            sent += batch;
+            pace(batch, started);
+        } while (page.size() == limit);
+        if (sent > 0) {
+            log.info("[AbandonedCart] Sent {} cart reminder(s)", sent);
+        }
+    }
+
+    /** @return how many reminders were sent */
+    private int remindPage(List<IdleCart> page, LocalDateTime now) {
+        Long[] cartIds = page.stream().map(IdleCart::id).toArray(Long[]::new);
+        Map<Long, List<String>> lines = new LinkedHashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(PAGE_LINES_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", cartIds));
+            return ps;
+        }, rs -> {
+            lines.computeIfAbsent(rs.getLong("cart_id"), id -> new ArrayList<>())
+                    .add(rs.getString("name") + " × " + rs.getInt("quantity"));
+        });
+
+        // Marked before sending: a reminder lost to a mail failure is better than one sent twice
+        Set<Long> marked = new HashSet<>(transactionTemplate.execute(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(MARK_REMINDED_SQL);
+            ps.setTimestamp(1, Timestamp.valueOf(now));
+            ps.setArray(2, con.createArrayOf("bigint", cartIds));
+            ps.setArray(3, con.createArrayOf("timestamp", page.stream().map(IdleCart::updatedAt).toArray()));
+            return ps;
+        }, (rs, i) -> rs.getLong(1))));
+
+        List<EmailService.CartReminder> reminders = new ArrayList<>(marked.size());
+        for (IdleCart cart : page) {
+            List<String> cartLines = lines.get(cart.id());
+            // Carts holding only products no longer sold are marked but not reminded
+            if (marked.contains(cart.id()) && cartLines != null) {
+                reminders.add(new EmailService.CartReminder(cart.email(), cart.name(), cartLines));
+            }
+        }
+        if (!reminders.isEmpty()) {
+            emailService.sendCartReminderEmails(reminders);
+        }
+        return reminders.size();
+    }
+
+    /** Sleeps off what is left of the time {@code sent} reminders may take at the configured rate. */
+    private void pace(int sent, long startedNanos) {
+        long remaining = Duration.ofSeconds(sent).dividedBy(Math.max(1, remindersPerSecond)).toNanos()
+                - (System.nanoTime() - startedNanos);
+        if (remaining <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while pacing cart reminders", e);
+        }
+    }
+
+    private void evict(List<Long> userIds) {
+        for (Long userId : userIds) {
+            try {
+                hotCartStore.evict(userId);
+            } catch (HotCartStore.UnavailableException e) {
+                // Stale Redis copy is dropped by write-behind, or expires
+                return;
+            }
+        }
+    }
+
+    private record IdleCart(long id, Timestamp updatedAt, String email, String name) {
+    }
+}
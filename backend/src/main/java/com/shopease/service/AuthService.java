@@ -27,9 +27,14 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtUtils jwtUtils;
     private final EmailService emailService;
+    private final CartService cartService;
 
+    /**
+     * @param guestCartToken token of the guest cart to move into the new
+     *                       user's cart, or null
+     */
     @Transactional
-    public JwtResponse registerUser(RegisterRequest signUpRequest) {
+    public JwtResponse registerUser(RegisterRequest signUpRequest, String guestCartToken) {
         if (userRepository.existsByEmail(signUpRequest.getEmail())) {
             throw new BadRequestException("Error: Email is already in use!");
         }
@@ -54,10 +59,15 @@ public class AuthService {
         emailService.sendWelcomeEmail(user);
 
         // Auto-login after registration
-        return authenticateUser(new LoginRequest(signUpRequest.getEmail(), signUpRequest.getPassword()));
+        return authenticateUser(new LoginRequest(signUpRequest.getEmail(), signUpRequest.getPassword()),
+                guestCartToken);
     }
 
-    public JwtResponse authenticateUser(LoginRequest loginRequest) {
+    /**
+     * @param guestCartToken token of a guest cart to merge into the user's
+     *                       cart, or null
+     */
+    public JwtResponse authenticateUser(LoginRequest loginRequest, String guestCartToken) {
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
 
@@ -66,6 +76,10 @@ public class AuthService {
 
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
+        if (guestCartToken != null) {
+            cartService.mergeGuestCart(userDetails.getId(), guestCartToken);
+        }
+
         return JwtResponse.builder()
                 .accessToken(jwt)
                 .refreshToken(jwt) // In a real app, generate a separate persistent refresh token
@@ -0,0 +1,30 @@
+package com.shopease.service;
+
+/**
+ * Identifies a cart line: a product, or one variant of it. Written into Redis
+ * field names as {@code productId} or {@code productId:variantId}, so lines
+ * of products without variants keep the form they had before variants.
+ */
+record CartLineKey(Long productId, Long variantId) {
+
+    static CartLineKey of(Long productId, Long variantId) {
+        return new CartLineKey(productId, variantId);
+    }
+
+    static CartLineKey parse(String key) {
+        int colon = key.indexOf(':');
+        return colon < 0
+                ? new CartLineKey(Long.valueOf(key), null)
+                : new CartLineKey(Long.valueOf(key.substring(0, colon)), Long.valueOf(key.substring(colon + 1)));
+    }
+
+    /** The variant id, 0 for a product line, as stored in bigint arrays. */
+    long variantOrZero() {
+        return variantId != null ? variantId : 0;
+    }
+
+    @Override
+    public String toString() {
+        return variantId == null ? productId.toString() : productId + ":" + variantId;
+    }
+}
@@ -1,108 +1,323 @@
 package com.shopease.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopease.dto.request.CartUpdateRequest;
+import com.shopease.dto.response.CartSummary;
 import com.shopease.entity.Cart;
 import com.shopease.entity.CartItem;
 import com.shopease.entity.Product;
-import com.shopease.entity.User;
+import com.shopease.entity.ProductVariant;
 import com.shopease.entity.Coupon;
 import com.shopease.exception.BadRequestException;
 import com.shopease.exception.ResourceNotFoundException;
+import com.shopease.exception.ServiceUnavailableException;
+import com.shopease.event.ProductPriceChangedEvent;
+import com.shopease.pricing.PricingEngine;
 import com.shopease.repository.CartRepository;
 import com.shopease.repository.CouponRepository;
+import com.shopease.repository.ProductRepository;
+import com.shopease.repository.ProductVariantRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Cart operations. Carts are served from {@link HotCartStore}, so a request
+ * costs one Redis round-trip and no SQL once the cart is loaded; product
+ * details come from the product cache. While Redis is unavailable the same
+ * operations run against Postgres.
+ *
+ * Cart lines are identified by their product id, plus the variant id for a
+ * variant, in both modes, since lines held in Redis have no cart_items row
+ * yet. Variants are resolved from {@link VariantIndex}.
+ *
+ * Anonymous shoppers get a guest cart, held only in Redis under a device
+ * token, which {@link #mergeGuestCart} folds into their cart when they log in.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CartService {
 
+    // Adds to the line within stock, stamps the cart and sums the other lines, in one statement.
+    // Stock is the variant's for a variant line, otherwise the product's.
+    // The final SELECT sees cart_items as before the insert, hence the explicit 1 + and quantity +.
+    private static final String ADD_LINE_SQL = "WITH line AS ("
+            + "INSERT INTO cart_items (cart_id, product_id, variant_id, quantity) "
+            + "SELECT c.id, p.id, v.id, ? FROM carts c "
+            + "JOIN products p ON p.id = ? AND p.active "
+            + "LEFT JOIN product_variants v ON v.id = ?::bigint AND v.product_id = p.id AND v.active "
+            + "WHERE c.user_id = ? AND (v.id IS NULL) = (?::bigint IS NULL) "
+            + "AND COALESCE(v.stock_quantity, p.stock_quantity) >= ? "
+            + "ON CONFLICT ON CONSTRAINT cart_items_line_key "
+            + "DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity "
+            + "WHERE cart_items.quantity + EXCLUDED.quantity <= COALESCE("
+            + "(SELECT stock_quantity FROM product_variants WHERE id = EXCLUDED.variant_id), "
+            + "(SELECT stock_quantity FROM products WHERE id = EXCLUDED.product_id)) "
+            + "RETURNING cart_id, product_id, variant_id, quantity), "
+            + "stamped AS (UPDATE carts SET updated_at = ? FROM line WHERE carts.id = line.cart_id) "
+            + "SELECT line.cart_id, line.quantity, 1 + COUNT(i.id) AS line_count, "
+            + "line.quantity + COALESCE(SUM(i.quantity), 0) AS total_quantity "
+            + "FROM line LEFT JOIN cart_items i ON i.cart_id = line.cart_id "
+            + "AND NOT (i.product_id = line.product_id AND i.variant_id IS NOT DISTINCT FROM line.variant_id) "
+            + "GROUP BY line.cart_id, line.quantity";
+    // Prices lines as PricingEngine does, from Postgres; lines no longer sold count 0
+    private static final String LINES_SUBTOTAL_SQL = "SELECT COALESCE(SUM("
+            + "COALESCE(v.price_override, p.sale_price, p.price) * l.quantity), 0) "
+            + "FROM unnest(?::bigint[], ?::bigint[], ?::int[]) AS l(product_id, variant_id, quantity) "
+            + "JOIN products p ON p.id = l.product_id AND p.active "
+            + "LEFT JOIN product_variants v ON v.id = l.variant_id AND v.product_id = p.id AND v.active "
+            + "WHERE l.variant_id = 0 OR v.id IS NOT NULL";
+
     private final CartRepository cartRepository;
     private final ProductService productService;
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository variantRepository;
+    private final VariantIndex variantIndex;
     private final CouponRepository couponRepository;
+    private final HotCartStore hotCartStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final PricingEngine pricing;
 
-    @Transactional(readOnly = true)
-    public Cart getCartByUserId(Long userId) {
-        return cartRepository.findByUserId(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user"));
+    public Cart getCart(Long userId) {
+        HotCartStore.Applied applied = hot(userId, "read");
+        if (applied != null) {
+            return view(userId, applied.cart());
+        }
+        return transactionTemplate.execute(status -> view(cartRepository.findByUserId(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user"))));
     }
 
-    @Transactional
-    public Cart addItemToCart(User user, Long productId, int quantity) {
+    /**
+     * Adds to the line for {@code productId}, or for one of its variants.
+     * Returns only a summary, so no product is looked up beyond the one added;
+     * on Postgres the whole add is a single statement whatever the size of the
+     * cart.
+     *
+     * @param variantId null for the product itself
+     */
+    public CartSummary addItemToCart(Long userId, Long productId, Long variantId, int quantity) {
         if (quantity <= 0) {
             throw new BadRequestException("Quantity must be greater than 0");
         }
 
-        Cart cart = getCartByUserId(user.getId());
-        Product product = productService.getProductById(productId);
+        Sellable sellable = sellable(productId, variantId);
 
-        if (product.getStockQuantity() < quantity) {
+        if (sellable.stock() < quantity) {
             throw new BadRequestException("Not enough stock available");
         }
 
-        Optional<CartItem> existingItem = cart.getItems().stream()
-                .filter(item -> item.getProduct().getId().equals(productId))
-                .findFirst();
-
-        if (existingItem.isPresent()) {
-            CartItem item = existingItem.get();
-            if (product.getStockQuantity() < item.getQuantity() + quantity) {
+        HotCartStore.Applied applied = hot(userId, "add", sellable.key(), quantity, sellable.stock(),
+                sellable.unitPrice());
+        if (applied != null) {
+            if (!applied.ok()) {
                 throw new BadRequestException("Not enough stock available for total quantity");
             }
-            item.setQuantity(item.getQuantity() + quantity);
-        } else {
-            CartItem newItem = new CartItem();
-            newItem.setCart(cart);
-            newItem.setProduct(product);
-            newItem.setQuantity(quantity);
-            cart.getItems().add(newItem);
+            HotCartStore.HotCart hot = applied.cart();
+            return CartSummary.builder()
+                    .cartId(hot.cartId())
+                    .productId(productId)
+                    .variantId(variantId)
+                    .quantity(hot.lines().get(sellable.key()))
+                    .lineCount(hot.lines().size())
+                    .totalQuantity(hot.lines().values().stream().mapToInt(Integer::intValue).sum())
+                    .subtotal(hot.subtotalPaise() == null ? null : PricingEngine.toRupees(hot.subtotalPaise()))
+                    .build();
         }
 
-        return cartRepository.save(cart);
+        List<CartSummary> added = jdbcTemplate.query(ADD_LINE_SQL, (rs, row) -> CartSummary.builder()
+                        .cartId(rs.getLong("cart_id"))
+                        .productId(productId)
+                        .variantId(variantId)
+                        .quantity(rs.getInt("quantity"))
+                        .lineCount(rs.getInt("line_count"))
+                        .totalQuantity(rs.getInt("total_quantity"))
+                        .build(),
+                quantity, productId, variantId, userId, variantId, quantity, Timestamp.valueOf(LocalDateTime.now()));
+        if (added.isEmpty()) {
+            throw new BadRequestException("Not enough stock available for total quantity");
+        }
+        return added.get(0);
     }
 
-    @Transactional
-    public Cart updateItemQuantity(User user, Long cartItemId, int quantity) {
-        Cart cart = getCartByUserId(user.getId());
+    /** Sets the quantity of the line for {@code productId} and {@code variantId}; 0 removes it. */
+    public Cart updateItemQuantity(Long userId, Long productId, Long variantId, int quantity) {
+        if (quantity < 0) {
+            throw new BadRequestException("Quantity cannot be negative");
+        }
+        if (quantity == 0) {
+            return removeItemFromCart(userId, productId, variantId);
+        }
 
-        CartItem item = cart.getItems().stream()
-                .filter(i -> i.getId().equals(cartItemId))
-                .findFirst()
-                .orElseThrow(() -> new ResourceNotFoundException("Item not found in cart"));
+        Sellable sellable = sellable(productId, variantId);
+        if (sellable.stock() < quantity) {
+            throw new BadRequestException("Not enough stock available");
+        }
 
-        if (quantity == 0) {
-            cart.getItems().remove(item);
-        } else {
-            if (item.getProduct().getStockQuantity() < quantity) {
-                throw new BadRequestException("Not enough stock available");
+        HotCartStore.Applied applied = hot(userId, "set", sellable.key(), quantity, sellable.stock(),
+                sellable.unitPrice());
+        if (applied != null) {
+            if (!applied.ok()) {
+                throw new ResourceNotFoundException("Item not found in cart");
             }
+            return view(userId, applied.cart());
+        }
+
+        return inDatabase(userId, cart -> {
+            CartItem item = findLine(cart, sellable.key())
+                    .orElseThrow(() -> new ResourceNotFoundException("Item not found in cart"));
             item.setQuantity(quantity);
+            return cartRepository.save(cart);
+        });
+    }
+
+    /**
+     * Applies several line changes in order, all or none. Stock is checked
+     * for every product from one query, and for every variant from
+     * {@link VariantIndex}, against the quantity each change leaves in the
+     * cart.
+     */
+    public Cart updateCart(Long userId, List<CartUpdateRequest.Operation> operations) {
+        for (CartUpdateRequest.Operation operation : operations) {
+            Integer quantity = operation.getQuantity();
+            if (operation.getType() == CartUpdateRequest.Type.ADD && (quantity == null || quantity <= 0)) {
+                throw new BadRequestException("Quantity must be greater than 0");
+            }
+            if (operation.getType() == CartUpdateRequest.Type.UPDATE && (quantity == null || quantity < 0)) {
+                throw new BadRequestException("Quantity cannot be negative");
+            }
         }
 
-        return cartRepository.save(cart);
+        Map<Long, Product> products = productRepository.findAllById(operations.stream()
+                        .map(CartUpdateRequest.Operation::getProductId)
+                        .collect(Collectors.toSet())).stream()
+                .filter(Product::isActive)
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        // Null for a line whose product or variant is no longer sold
+        Map<CartLineKey, Sellable> sellables = new LinkedHashMap<>();
+        for (CartUpdateRequest.Operation operation : operations) {
+            CartLineKey key = CartLineKey.of(operation.getProductId(), operation.getVariantId());
+            Product product = products.get(key.productId());
+            ProductVariant variant = product == null || key.variantId() == null ? null
+                    : variantIndex.find(key.productId(), key.variantId()).orElse(null);
+            if (product != null && key.variantId() != null && variant == null && !isRemoval(operation)) {
+                requireVariantOf(key.productId(), key.variantId());
+            }
+            boolean sold = product != null && (key.variantId() == null || variant != null);
+            sellables.put(key, sold ? sellable(product, variant) : null);
+        }
+
+        List<Object> changes = new ArrayList<>(operations.size() * 5);
+        for (CartUpdateRequest.Operation operation : operations) {
+            CartLineKey key = CartLineKey.of(operation.getProductId(), operation.getVariantId());
+            Sellable sellable = sellables.get(key);
+            if (isRemoval(operation)) {
+                changes.addAll(List.of("remove", key, 0, 0, sellable == null ? 0 : sellable.unitPrice()));
+                continue;
+            }
+            if (sellable == null) {
+                throw new ResourceNotFoundException("Product is no longer available: " + key);
+            }
+            changes.addAll(List.of(operation.getType() == CartUpdateRequest.Type.ADD ? "add" : "set", key,
+                    operation.getQuantity(), sellable.stock(), sellable.unitPrice()));
+        }
+
+        HotCartStore.Applied applied = hot(userId, "batch", changes.toArray());
+        if (applied != null) {
+            if ("MISSING".equals(applied.status())) {
+                throw new ResourceNotFoundException("Item not found in cart: " + applied.refusedLine());
+            }
+            if (!applied.ok()) {
+                throw new BadRequestException("Not enough stock available for product " + applied.refusedLine());
+            }
+            return view(userId, applied.cart());
+        }
+
+        return inDatabase(userId, cart -> {
+            for (CartUpdateRequest.Operation operation : operations) {
+                CartLineKey key = CartLineKey.of(operation.getProductId(), operation.getVariantId());
+                Optional<CartItem> line = findLine(cart, key);
+                if (isRemoval(operation)) {
+                    line.ifPresent(cart.getItems()::remove);
+                    continue;
+                }
+                int quantity = operation.getQuantity();
+                if (operation.getType() == CartUpdateRequest.Type.UPDATE && line.isEmpty()) {
+                    throw new ResourceNotFoundException("Item not found in cart: " + key);
+                }
+                if (operation.getType() == CartUpdateRequest.Type.ADD) {
+                    quantity += line.map(CartItem::getQuantity).orElse(0);
+                }
+                if (quantity > sellables.get(key).stock()) {
+                    throw new BadRequestException("Not enough stock available for product " + key);
+                }
+                if (line.isPresent()) {
+                    line.get().setQuantity(quantity);
+                } else {
+                    CartItem item = new CartItem();
+                    item.setCart(cart);
+                    item.setProduct(productRepository.getReferenceById(key.productId()));
+                    item.setVariant(key.variantId() == null ? null
+                            : variantRepository.getReferenceById(key.variantId()));
+                    item.setQuantity(quantity);
+                    cart.getItems().add(item);
+                }
+            }
+            return cartRepository.save(cart);
+        });
     }
 
-    @Transactional
-    public Cart removeItemFromCart(User user, Long cartItemId) {
-        Cart cart = getCartByUserId(user.getId());
-        cart.getItems().removeIf(item -> item.getId().equals(cartItemId));
-        return cartRepository.save(cart);
+    /** @param variantId null for the product itself */
+    public Cart removeItemFromCart(Long userId, Long productId, Long variantId) {
+        CartLineKey key = CartLineKey.of(productId, variantId);
+        HotCartStore.Applied applied = hot(userId, "remove", key, unitPriceIfSold(key));
+        if (applied != null) {
+            return view(userId, applied.cart());
+        }
+        return inDatabase(userId, cart -> {
+            findLine(cart, key).ifPresent(cart.getItems()::remove);
+            return cartRepository.save(cart);
+        });
     }
 
-    @Transactional
-    public Cart clearCart(User user) {
-        Cart cart = getCartByUserId(user.getId());
-        cart.getItems().clear();
-        cart.setCoupon(null);
-        return cartRepository.save(cart);
+    public Cart clearCart(Long userId) {
+        HotCartStore.Applied applied = hot(userId, "clear");
+        if (applied != null) {
+            return view(userId, applied.cart());
+        }
+        return inDatabase(userId, cart -> {
+            cart.getItems().clear();
+            cart.setCoupon(null);
+            return cartRepository.save(cart);
+        });
     }
 
-    @Transactional
-    public Cart applyCoupon(User user, String code) {
-        Cart cart = getCartByUserId(user.getId());
+    public Cart applyCoupon(Long userId, String code) {
         Coupon coupon = couponRepository.findByCode(code.toUpperCase())
                 .orElseThrow(() -> new ResourceNotFoundException("Coupon not found"));
 
@@ -110,22 +325,483 @@ public class CartService {
             throw new BadRequestException("Coupon is expired or inactive");
         }
 
-        BigDecimal subtotal = cart.getItems().stream()
-                .map(item -> item.getProduct().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        HotCartStore.Applied current = hot(userId, "read");
+        if (current != null) {
+            checkMinimumAmount(coupon, view(userId, current.cart()));
+            HotCartStore.Applied applied = hot(userId, "coupon", coupon.getId(), toJson(coupon));
+            if (applied != null) {
+                return view(userId, applied.cart());
+            }
+        }
+
+        return inDatabase(userId, cart -> {
+            checkMinimumAmount(coupon, cart);
+            cart.setCoupon(coupon);
+            return cartRepository.save(cart);
+        });
+    }
+
+    public Cart removeCoupon(Long userId) {
+        HotCartStore.Applied applied = hot(userId, "coupon");
+        if (applied != null) {
+            return view(userId, applied.cart());
+        }
+        return inDatabase(userId, cart -> {
+            cart.setCoupon(null);
+            return cartRepository.save(cart);
+        });
+    }
+
+    public Cart getGuestCart(String token) {
+        return view(null, guest(token, "read").cart());
+    }
+
+    /** @param variantId null for the product itself */
+    public Cart addItemToGuestCart(String token, Long productId, Long variantId, int quantity) {
+        if (quantity <= 0) {
+            throw new BadRequestException("Quantity must be greater than 0");
+        }
+
+        Sellable sellable = sellable(productId, variantId);
+        if (sellable.stock() < quantity) {
+            throw new BadRequestException("Not enough stock available");
+        }
+
+        HotCartStore.Applied applied = guest(token, "add", sellable.key(), quantity, sellable.stock());
+        if ("FULL".equals(applied.status())) {
+            throw new BadRequestException("Guest cart is full, log in to add more products");
+        }
+        if (!applied.ok()) {
+            throw new BadRequestException("Not enough stock available for total quantity");
+        }
+        return view(null, applied.cart());
+    }
+
+    /** Sets the quantity of the guest line for {@code productId} and {@code variantId}; 0 removes it. */
+    public Cart updateGuestItemQuantity(String token, Long productId, Long variantId, int quantity) {
+        if (quantity < 0) {
+            throw new BadRequestException("Quantity cannot be negative");
+        }
+        if (quantity == 0) {
+            return removeItemFromGuestCart(token, productId, variantId);
+        }
+
+        Sellable sellable = sellable(productId, variantId);
+        if (sellable.stock() < quantity) {
+            throw new BadRequestException("Not enough stock available");
+        }
+
+        HotCartStore.Applied applied = guest(token, "set", sellable.key(), quantity, sellable.stock());
+        if (!applied.ok()) {
+            throw new ResourceNotFoundException("Item not found in cart");
+        }
+        return view(null, applied.cart());
+    }
 
-        if (coupon.getMinOrderAmount() != null && subtotal.compareTo(coupon.getMinOrderAmount()) < 0) {
+    public Cart removeItemFromGuestCart(String token, Long productId, Long variantId) {
+        return view(null, guest(token, "remove", CartLineKey.of(productId, variantId)).cart());
+    }
+
+    public Cart clearGuestCart(String token) {
+        return view(null, guest(token, "clear").cart());
+    }
+
+    /**
+     * Adds the lines of a guest cart to the user's cart in one step and
+     * deletes the guest cart. Quantities are capped at the current stock and
+     * lines of products or variants no longer sold are dropped. Never fails
+     * the caller: if Redis is unavailable the guest cart is left for the next
+     * login.
+     *
+     * Called in a transaction (registration), the merge runs once it has
+     * committed, so a rolled-back sign-up keeps its guest cart.
+     */
+    public void mergeGuestCart(Long userId, String token) {
+        if (!isGuestToken(token)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    merge(userId, token);
+                }
+            });
+        } else {
+            merge(userId, token);
+        }
+    }
+
+    private void merge(Long userId, String token) {
+        try {
+            Map<CartLineKey, Integer> lines = hotCartStore.guest(token, "read").cart().lines();
+            if (lines.isEmpty()) {
+                return;
+            }
+            Map<Long, Product> products = productRepository.findAllById(lines.keySet().stream()
+                            .map(CartLineKey::productId)
+                            .collect(Collectors.toSet())).stream()
+                    .filter(Product::isActive)
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+            List<Object> merged = new ArrayList<>(lines.size() * 4);
+            lines.forEach((key, quantity) -> {
+                Product product = products.get(key.productId());
+                if (product == null) {
+                    return;
+                }
+                ProductVariant variant = key.variantId() == null ? null
+                        : variantIndex.find(key.productId(), key.variantId()).orElse(null);
+                if (key.variantId() == null || variant != null) {
+                    Sellable sellable = sellable(product, variant);
+                    merged.addAll(List.of(key, quantity, sellable.stock(), sellable.unitPrice()));
+                }
+            });
+
+            if (hotCartStore.merge(userId, token, merged) == null) {
+                load(userId);
+                hotCartStore.merge(userId, token, merged);
+            }
+            log.info("[CartService] Merged {} guest cart line(s) into the cart of user {}", merged.size() / 4,
+                    userId);
+        } catch (HotCartStore.UnavailableException e) {
+            log.warn("[CartService] Guest cart not merged into the cart of user {}, Redis unavailable", userId);
+        }
+    }
+
+    /**
+     * Returns the cart to check out, with products, variants and coupon read
+     * from Postgres in the checkout transaction so prices are current. Lines
+     * of variants no longer sold are left out.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Cart getCartForCheckout(Long userId) {
+        HotCartStore.Applied applied = null;
+        try {
+            // Queues the hot cart for write-behind, so a copy left behind by a failed eviction is dropped
+            applied = hotCartStore.apply(userId, "checkout");
+        } catch (HotCartStore.UnavailableException e) {
+            hotCartStore.fellBack();
+        }
+        if (applied == null) {
+            return cartRepository.findByUserId(userId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user"));
+        }
+
+        HotCartStore.HotCart hot = applied.cart();
+        Map<Long, Product> products = productRepository.findAllById(hot.lines().keySet().stream()
+                        .map(CartLineKey::productId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        Map<Long, ProductVariant> variants = variantRepository.findAllById(hot.lines().keySet().stream()
+                        .map(CartLineKey::variantId)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet())).stream()
+                .filter(ProductVariant::isActive)
+                .collect(Collectors.toMap(ProductVariant::getId, Function.identity()));
+        Cart cart = Cart.builder()
+                .id(hot.cartId())
+                .coupon(hot.couponId() == null ? null : couponRepository.findById(hot.couponId()).orElse(null))
+                .build();
+        hot.lines().forEach((key, quantity) -> {
+            Product product = products.get(key.productId());
+            ProductVariant variant = key.variantId() == null ? null : variants.get(key.variantId());
+            if (product != null && (key.variantId() == null || variant != null)) {
+                cart.getItems().add(line(cart, product, variant, quantity));
+            }
+        });
+        return cart;
+    }
+
+    /**
+     * Empties the cart in the checkout transaction and drops its Redis copy
+     * once the order is committed.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void clearAfterCheckout(Long userId) {
+        jdbcTemplate.update("DELETE FROM cart_items WHERE cart_id = (SELECT id FROM carts WHERE user_id = ?)",
+                userId);
+        jdbcTemplate.update("UPDATE carts SET coupon_id = NULL, updated_at = ? WHERE user_id = ?",
+                Timestamp.valueOf(LocalDateTime.now()), userId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    hotCartStore.evict(userId);
+                } catch (HotCartStore.UnavailableException e) {
+                    log.debug("[CartService] Hot cart of user {} left for write-behind to drop", userId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Makes stored cart subtotals stale once a price change has committed.
+     * Checkout always prices from Postgres, so a bump lost to a Redis outage
+     * can only leave a displayed total behind, not a charged one.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPriceChanged(ProductPriceChangedEvent event) {
+        try {
+            hotCartStore.pricesChanged();
+        } catch (HotCartStore.UnavailableException e) {
+            log.warn("[CartService] Could not mark cart totals stale after the price of product {} changed",
+                    event.getProductId());
+        }
+    }
+
+    /**
+     * Runs an operation on the hot cart, loading the cart from Postgres first
+     * if it is not in Redis.
+     *
+     * @return null if Redis is unavailable; the caller falls back to Postgres
+     */
+    private HotCartStore.Applied hot(Long userId, String operation, Object... arguments) {
+        try {
+            HotCartStore.Applied applied = hotCartStore.apply(userId, operation, arguments);
+            if (applied == null) {
+                load(userId);
+                applied = hotCartStore.apply(userId, operation, arguments);
+            }
+            if (applied == null) {
+                hotCartStore.fellBack();
+            }
+            return applied;
+        } catch (HotCartStore.UnavailableException e) {
+            hotCartStore.fellBack();
+            return null;
+        }
+    }
+
+    private HotCartStore.Applied guest(String token, String operation, Object... arguments) {
+        if (!isGuestToken(token)) {
+            throw new BadRequestException("Invalid cart token");
+        }
+        try {
+            return hotCartStore.guest(token, operation, arguments);
+        } catch (HotCartStore.UnavailableException e) {
+            throw new ServiceUnavailableException("Guest carts are temporarily unavailable, please log in");
+        }
+    }
+
+    /** Guest tokens are issued as UUIDs; anything else is not used as a Redis key. */
+    private static boolean isGuestToken(String token) {
+        if (token == null || token.length() != 36) {
+            return false;
+        }
+        try {
+            UUID.fromString(token);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void load(Long userId) {
+        List<Map<String, Object>> carts = jdbcTemplate.queryForList(
+                "SELECT id, coupon_id, updated_at FROM carts WHERE user_id = ?", userId);
+        if (carts.isEmpty()) {
+            throw new ResourceNotFoundException("Cart not found for user");
+        }
+        Long cartId = ((Number) carts.get(0).get("id")).longValue();
+        Number couponId = (Number) carts.get(0).get("coupon_id");
+        Timestamp updatedAt = (Timestamp) carts.get(0).get("updated_at");
+
+        Map<CartLineKey, Integer> lines = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT product_id, variant_id, quantity FROM cart_items WHERE cart_id = ? ORDER BY id",
+                rs -> {
+                    lines.put(CartLineKey.of(rs.getLong("product_id"), rs.getObject("variant_id", Long.class)),
+                            rs.getInt("quantity"));
+                }, cartId);
+        String couponJson = couponId == null ? null
+                : couponRepository.findById(couponId.longValue()).map(this::toJson).orElse(null);
+
+        hotCartStore.seed(userId, cartId, lines, couponJson == null ? null : couponId.longValue(), couponJson,
+                updatedAt == null ? null : updatedAt.toLocalDateTime());
+    }
+
+    /**
+     * Changes the cart in Postgres. updated_at is set explicitly, since
+     * changing only the lines does not make the cart row dirty, and a Redis
+     * copy loaded before this change must be seen as stale.
+     */
+    private Cart inDatabase(Long userId, Function<Cart, Cart> operation) {
+        return transactionTemplate.execute(status -> {
+            Cart cart = cartRepository.findByUserId(userId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Cart not found for user"));
+            cart.setUpdatedAt(LocalDateTime.now());
+            return view(operation.apply(cart));
+        });
+    }
+
+    private static boolean isRemoval(CartUpdateRequest.Operation operation) {
+        return operation.getType() == CartUpdateRequest.Type.REMOVE
+                || (operation.getType() == CartUpdateRequest.Type.UPDATE && operation.getQuantity() == 0);
+    }
+
+    private static Optional<CartItem> findLine(Cart cart, CartLineKey key) {
+        return cart.getItems().stream()
+                .filter(item -> item.getProduct().getId().equals(key.productId()) && Objects.equals(
+                        item.getVariant() == null ? null : item.getVariant().getId(), key.variantId()))
+                .findFirst();
+    }
+
+    private void checkMinimumAmount(Coupon coupon, Cart cart) {
+        long subtotal = cart.getTotals() != null ? cart.getTotals().subtotalPaise() : subtotal(cart);
+        if (!pricing.qualifies(coupon, subtotal)) {
             throw new BadRequestException("Order amount does not meet the minimum requirement for this coupon");
         }
+    }
 
-        cart.setCoupon(coupon);
-        return cartRepository.save(cart);
+    /**
+     * The response shape shared by both modes: a detached cart whose line ids
+     * are product ids, with totals. Lines of products or variants no longer
+     * sold are left out and count for nothing.
+     */
+    private Cart view(Cart cart) {
+        Cart view = Cart.builder().id(cart.getId()).coupon(cart.getCoupon()).updatedAt(cart.getUpdatedAt()).build();
+        for (CartItem item : cart.getItems()) {
+            if (item.getProduct().isActive() && (item.getVariant() == null || item.getVariant().isActive())) {
+                view.getItems().add(line(view, item.getProduct(), item.getVariant(), item.getQuantity()));
+            }
+        }
+        view.setTotals(pricing.totals(subtotal(view), view.getCoupon()));
+        return view;
     }
 
-    @Transactional
-    public Cart removeCoupon(User user) {
-        Cart cart = getCartByUserId(user.getId());
-        cart.setCoupon(null);
-        return cartRepository.save(cart);
+    /**
+     * Uses the subtotal kept with the hot cart. If a price change has made it
+     * stale, a user's cart is priced from Postgres and the result stored for
+     * the next request; a guest cart, which stores no subtotal, is priced
+     * from its lines.
+     *
+     * @param userId null for a guest cart
+     */
+    private Cart view(Long userId, HotCartStore.HotCart hot) {
+        Cart view = Cart.builder().id(hot.cartId()).updatedAt(hot.updatedAt()).build();
+        if (hot.couponJson() != null) {
+            try {
+                view.setCoupon(objectMapper.readValue(hot.couponJson(), Coupon.class));
+            } catch (JsonProcessingException e) {
+                log.warn("[CartService] Unreadable coupon in hot cart {}: {}", hot.cartId(), e.getMessage());
+            }
+        }
+        hot.lines().forEach((key, quantity) -> {
+            try {
+                Sellable sellable = sellable(key.productId(), key.variantId());
+                view.getItems().add(line(view, sellable.product(), sellable.variant(), quantity));
+            } catch (ResourceNotFoundException e) {
+                // Deactivated or deleted since it was added
+            }
+        });
+
+        Long subtotal = hot.subtotalPaise();
+        if (subtotal == null && userId == null) {
+            subtotal = subtotal(view);
+        } else if (subtotal == null) {
+            // Not from the product cache or VariantIndex: they may not have seen the change that bumped
+            // priceVersion yet, and an old subtotal stored under the new version would stay until the next change
+            subtotal = storedSubtotal(hot.lines());
+            try {
+                hotCartStore.apply(userId, "price", subtotal, hot.version(), hot.priceVersion());
+            } catch (HotCartStore.UnavailableException e) {
+                // Priced again on the next request
+            }
+        }
+        view.setTotals(pricing.totals(subtotal, view.getCoupon()));
+        return view;
+    }
+
+    /**
+     * Prices lines from Postgres. Price changes commit before priceVersion is
+     * bumped, so this sees every change up to the version the cart was read at.
+     */
+    private long storedSubtotal(Map<CartLineKey, Integer> lines) {
+        if (lines.isEmpty()) {
+            return 0;
+        }
+        List<CartLineKey> keys = new ArrayList<>(lines.keySet());
+        BigDecimal subtotal = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LINES_SUBTOTAL_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", keys.stream().map(CartLineKey::productId).toArray()));
+            ps.setArray(2, con.createArrayOf("bigint", keys.stream().map(CartLineKey::variantOrZero).toArray()));
+            ps.setArray(3, con.createArrayOf("integer", keys.stream().map(lines::get).toArray()));
+            return ps;
+        }, rs -> rs.next() ? rs.getBigDecimal(1) : BigDecimal.ZERO);
+        return PricingEngine.toPaise(subtotal);
+    }
+
+    private long subtotal(Cart cart) {
+        return cart.getItems().stream()
+                .mapToLong(item -> pricing.lineTotal(item.getProduct(), item.getVariant(), item.getQuantity()))
+                .sum();
+    }
+
+    /** What the line was counted at; 0 once its product or variant is no longer sold. */
+    private long unitPriceIfSold(CartLineKey key) {
+        try {
+            return sellable(key.productId(), key.variantId()).unitPrice();
+        } catch (ResourceNotFoundException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The product from the product cache and, if {@code variantId} is given,
+     * its variant from {@link VariantIndex}. The product is a copy of the
+     * cached view, so cart lines never share an instance.
+     *
+     * @throws ResourceNotFoundException if either is not sold
+     * @throws BadRequestException if the variant is one of another product
+     */
+    private Sellable sellable(Long productId, Long variantId) {
+        Product product = productService.getProductDetails(productId).toProduct();
+        if (variantId == null) {
+            return sellable(product, null);
+        }
+        ProductVariant variant = variantIndex.find(productId, variantId).orElse(null);
+        if (variant == null) {
+            requireVariantOf(productId, variantId);
+            throw new ResourceNotFoundException("Variant not found with id: " + variantId);
+        }
+        return sellable(product, variant);
+    }
+
+    /** Refuses a variant id that exists but belongs to another product; read only when the index missed. */
+    private void requireVariantOf(Long productId, Long variantId) {
+        variantRepository.findById(variantId)
+                .map(variant -> variant.getProduct().getId())
+                .filter(owner -> !owner.equals(productId))
+                .ifPresent(owner -> {
+                    throw new BadRequestException("Variant " + variantId + " is not a variant of product "
+                            + productId);
+                });
+    }
+
+    private static CartItem line(Cart cart, Product product, ProductVariant variant, int quantity) {
+        return CartItem.builder().id(product.getId()).cart(cart).product(product).variant(variant).quantity(quantity)
+                .build();
+    }
+
+    private Sellable sellable(Product product, ProductVariant variant) {
+        return new Sellable(product, variant, pricing.unitPrice(product, variant));
+    }
+
+    /** What a cart line is for: a product, or one of its variants, with the stock and price (paise) that apply. */
+    private record Sellable(Product product, ProductVariant variant, long unitPrice) {
+        CartLineKey key() {
+            return CartLineKey.of(product.getId(), variant == null ? null : variant.getId());
+        }
+
+        int stock() {
+            return variant != null ? variant.getStockQuantity() : product.getStockQuantity();
+        }
+    }
+
+    private String toJson(Coupon coupon) {
+        try {
+            return objectMapper.writeValueAsString(coupon);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize coupon " + coupon.getId(), e);
+        }
     }
 }
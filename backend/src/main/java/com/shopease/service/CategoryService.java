@@ -1,36 +1,117 @@
 package com.shopease.service;
 
 import com.shopease.entity.Category;
+import com.shopease.event.CategoryChangedEvent;
 import com.shopease.exception.BadRequestException;
 import com.shopease.exception.ResourceNotFoundException;
 import com.shopease.repository.CategoryRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Categories are read on almost every storefront page and change rarely, so
+ * reads are served from an in-memory {@link CategorySnapshot} loaded with one
+ * query. Writes go to the database and the snapshot is rebuilt and swapped in
+ * once they commit.
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile CategorySnapshot snapshot;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        rebuild();
+    }
+
+    private synchronized void rebuild() {
+        List<Category> categories = categoryRepository.findAllWithParent();
+        snapshot = CategorySnapshot.of(categories);
+        log.debug("[CategoryService] Category snapshot rebuilt with {} categories", categories.size());
+    }
+
+    private CategorySnapshot snapshot() {
+        CategorySnapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    rebuild();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
 
     @Transactional(readOnly = true)
     public List<Category> getAllCategories() {
-        return categoryRepository.findByParentIsNull();
+        return snapshot().roots();
     }
 
     @Transactional(readOnly = true)
     public Category getCategoryBySlug(String slug) {
-        return categoryRepository.findBySlug(slug)
-                .orElseThrow(() -> new ResourceNotFoundException("Category not found with slug: " + slug));
+        Category category = snapshot().bySlug(slug);
+        if (category == null) {
+            throw new ResourceNotFoundException("Category not found with slug: " + slug);
+        }
+        return category;
     }
 
     @Transactional(readOnly = true)
     public Category getCategoryById(Long id) {
-        return categoryRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + id));
+        Category category = snapshot().byId(id);
+        if (category == null) {
+            throw new ResourceNotFoundException("Category not found with id: " + id);
+        }
+        return category;
+    }
+
+    /**
+     * Ids of the category and all of its descendants, for in-memory filters.
+     * Empty when the category does not exist.
+     */
+    public Set<Long> getSubtreeIds(Long id) {
+        return snapshot().subtreeIds(id);
+    }
+
+    /**
+     * Materialized path of the category; every product in its subtree has a
+     * category whose path starts with it. Null when the category does not exist.
+     */
+    public String getSubtreePath(Long id) {
+        Category category = snapshot().byId(id);
+        return category != null ? category.getPath() : null;
+    }
+
+    /**
+     * Managed reference for assigning to an entity association. The snapshot
+     * copies are detached and must not be attached to other entities.
+     */
+    @Transactional(readOnly = true)
+    public Category getCategoryReference(Long id) {
+        return categoryRepository.getReferenceById(getCategoryById(id).getId());
     }
 
     @Transactional
@@ -38,12 +119,15 @@ public class CategoryService {
         if (categoryRepository.existsBySlug(category.getSlug())) {
             throw new BadRequestException("Slug already exists");
         }
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        saved.setPath(pathUnder(saved.getParent(), saved.getId()));
+        eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId()));
+        return saved;
     }
 
     @Transactional
     public Category updateCategory(Long id, Category categoryDetails) {
-        Category category = getCategoryById(id);
+        Category category = findManaged(id);
 
         if (!category.getSlug().equals(categoryDetails.getSlug()) &&
                 categoryRepository.existsBySlug(categoryDetails.getSlug())) {
@@ -55,19 +139,41 @@ public class CategoryService {
         category.setDescription(categoryDetails.getDescription());
         category.setImageUrl(categoryDetails.getImageUrl());
 
+        Category parent = null;
         if (categoryDetails.getParent() != null && categoryDetails.getParent().getId() != null) {
-            Category parent = getCategoryById(categoryDetails.getParent().getId());
-            category.setParent(parent);
-        } else {
-            category.setParent(null);
+            parent = findManaged(categoryDetails.getParent().getId());
+            if (category.getPath() != null && parent.getPath() != null
+                    && parent.getPath().startsWith(category.getPath())) {
+                throw new BadRequestException("Category cannot be moved under itself or its subcategories");
+            }
         }
+        category.setParent(parent);
 
-        return categoryRepository.save(category);
+        String newPath = pathUnder(parent, category.getId());
+        if (category.getPath() != null && !category.getPath().equals(newPath)) {
+            categoryRepository.movePathPrefix(category.getPath(), newPath);
+        }
+        category.setPath(newPath);
+
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId()));
+        return saved;
     }
 
     @Transactional
     public void deleteCategory(Long id) {
-        Category category = getCategoryById(id);
+        Category category = findManaged(id);
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
+    }
+
+    private static String pathUnder(Category parent, Long id) {
+        String prefix = parent != null && parent.getPath() != null ? parent.getPath() : "/";
+        return prefix + id + "/";
+    }
+
+    private Category findManaged(Long id) {
+        return categoryRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + id));
     }
 }
@@ -0,0 +1,97 @@
+package com.shopease.service;
+
+import com.shopease.entity.Category;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable view of the whole category forest. Built from a single flat
+ * query, the nodes are detached copies so serialising them never touches the
+ * persistence context, and lookups by id or slug are plain map reads.
+ */
+final class CategorySnapshot {
+
+    private final List<Category> roots;
+    private final Map<Long, Category> byId;
+    private final Map<String, Category> bySlug;
+
+    private CategorySnapshot(List<Category> roots, Map<Long, Category> byId, Map<String, Category> bySlug) {
+        this.roots = roots;
+        this.byId = byId;
+        this.bySlug = bySlug;
+    }
+
+    /** @param categories every category, with {@code parent} already fetched */
+    static CategorySnapshot of(List<Category> categories) {
+        Map<Long, Category> byId = new LinkedHashMap<>();
+        Map<Long, List<Category>> children = new HashMap<>();
+        for (Category c : categories) {
+            byId.put(c.getId(), Category.builder()
+                    .id(c.getId())
+                    .name(c.getName())
+                    .slug(c.getSlug())
+                    .description(c.getDescription())
+                    .imageUrl(c.getImageUrl())
+                    .path(c.getPath())
+                    .createdAt(c.getCreatedAt())
+                    .build());
+            children.put(c.getId(), new ArrayList<>());
+        }
+
+        List<Category> roots = new ArrayList<>();
+        for (Category c : categories) {
+            Category copy = byId.get(c.getId());
+            Category parent = c.getParent() != null ? byId.get(c.getParent().getId()) : null;
+            if (parent == null) {
+                roots.add(copy);
+            } else {
+                copy.setParent(parent);
+                children.get(parent.getId()).add(copy);
+            }
+        }
+
+        Map<String, Category> bySlug = new HashMap<>();
+        for (Category copy : byId.values()) {
+            copy.setSubcategories(Collections.unmodifiableList(children.get(copy.getId())));
+            bySlug.put(copy.getSlug(), copy);
+        }
+        return new CategorySnapshot(Collections.unmodifiableList(roots), Map.copyOf(byId), Map.copyOf(bySlug));
+    }
+
+    List<Category> roots() {
+        return roots;
+    }
+
+    Category byId(Long id) {
+        return id != null ? byId.get(id) : null;
+    }
+
+    Category bySlug(String slug) {
+        return slug != null ? bySlug.get(slug) : null;
+    }
+
+    /** Ids of the category and all of its descendants; empty for an unknown id. */
+    Set<Long> subtreeIds(Long id) {
+        Category root = byId(id);
+        if (root == null) {
+            return Set.of();
+        }
+        Set<Long> ids = new HashSet<>();
+        Deque<Category> pending = new ArrayDeque<>(List.of(root));
+        while (!pending.isEmpty()) {
+            Category next = pending.pop();
+            ids.add(next.getId());
+            pending.addAll(next.getSubcategories());
+        }
+        return ids;
+    }
+}
@@ -7,10 +7,15 @@ import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -36,6 +41,47 @@ public class EmailService {
         sendHtmlEmail(user.getEmail(), subject, body);
     }
 
+    /**
+     * Sends one reminder per abandoned cart over a single mail connection.
+     * Reminders that cannot be built are skipped; a failed send is logged
+     * and not retried. Unlike the other mails this one is synchronous: the
+     * abandoned-cart job calls it from its own thread and paces itself on
+     * how long the sends really took.
+     */
+    public void sendCartReminderEmails(List<CartReminder> reminders) {
+        if (fromAddress == null || fromAddress.isBlank() || fromAddress.equals("noreply@shopease.com")) {
+            log.warn("[EmailService] MAIL_USERNAME not configured — skipping {} cart reminder(s)", reminders.size());
+            return;
+        }
+        List<MimeMessage> messages = new ArrayList<>(reminders.size());
+        for (CartReminder reminder : reminders) {
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+                helper.setFrom(fromAddress, "ShopEase");
+                helper.setTo(reminder.email());
+                helper.setSubject("You left something in your cart — ShopEase");
+                helper.setText(buildCartReminderHtml(reminder), true);
+                messages.add(message);
+            } catch (MessagingException | java.io.UnsupportedEncodingException e) {
+                log.error("[EmailService] Failed to build cart reminder for {}: {}", reminder.email(), e.getMessage());
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+            log.info("[EmailService] Sent {} cart reminder(s)", messages.size());
+        } catch (MailException e) {
+            log.error("[EmailService] Failed to send {} cart reminder(s): {}", messages.size(), e.getMessage());
+        }
+    }
+
+    /** A cart reminder: who to send it to and a line of text per cart line. */
+    public record CartReminder(String email, String name, List<String> lines) {
+    }
+
     private void sendHtmlEmail(String to, String subject, String htmlBody) {
         if (fromAddress == null || fromAddress.isBlank() || fromAddress.equals("noreply@shopease.com")) {
             log.warn("[EmailService] MAIL_USERNAME not configured — skipping email to {}", to);
@@ -130,4 +176,37 @@ public class EmailService {
                 """
                 .formatted(name, order.getId(), itemsHtml, order.getTotalAmount().toPlainString());
     }
+
+    private String buildCartReminderHtml(CartReminder reminder) {
+        StringBuilder itemsHtml = new StringBuilder();
+        for (String line : reminder.lines()) {
+            itemsHtml.append("""
+                    <li style="padding:4px 0;color:#475569">%s</li>
+                    """.formatted(HtmlUtils.htmlEscape(line)));
+        }
+        return """
+                <!DOCTYPE html>
+                <html><body style="font-family:Arial,sans-serif;background:#f4f4f4;margin:0;padding:0">
+                  <div style="max-width:600px;margin:40px auto;background:#fff;border-radius:12px;overflow:hidden;box-shadow:0 4px 20px rgba(0,0,0,.08)">
+                    <div style="background:linear-gradient(135deg,#6366f1,#8b5cf6);padding:40px 32px;text-align:center">
+                      <h1 style="color:#fff;margin:0;font-size:28px">Still thinking it over?</h1>
+                      <p style="color:rgba(255,255,255,.85);margin:8px 0 0">Your cart is waiting for you</p>
+                    </div>
+                    <div style="padding:40px 32px">
+                      <h2 style="color:#1e293b;margin-top:0">Hi %s,</h2>
+                      <p style="color:#475569;line-height:1.7">You left these items in your cart:</p>
+                      <ul style="background:#f8fafc;border-radius:8px;padding:20px 20px 20px 40px;margin:24px 0">
+                        %s
+                      </ul>
+                      <div style="text-align:center;margin:32px 0">
+                        <a href="http://localhost:3000/cart" style="background:#6366f1;color:#fff;padding:14px 28px;border-radius:8px;text-decoration:none;font-weight:600;font-size:16px">Return to Cart</a>
+                      </div>
+                      <hr style="border:none;border-top:1px solid #e2e8f0;margin:32px 0"/>
+                      <p style="color:#94a3b8;font-size:13px;text-align:center">ShopEase — Best products, best prices.</p>
+                    </div>
+                  </div>
+                </body></html>
+                """
+                .formatted(HtmlUtils.htmlEscape(reminder.name()), itemsHtml);
+    }
 }
@@ -0,0 +1,322 @@
+package com.shopease.service;
+
+import com.shopease.dto.response.StockShortageDto;
+import com.shopease.event.ProductStockChangedEvent;
+import com.shopease.exception.BadRequestException;
+import com.shopease.exception.InsufficientStockException;
+import com.shopease.exception.ResourceNotFoundException;
+import com.shopease.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Flash-sale mode for hot products. While enabled, a product's available stock
+ * lives in a Redis counter that checkouts decrement with a Lua script, so they
+ * never queue on the product's row lock. Units sold are accumulated in a
+ * pending hash and applied to products.stock_quantity in batches by
+ * {@link #reconcile()}; Postgres therefore lags Redis by at most one interval.
+ *
+ * All keys share the {flash} hash tag so the multi-key scripts also work on a
+ * Redis Cluster.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class FlashSaleService {
+
+    static final String PENDING_KEY = "shopease:{flash}:pending";
+    static final String STOCK_KEY_PREFIX = "shopease:{flash}:stock:";
+
+    private static final RedisScript<List> RESERVE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/flash_sale_reserve.lua"), List.class);
+    private static final RedisScript<List> RELEASE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/flash_sale_release.lua"), List.class);
+    private static final RedisScript<List> DRAIN_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/flash_sale_drain.lua"), List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductRepository productRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final AtomicBoolean reconcileFailing = new AtomicBoolean();
+
+    /**
+     * Puts the product into flash-sale mode, seeding its counter from the
+     * current stock. Pending deltas from an earlier sale are applied first so
+     * the seed is exact. A product already in flash-sale mode is refused:
+     * its stock_quantity lags the counter, so re-seeding could oversell.
+     */
+    public void enable(Long productId) {
+        reconcile();
+        transactionTemplate.executeWithoutResult(status -> {
+            int stock = lockStock(productId);
+            if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                    "SELECT flash_sale FROM products WHERE id = ?", Boolean.class, productId))) {
+                throw new BadRequestException("Flash sale is already enabled for this product");
+            }
+            jdbcTemplate.update("UPDATE products SET flash_sale = TRUE WHERE id = ?", productId);
+            redisTemplate.opsForValue().set(stockKey(productId), String.valueOf(stock));
+            eventPublisher.publishEvent(new ProductStockChangedEvent(List.of(productId)));
+        });
+        log.info("[FlashSale] Enabled for product {}", productId);
+    }
+
+    /**
+     * Ends flash-sale mode: drops the counter and folds the product's pending
+     * units into Postgres in the same transaction that clears the flag.
+     * Checkouts racing with this block on the row lock in {@link #prime} and
+     * then fall back to the regular stock path.
+     */
+    public void disable(Long productId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            lockStock(productId);
+            redisTemplate.delete(stockKey(productId));
+            Map<Long, Integer> pending = drain(productId.toString());
+            int units = pending.getOrDefault(productId, 0);
+            jdbcTemplate.update("UPDATE products SET flash_sale = FALSE, stock_quantity = stock_quantity - ? "
+                    + "WHERE id = ?", units, productId);
+            onRollback(() -> restorePending(pending));
+            eventPublisher.publishEvent(new ProductStockChangedEvent(List.of(productId)));
+        });
+        log.info("[FlashSale] Disabled for product {}", productId);
+    }
+
+    /**
+     * Reserves flash-sale lines in Redis, all or nothing. Must run inside the
+     * checkout transaction: if it rolls back, the units are returned to the
+     * counters, or to products.stock_quantity for a sale that ended in the
+     * meantime, since ending it applied the units to Postgres as sold.
+     *
+     * @return lines whose product has left flash-sale mode in the meantime;
+     *         the caller reserves those in Postgres
+     */
+    Map<Long, Integer> reserve(Map<Long, Integer> quantities) {
+        Map<Long, Integer> lines = new TreeMap<>(quantities);
+        Map<Long, Integer> notInSale = new TreeMap<>();
+        for (int attempt = 0; !lines.isEmpty(); attempt++) {
+            List<Long> ids = new ArrayList<>(lines.keySet());
+            List<Long> available = redisTemplate.execute(RESERVE_SCRIPT, keys(ids), args(lines));
+            if (available == null || available.isEmpty()) {
+                Map<Long, Integer> reserved = new TreeMap<>(lines);
+                onRollback(() -> restock(release(reserved)));
+                break;
+            }
+
+            List<Long> missing = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                if (available.get(i) < 0) {
+                    missing.add(ids.get(i));
+                }
+            }
+            if (missing.isEmpty() || attempt > 0) {
+                throw new InsufficientStockException(shortages(lines, ids, available));
+            }
+            // Counter lost (e.g. Redis restarted): re-seed it, or hand the line back
+            for (Long id : missing) {
+                if (!prime(id)) {
+                    notInSale.put(id, lines.remove(id));
+                }
+            }
+        }
+        return notInSale;
+    }
+
+    /**
+     * Returns units to the counters.
+     *
+     * @return lines whose counter no longer exists; the caller releases those
+     *         in Postgres
+     */
+    Map<Long, Integer> release(Map<Long, Integer> quantities) {
+        Map<Long, Integer> lines = new TreeMap<>(quantities);
+        List<Long> ids = new ArrayList<>(lines.keySet());
+        List<Long> released = redisTemplate.execute(RELEASE_SCRIPT, keys(ids), args(lines));
+        Map<Long, Integer> notInSale = new TreeMap<>();
+        Map<Long, Integer> undo = new TreeMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (released == null || released.get(i) == 0) {
+                notInSale.put(ids.get(i), lines.get(ids.get(i)));
+            } else {
+                undo.put(ids.get(i), -lines.get(ids.get(i)));
+            }
+        }
+        if (!undo.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Releasing negative units takes them back without a stock check
+            onRollback(() -> redisTemplate.execute(RELEASE_SCRIPT, keys(new ArrayList<>(undo.keySet())), args(undo)));
+        }
+        return notInSale;
+    }
+
+    /**
+     * Applies the units sold since the last run to products.stock_quantity
+     * in one batch. Deltas are put back if the update fails.
+     */
+    @Scheduled(fixedDelayString = "${app.flash-sale.reconcile-interval:PT5S}")
+    public synchronized void reconcile() {
+        Map<Long, Integer> pending;
+        try {
+            pending = drain(null);
+            if (reconcileFailing.compareAndSet(true, false)) {
+                log.info("[FlashSale] Reconciliation recovered");
+            }
+        } catch (RuntimeException e) {
+            if (reconcileFailing.compareAndSet(false, true)) {
+                log.warn("[FlashSale] Could not read pending reservations: {}", e.getMessage());
+            }
+            return;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Integer>> deltas = new ArrayList<>(pending.entrySet());
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                    "UPDATE products SET stock_quantity = stock_quantity - ? WHERE id = ?",
+                    deltas, deltas.size(), (ps, delta) -> {
+                        ps.setInt(1, delta.getValue());
+                        ps.setLong(2, delta.getKey());
+                    }));
+            log.debug("[FlashSale] Reconciled {} product(s)", deltas.size());
+        } catch (RuntimeException e) {
+            log.error("[FlashSale] Reconciliation failed, keeping deltas for the next run", e);
+            restorePending(pending);
+        }
+    }
+
+    /**
+     * Re-seeds a missing counter from Postgres if the product is still in
+     * flash-sale mode. Locks the row, so it waits for a concurrent disable.
+     */
+    private boolean prime(Long productId) {
+        List<Integer> stock = jdbcTemplate.queryForList(
+                "SELECT stock_quantity FROM products WHERE id = ? AND flash_sale = TRUE FOR UPDATE",
+                Integer.class, productId);
+        if (stock.isEmpty()) {
+            return false;
+        }
+        Object pending = redisTemplate.opsForHash().get(PENDING_KEY, productId.toString());
+        long seed = stock.get(0) - (pending != null ? Long.parseLong(pending.toString()) : 0);
+        redisTemplate.opsForValue().setIfAbsent(stockKey(productId), String.valueOf(Math.max(seed, 0)));
+        return true;
+    }
+
+    private int lockStock(Long productId) {
+        List<Integer> stock = jdbcTemplate.queryForList(
+                "SELECT stock_quantity FROM products WHERE id = ? FOR UPDATE", Integer.class, productId);
+        if (stock.isEmpty()) {
+            throw new ResourceNotFoundException("Product not found");
+        }
+        return stock.get(0);
+    }
+
+    private Map<Long, Integer> drain(String productId) {
+        List<Object> entries = productId != null
+                ? redisTemplate.execute(DRAIN_SCRIPT, List.of(PENDING_KEY), productId)
+                : redisTemplate.execute(DRAIN_SCRIPT, List.of(PENDING_KEY));
+        Map<Long, Integer> pending = new TreeMap<>();
+        for (int i = 0; entries != null && i + 1 < entries.size(); i += 2) {
+            int units = Integer.parseInt(entries.get(i + 1).toString());
+            if (units != 0) {
+                pending.put(Long.valueOf(entries.get(i).toString()), units);
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Adds units back to products.stock_quantity. Runs from a rollback
+     * callback, where the finished transaction's connection is still bound,
+     * so it needs a transaction of its own.
+     */
+    private void restock(Map<Long, Integer> lines) {
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(lines.entrySet());
+        if (rows.isEmpty()) {
+            return;
+        }
+        TransactionTemplate separate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        separate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        separate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("UPDATE products SET stock_quantity = stock_quantity + ? WHERE id = ?",
+                    rows, rows.size(), (ps, line) -> {
+                        ps.setInt(1, line.getValue());
+                        ps.setLong(2, line.getKey());
+                    });
+            eventPublisher.publishEvent(new ProductStockChangedEvent(new ArrayList<>(lines.keySet())));
+        });
+        log.info("[FlashSale] Returned {} rolled-back line(s) of ended sales to stock", rows.size());
+    }
+
+    private void restorePending(Map<Long, Integer> pending) {
+        pending.forEach((id, units) -> redisTemplate.opsForHash().increment(PENDING_KEY, id.toString(), units));
+    }
+
+    private void onRollback(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    try {
+                        action.run();
+                    } catch (RuntimeException e) {
+                        log.error("[FlashSale] Could not undo Redis changes after rollback", e);
+                    }
+                }
+            }
+        });
+    }
+
+    private List<StockShortageDto> shortages(Map<Long, Integer> lines, List<Long> ids, List<Long> available) {
+        Map<Long, String> names = new HashMap<>();
+        for (Object[] row : productRepository.findStockLevels(ids)) {
+            names.put((Long) row[0], (String) row[1]);
+        }
+        List<StockShortageDto> shortages = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Long id = ids.get(i);
+            int stock = (int) Math.max(available.get(i), 0);
+            if (stock < lines.get(id)) {
+                shortages.add(new StockShortageDto(id, null, names.get(id), lines.get(id), stock));
+            }
+        }
+        return shortages;
+    }
+
+    private static List<String> keys(List<Long> ids) {
+        List<String> keys = new ArrayList<>(ids.size() + 1);
+        keys.add(PENDING_KEY);
+        ids.forEach(id -> keys.add(stockKey(id)));
+        return keys;
+    }
+
+    private static Object[] args(Map<Long, Integer> lines) {
+        List<String> args = new ArrayList<>(lines.size() * 2);
+        lines.values().forEach(quantity -> args.add(quantity.toString()));
+        lines.keySet().forEach(id -> args.add(id.toString()));
+        return args.toArray();
+    }
+
+    private static String stockKey(Long productId) {
+        return STOCK_KEY_PREFIX + productId;
+    }
+}
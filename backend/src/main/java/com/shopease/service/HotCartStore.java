@@ -0,0 +1,470 @@
+package com.shopease.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Redis-hosted carts with write-behind to the carts and cart_items tables.
+ *
+ * A cart in use lives in one Redis hash per user and every operation on it is
+ * a single script call that also returns the resulting cart. Postgres is read
+ * only when the hash is missing (first access, or idle for {@code ttl}).
+ * Changed carts are queued in a sorted set; {@link #flushDirty()} claims them
+ * in batches and writes each cart once per run, however many times it changed.
+ *
+ * A flush only writes a cart whose carts.updated_at still matches the value
+ * the hash was loaded or last flushed with. If Postgres changed behind Redis's
+ * back (checkout, or cart edits made while Redis was unreachable), the hash is
+ * dropped instead and the next request reloads it. While Redis is unreachable,
+ * {@link CartService} works on Postgres directly; the store is not retried
+ * for {@code redis-backoff} after a failure.
+ *
+ * Each hot cart also keeps its subtotal, adjusted by every change rather
+ * than summed again. A product price change bumps a version that makes every
+ * stored subtotal stale; the next read prices the cart afresh.
+ *
+ * Guest carts, keyed by a device token, live only in Redis for
+ * {@code guest-ttl} and are merged into the user's cart on login.
+ *
+ * All keys share the {cart} hash tag so the scripts also work on a Redis
+ * Cluster.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class HotCartStore {
+
+    static final String KEY_PREFIX = "shopease:{cart}:user:";
+    static final String DIRTY_KEY = "shopease:{cart}:dirty";
+    static final String GUEST_PREFIX = "shopease:{cart}:guest:";
+    static final String PRICES_KEY = "shopease:{cart}:prices";
+
+    private static final RedisScript<List> APPLY_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/cart_apply.lua"), List.class);
+    private static final RedisScript<List> GUEST_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/guest_cart.lua"), List.class);
+    private static final RedisScript<Long> SEED_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/cart_seed.lua"), Long.class);
+    private static final RedisScript<List> CLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/cart_claim.lua"), List.class);
+    private static final RedisScript<Long> ACK_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/cart_ack.lua"), Long.class);
+    private static final RedisScript<Long> EVICT_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/cart_evict.lua"), Long.class);
+
+    // Postgres moved on since the hash was loaded: no row is updated and the hash is dropped
+    private static final String UPDATE_CART_SQL = "UPDATE carts SET updated_at = ?, "
+            + "coupon_id = (SELECT id FROM coupons WHERE id = ?::bigint) "
+            + "WHERE id = ? AND updated_at IS NOT DISTINCT FROM ?::timestamp";
+    // Lines are (product id, variant id or 0) pairs
+    private static final String DELETE_REMOVED_LINES_SQL = "DELETE FROM cart_items WHERE cart_id = ? "
+            + "AND (product_id, COALESCE(variant_id, 0)) NOT IN (SELECT * FROM unnest(?::bigint[], ?::bigint[]))";
+    // Lines of products or variants deleted in the meantime are skipped
+    private static final String UPSERT_LINES_SQL = "INSERT INTO cart_items (cart_id, product_id, variant_id, quantity) "
+            + "SELECT l.cart_id, l.product_id, NULLIF(l.variant_id, 0), l.quantity "
+            + "FROM unnest(?::bigint[], ?::bigint[], ?::bigint[], ?::int[]) "
+            + "AS l(cart_id, product_id, variant_id, quantity) "
+            + "JOIN products p ON p.id = l.product_id "
+            + "WHERE l.variant_id = 0 OR EXISTS (SELECT 1 FROM product_variants v WHERE v.id = l.variant_id) "
+            + "ON CONFLICT ON CONSTRAINT cart_items_line_key DO UPDATE SET quantity = EXCLUDED.quantity "
+            + "WHERE cart_items.quantity <> EXCLUDED.quantity";
+
+    private final StringRedisTemplate redisTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.cart.ttl:2h}")
+    private Duration ttl;
+
+    @Value("${app.cart.guest-ttl:7d}")
+    private Duration guestTtl;
+
+    @Value("${app.cart.guest-max-lines:50}")
+    private int guestMaxLines;
+
+    @Value("${app.cart.flush-batch-size:200}")
+    private int flushBatchSize;
+
+    @Value("${app.cart.flush-lease:30s}")
+    private Duration flushLease;
+
+    @Value("${app.cart.redis-backoff:10s}")
+    private Duration redisBackoff;
+
+    private volatile long unavailableUntil;
+    private Counter flushed;
+    private Counter conflicts;
+    private Counter fallbacks;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        flushed = Counter.builder("cart.writebehind.flushed")
+                .description("Carts written from Redis to Postgres")
+                .register(meterRegistry);
+        conflicts = Counter.builder("cart.writebehind.conflicts")
+                .description("Hot carts dropped because Postgres had changed since they were loaded")
+                .register(meterRegistry);
+        fallbacks = Counter.builder("cart.store.fallbacks")
+                .description("Cart operations served from Postgres because Redis was unavailable")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("cart.writebehind.flush")
+                .description("Duration of one write-behind run")
+                .register(meterRegistry);
+    }
+
+    /** Thrown instead of Redis errors; the caller falls back to Postgres. */
+    static class UnavailableException extends RuntimeException {
+        UnavailableException(Throwable cause) {
+            super("Hot cart store unavailable", cause);
+        }
+    }
+
+    /**
+     * A cart as held in Redis. Lines map product (and variant) to quantity, in
+     * the order they were added. Guest carts have no cart id, version, stamp
+     * or subtotal.
+     *
+     * @param subtotalPaise null until priced at the current {@code priceVersion}
+     */
+    record HotCart(Long cartId, Map<CartLineKey, Integer> lines, Long couponId, String couponJson,
+            LocalDateTime updatedAt, String version, LocalDateTime dbStamp, Long subtotalPaise,
+            String priceVersion) {
+    }
+
+    /**
+     * Outcome of {@link #apply}: OK with the resulting cart, or STOCK / MISSING
+     * with no change made; a refused batch names the line it failed on.
+     */
+    record Applied(String status, HotCart cart, CartLineKey refusedLine) {
+        boolean ok() {
+            return "OK".equals(status);
+        }
+    }
+
+    /**
+     * Runs one operation of cart_apply.lua.
+     *
+     * @return null if the cart is not in Redis; load it and retry
+     */
+    Applied apply(Long userId, String operation, Object... arguments) {
+        return applied(redis(() -> redisTemplate.execute(APPLY_SCRIPT, List.of(key(userId), DIRTY_KEY, PRICES_KEY),
+                arguments(List.of(operation, userId.toString(), String.valueOf(System.currentTimeMillis()),
+                        String.valueOf(ttl.toSeconds())), List.of(arguments)))));
+    }
+
+    /**
+     * Adds the lines of a guest cart to the user's cart and deletes the guest
+     * cart, atomically.
+     *
+     * @param lines line key, quantity, stock and unit price for each guest line
+     * @return null if the user's cart is not in Redis; load it and retry
+     */
+    Applied merge(Long userId, String token, List<Object> lines) {
+        return applied(redis(() -> redisTemplate.execute(APPLY_SCRIPT,
+                List.of(key(userId), DIRTY_KEY, PRICES_KEY, guestKey(token)),
+                arguments(List.of("merge", userId.toString(), String.valueOf(System.currentTimeMillis()),
+                        String.valueOf(ttl.toSeconds())), lines))));
+    }
+
+    /** Runs one operation of guest_cart.lua. A missing guest cart reads as empty. */
+    Applied guest(String token, String operation, Object... arguments) {
+        return applied(redis(() -> redisTemplate.execute(GUEST_SCRIPT, List.of(guestKey(token)),
+                arguments(List.of(operation, String.valueOf(System.currentTimeMillis()),
+                        String.valueOf(guestTtl.toSeconds()), String.valueOf(guestMaxLines)), List.of(arguments)))));
+    }
+
+    /**
+     * Loads a cart read from Postgres, unless another request has loaded it
+     * in the meantime.
+     *
+     * @param dbStamp carts.updated_at as read, null if never set
+     */
+    void seed(Long userId, Long cartId, Map<CartLineKey, Integer> lines, Long couponId, String couponJson,
+            LocalDateTime dbStamp) {
+        List<String> args = new ArrayList<>(List.of(String.valueOf(ttl.toSeconds()),
+                "id", cartId.toString(), "v", "0", "db", stamp(dbStamp), "seq", String.valueOf(lines.size())));
+        int seq = 0;
+        for (Map.Entry<CartLineKey, Integer> line : lines.entrySet()) {
+            args.addAll(List.of("q:" + line.getKey(), line.getValue().toString(), "o:" + line.getKey(),
+                    String.valueOf(++seq)));
+        }
+        if (couponId != null) {
+            args.addAll(List.of("cid", couponId.toString(), "coupon", couponJson));
+        }
+        if (dbStamp != null) {
+            args.addAll(List.of("t", String.valueOf(epochMillis(dbStamp))));
+        }
+        redis(() -> redisTemplate.execute(SEED_SCRIPT, List.of(key(userId)), args.toArray()));
+    }
+
+    /** Drops the hot copy so the next request reloads the cart from Postgres. */
+    void evict(Long userId) {
+        redis(() -> redisTemplate.execute(EVICT_SCRIPT, List.of(key(userId), DIRTY_KEY), userId.toString()));
+    }
+
+    /**
+     * Makes every stored subtotal stale; called once a price change has
+     * committed. Tried even while backing off, since a lost bump outlives the
+     * outage.
+     */
+    void pricesChanged() {
+        try {
+            redisTemplate.opsForValue().increment(PRICES_KEY);
+        } catch (DataAccessException e) {
+            throw new UnavailableException(e);
+        }
+    }
+
+    void fellBack() {
+        fallbacks.increment();
+    }
+
+    /**
+     * Writes queued carts to Postgres, one batch of {@code flush-batch-size}
+     * carts per transaction until the queue holds nothing that is due. If a
+     * batch fails, its carts are retried one transaction each.
+     */
+    @Scheduled(fixedDelayString = "${app.cart.flush-interval:PT2S}")
+    public void flushDirty() {
+        if (System.currentTimeMillis() < unavailableUntil) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            List<String> claimed;
+            do {
+                long now = System.currentTimeMillis();
+                claimed = redis(() -> redisTemplate.execute(CLAIM_SCRIPT, List.of(DIRTY_KEY), String.valueOf(now),
+                        String.valueOf(now + flushLease.toMillis()), String.valueOf(flushBatchSize)));
+                if (claimed == null || claimed.isEmpty()) {
+                    break;
+                }
+                flushBatch(claimed);
+            } while (claimed.size() == flushBatchSize);
+        } catch (UnavailableException e) {
+            // Already logged; queued carts wait in Redis until it is reachable again
+        } catch (RuntimeException e) {
+            log.warn("[HotCart] Write-behind run failed, claimed carts are retried after the lease: {}",
+                    e.getMessage());
+        } finally {
+            sample.stop(flushTimer);
+        }
+    }
+
+    private void flushBatch(List<String> userIds) {
+        Map<Long, HotCart> carts = new LinkedHashMap<>();
+        for (String userId : userIds) {
+            Map<Object, Object> hash = redisTemplate.opsForHash().entries(key(Long.valueOf(userId)));
+            if (hash.isEmpty()) {
+                // Expired or evicted before it was written; nothing left to flush
+                redisTemplate.opsForZSet().remove(DIRTY_KEY, userId);
+                continue;
+            }
+            List<String> fields = new ArrayList<>(hash.size() * 2);
+            hash.forEach((field, value) -> {
+                fields.add(field.toString());
+                fields.add(value.toString());
+            });
+            carts.put(Long.valueOf(userId), parse(fields));
+        }
+        if (carts.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime stamp = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        try {
+            Map<Long, Boolean> written = transactionTemplate.execute(status -> write(carts, stamp));
+            acknowledge(carts, written, stamp);
+        } catch (RuntimeException e) {
+            log.warn("[HotCart] Write-behind of {} cart(s) failed, retrying one cart at a time", carts.size(), e);
+            for (Map.Entry<Long, HotCart> cart : carts.entrySet()) {
+                Map<Long, HotCart> single = Map.of(cart.getKey(), cart.getValue());
+                try {
+                    acknowledge(single, transactionTemplate.execute(status -> write(single, stamp)), stamp);
+                } catch (RuntimeException cartError) {
+                    log.error("[HotCart] Could not write cart {} of user {}", cart.getValue().cartId(),
+                            cart.getKey(), cartError);
+                }
+            }
+        }
+    }
+
+    /** @return per user, whether the cart was written (false: Postgres had changed) */
+    private Map<Long, Boolean> write(Map<Long, HotCart> carts, LocalDateTime stamp) {
+        List<Map.Entry<Long, HotCart>> entries = new ArrayList<>(carts.entrySet());
+        int[][] updated = jdbcTemplate.batchUpdate(UPDATE_CART_SQL, entries, entries.size(), (ps, entry) -> {
+            HotCart cart = entry.getValue();
+            ps.setTimestamp(1, Timestamp.valueOf(stamp));
+            ps.setObject(2, cart.couponId(), Types.BIGINT);
+            ps.setLong(3, cart.cartId());
+            ps.setTimestamp(4, cart.dbStamp() == null ? null : Timestamp.valueOf(cart.dbStamp()));
+        });
+
+        Map<Long, Boolean> written = new HashMap<>();
+        List<HotCart> current = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            boolean ok = updated[0][i] > 0;
+            written.put(entries.get(i).getKey(), ok);
+            if (ok) {
+                current.add(entries.get(i).getValue());
+            }
+        }
+        if (current.isEmpty()) {
+            return written;
+        }
+
+        jdbcTemplate.batchUpdate(DELETE_REMOVED_LINES_SQL, current, current.size(), (ps, cart) -> {
+            ps.setLong(1, cart.cartId());
+            ps.setArray(2, ps.getConnection().createArrayOf("bigint",
+                    cart.lines().keySet().stream().map(CartLineKey::productId).toArray()));
+            ps.setArray(3, ps.getConnection().createArrayOf("bigint",
+                    cart.lines().keySet().stream().map(CartLineKey::variantOrZero).toArray()));
+        });
+        List<Long> cartIds = new ArrayList<>();
+        List<Long> productIds = new ArrayList<>();
+        List<Long> variantIds = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        for (HotCart cart : current) {
+            cart.lines().forEach((line, quantity) -> {
+                cartIds.add(cart.cartId());
+                productIds.add(line.productId());
+                variantIds.add(line.variantOrZero());
+                quantities.add(quantity);
+            });
+        }
+        if (!cartIds.isEmpty()) {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(UPSERT_LINES_SQL);
+                ps.setArray(1, con.createArrayOf("bigint", cartIds.toArray()));
+                ps.setArray(2, con.createArrayOf("bigint", productIds.toArray()));
+                ps.setArray(3, con.createArrayOf("bigint", variantIds.toArray()));
+                ps.setArray(4, con.createArrayOf("int", quantities.toArray()));
+                return ps;
+            });
+        }
+        return written;
+    }
+
+    private void acknowledge(Map<Long, HotCart> carts, Map<Long, Boolean> written, LocalDateTime stamp) {
+        String now = String.valueOf(System.currentTimeMillis());
+        for (Map.Entry<Long, HotCart> cart : carts.entrySet()) {
+            Long userId = cart.getKey();
+            if (written.get(userId)) {
+                redisTemplate.execute(ACK_SCRIPT, List.of(key(userId), DIRTY_KEY), userId.toString(),
+                        cart.getValue().version(), stamp(stamp), now);
+                flushed.increment();
+            } else {
+                log.info("[HotCart] Cart {} changed in Postgres since it was loaded, dropping the Redis copy",
+                        cart.getValue().cartId());
+                redisTemplate.execute(EVICT_SCRIPT, List.of(key(userId), DIRTY_KEY), userId.toString());
+                conflicts.increment();
+            }
+        }
+    }
+
+    private static Object[] arguments(List<String> leading, List<Object> operationArguments) {
+        List<String> args = new ArrayList<>(leading);
+        for (Object argument : operationArguments) {
+            args.add(String.valueOf(argument));
+        }
+        return args.toArray();
+    }
+
+    private static Applied applied(List<String> result) {
+        // A nil reply arrives as a single null element
+        if (result == null || result.isEmpty() || result.get(0) == null) {
+            return null;
+        }
+        String status = result.get(0);
+        if ("OK".equals(status)) {
+            return new Applied(status, parse(result.subList(1, result.size())), null);
+        }
+        return new Applied(status, null, result.size() > 1 ? CartLineKey.parse(result.get(1)) : null);
+    }
+
+    private <T> T redis(Supplier<T> call) {
+        if (System.currentTimeMillis() < unavailableUntil) {
+            throw new UnavailableException(null);
+        }
+        try {
+            return call.get();
+        } catch (DataAccessException e) {
+            if (System.currentTimeMillis() >= unavailableUntil) {
+                log.warn("[HotCart] Redis unavailable, serving carts from Postgres for {}: {}", redisBackoff,
+                        e.getMessage());
+            }
+            unavailableUntil = System.currentTimeMillis() + redisBackoff.toMillis();
+            throw new UnavailableException(e);
+        }
+    }
+
+    private static HotCart parse(List<String> fields) {
+        Map<String, String> hash = new HashMap<>();
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            hash.put(fields.get(i), fields.get(i + 1));
+        }
+        Map<CartLineKey, Integer> lines = new LinkedHashMap<>();
+        hash.keySet().stream()
+                .filter(field -> field.startsWith("q:"))
+                .map(field -> field.substring(2))
+                .sorted(Comparator.comparingLong(key -> Long.parseLong(hash.getOrDefault("o:" + key, "0"))))
+                .forEach(key -> lines.put(CartLineKey.parse(key), Integer.valueOf(hash.get("q:" + key))));
+        String updated = hash.get("t");
+        String db = hash.getOrDefault("db", "");
+        String subtotal = hash.get("sub");
+        return new HotCart(hash.containsKey("id") ? Long.valueOf(hash.get("id")) : null, lines,
+                hash.containsKey("cid") ? Long.valueOf(hash.get("cid")) : null, hash.get("coupon"),
+                updated == null ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(updated)),
+                        ZoneId.systemDefault()),
+                hash.getOrDefault("v", "0"), db.isEmpty() ? null : Timestamp.valueOf(db).toLocalDateTime(),
+                subtotal == null ? null : Long.valueOf(subtotal), hash.getOrDefault("pv", "0"));
+    }
+
+    private static String stamp(LocalDateTime value) {
+        return value == null ? "" : Timestamp.valueOf(value).toString();
+    }
+
+    private static long epochMillis(LocalDateTime value) {
+        return value.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private static String guestKey(String token) {
+        return GUEST_PREFIX + token;
+    }
+}
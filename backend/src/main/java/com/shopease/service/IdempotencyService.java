@@ -0,0 +1,201 @@
+package com.shopease.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.shopease.exception.BadRequestException;
+import com.shopease.exception.ConflictException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Makes non-idempotent POSTs safe to retry. The first request carrying an
+ * {@code Idempotency-Key} claims the key and runs; its response is stored and
+ * replayed to every repeat of the same key, so a retry costs one lookup.
+ * Repeats that arrive while the first is still running poll until it
+ * finishes, for at most {@code wait-timeout}, and then get a 409.
+ *
+ * Keys are scoped per user and endpoint. A claim is leased: if the node
+ * running the request dies, the key can be taken over once the lease runs
+ * out. A request that fails releases its key, so the client can retry it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long MAX_POLL_MILLIS = 500;
+
+    private static final String FIND_SQL = "SELECT id, request_hash, response_status, response_body, locked_until "
+            + "FROM idempotency_keys WHERE owner = ? AND endpoint = ? AND idempotency_key = ?";
+    private static final String CLAIM_SQL = "INSERT INTO idempotency_keys "
+            + "(owner, endpoint, idempotency_key, request_hash, locked_until) VALUES (?, ?, ?, ?, ?) "
+            + "ON CONFLICT (owner, endpoint, idempotency_key) DO NOTHING RETURNING id";
+    private static final String TAKE_OVER_SQL = "UPDATE idempotency_keys SET locked_until = ? "
+            + "WHERE id = ? AND response_status IS NULL AND locked_until = ?";
+    private static final String COMPLETE_SQL =
+            "UPDATE idempotency_keys SET response_status = ?, response_body = ? WHERE id = ?";
+    private static final String RELEASE_SQL =
+            "DELETE FROM idempotency_keys WHERE id = ? AND response_status IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.idempotency.lease:60s}")
+    private Duration lease;
+
+    @Value("${app.idempotency.wait-timeout:10s}")
+    private Duration waitTimeout;
+
+    @Value("${app.idempotency.retention:24h}")
+    private Duration retention;
+
+    /**
+     * Runs {@code action} once per {@code key}. Without a key the action just
+     * runs.
+     *
+     * @param owner    who the key belongs to, e.g. the user's email
+     * @param endpoint name of the operation the key is used for
+     * @param request  request body; a key reused with a different body is rejected
+     */
+    public ResponseEntity<?> execute(String owner, String endpoint, String key, Object request,
+            Supplier<? extends ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String requestHash = hash(request);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        long pollMillis = 25;
+        while (true) {
+            Long claimed;
+            List<StoredKey> stored = jdbcTemplate.query(FIND_SQL, (rs, i) -> new StoredKey(
+                    rs.getLong("id"), rs.getString("request_hash"), (Integer) rs.getObject("response_status"),
+                    rs.getString("response_body"), rs.getTimestamp("locked_until")), owner, endpoint, key);
+            if (stored.isEmpty()) {
+                claimed = claim(owner, endpoint, key, requestHash);
+            } else {
+                StoredKey existing = stored.get(0);
+                if (!existing.requestHash().equals(requestHash)) {
+                    throw new BadRequestException(HEADER + " was already used for a different request");
+                }
+                if (existing.responseStatus() != null) {
+                    return replay(existing);
+                }
+                claimed = takeOverIfExpired(existing);
+            }
+            if (claimed != null) {
+                return run(claimed, action);
+            }
+
+            if (System.nanoTime() >= deadline) {
+                throw new ConflictException("A request with this " + HEADER + " is still being processed");
+            }
+            sleep(pollMillis);
+            pollMillis = Math.min(pollMillis * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    /** Drops keys past their retention; clients must not retry that late. */
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval:PT1H}")
+    public void purgeExpired() {
+        int purged = jdbcTemplate.update("DELETE FROM idempotency_keys WHERE created_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+        if (purged > 0) {
+            log.debug("[Idempotency] Purged {} expired key(s)", purged);
+        }
+    }
+
+    private Long claim(String owner, String endpoint, String key, String requestHash) {
+        List<Long> ids = jdbcTemplate.queryForList(CLAIM_SQL, Long.class, owner, endpoint, key, requestHash,
+                Timestamp.valueOf(LocalDateTime.now().plus(lease)));
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    private Long takeOverIfExpired(StoredKey existing) {
+        if (existing.lockedUntil().toLocalDateTime().isAfter(LocalDateTime.now())) {
+            return null;
+        }
+        int updated = jdbcTemplate.update(TAKE_OVER_SQL, Timestamp.valueOf(LocalDateTime.now().plus(lease)),
+                existing.id(), existing.lockedUntil());
+        if (updated == 0) {
+            return null;
+        }
+        log.warn("[Idempotency] Took over key {} after its lease expired", existing.id());
+        return existing.id();
+    }
+
+    private ResponseEntity<?> run(Long id, Supplier<? extends ResponseEntity<?>> action) {
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            jdbcTemplate.update(RELEASE_SQL, id);
+            throw e;
+        }
+        try {
+            jdbcTemplate.update(COMPLETE_SQL, response.getStatusCode().value(),
+                    objectMapper.writeValueAsString(response.getBody()), id);
+        } catch (JsonProcessingException | RuntimeException e) {
+            // The action has already happened; a retry after the lease would run it again
+            log.error("[Idempotency] Could not store the response for key {}", id, e);
+        }
+        return response;
+    }
+
+    private ResponseEntity<?> replay(StoredKey stored) {
+        try {
+            return ResponseEntity.status(stored.responseStatus())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(REPLAYED_HEADER, "true")
+                    .body(objectMapper.readTree(stored.responseBody()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored response for key " + stored.id() + " is not valid JSON", e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] body = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictException("Interrupted while waiting for a concurrent request");
+        }
+    }
+
+    private record StoredKey(Long id, String requestHash, Integer responseStatus, String responseBody,
+            Timestamp lockedUntil) {
+    }
+}
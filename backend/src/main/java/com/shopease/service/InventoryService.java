@@ -0,0 +1,213 @@
+package com.shopease.service;
+
+import com.shopease.dto.response.StockShortageDto;
+import com.shopease.entity.ProductVariant;
+import com.shopease.exception.InsufficientStockException;
+import com.shopease.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stock changes as conditional, relative updates instead of read-modify-write
+ * on the Product entity, so concurrent checkouts can neither lose an update
+ * nor drive stock below zero.
+ *
+ * Each call sends one JDBC batch, one statement per product in ascending id
+ * order: two carts that share products always lock their rows in the same
+ * order and cannot deadlock. The updates bypass the persistence context, so
+ * callers must not write stockQuantity through loaded Product entities in the
+ * same transaction.
+ *
+ * Products in flash-sale mode are reserved in Redis by {@link FlashSaleService}
+ * instead; the split is transparent to callers.
+ *
+ * Lines of a variant take the variant's own stock, through the same kind of
+ * conditional update on product_variants, and leave the product's stock
+ * alone; flash-sale mode does not apply to them. Checkout takes product
+ * stock before variant stock, so lock order is the same for every cart.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryService {
+
+    // flash_sale guards against a checkout that read the flag just before a flash sale started
+    private static final String RESERVE_SQL = "UPDATE products SET stock_quantity = stock_quantity - ? "
+            + "WHERE id = ? AND stock_quantity >= ? AND flash_sale = FALSE";
+    private static final String RELEASE_SQL =
+            "UPDATE products SET stock_quantity = stock_quantity + ? WHERE id = ?";
+    private static final String RESERVE_VARIANT_SQL = "UPDATE product_variants "
+            + "SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ? AND active";
+    private static final String RELEASE_VARIANT_SQL =
+            "UPDATE product_variants SET stock_quantity = stock_quantity + ? WHERE id = ?";
+    private static final String VARIANT_STOCK_LEVELS_SQL = "SELECT v.id, v.product_id, p.name, v.size, v.color, "
+            + "v.stock_quantity, v.active FROM product_variants v JOIN products p ON p.id = v.product_id "
+            + "WHERE v.id = ANY (?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final FlashSaleService flashSaleService;
+    private final VariantIndex variantIndex;
+
+    /**
+     * Takes {@code quantities} (product id to units) out of stock. All or
+     * nothing: if any line is short, an {@link InsufficientStockException}
+     * listing every short line is thrown and the caller's transaction rolls
+     * back the lines that did succeed.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Map<Long, Integer> quantities) {
+        Map<Long, Integer> lines = new TreeMap<>(quantities);
+        Map<Long, Integer> flashSale = takeFlashSaleLines(lines);
+        if (!flashSale.isEmpty()) {
+            lines.putAll(flashSaleService.reserve(flashSale));
+        }
+        reserveInDatabase(lines);
+    }
+
+    /** Puts {@code quantities} back into stock, e.g. when an order is cancelled. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Map<Long, Integer> quantities) {
+        Map<Long, Integer> lines = new TreeMap<>(quantities);
+        Map<Long, Integer> flashSale = takeFlashSaleLines(lines);
+        if (!flashSale.isEmpty()) {
+            lines.putAll(flashSaleService.release(flashSale));
+        }
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(lines.entrySet());
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(RELEASE_SQL, rows, rows.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+        });
+    }
+
+    /**
+     * Takes {@code quantities} (variant id to units) out of variant stock,
+     * all or nothing like {@link #reserve}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserveVariants(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        if (lines.isEmpty()) {
+            return;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(RESERVE_VARIANT_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+            ps.setInt(3, line.getValue());
+        });
+
+        Map<Long, Integer> failed = new TreeMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (counts[0][i] == 0) {
+                failed.put(lines.get(i).getKey(), lines.get(i).getValue());
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new InsufficientStockException(variantShortages(failed));
+        }
+        adjustIndexOnCommit(quantities, -1);
+    }
+
+    /** Puts {@code quantities} (variant id to units) back into variant stock. */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void releaseVariants(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(RELEASE_VARIANT_SQL, rows, rows.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+        });
+        adjustIndexOnCommit(quantities, 1);
+    }
+
+    private void adjustIndexOnCommit(Map<Long, Integer> quantities, int sign) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        quantities.forEach((variantId, quantity) -> deltas.put(variantId, sign * quantity));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                variantIndex.adjust(deltas);
+            }
+        });
+    }
+
+    private Map<Long, Integer> takeFlashSaleLines(Map<Long, Integer> lines) {
+        Map<Long, Integer> flashSale = new TreeMap<>();
+        if (!lines.isEmpty()) {
+            for (Long id : productRepository.findFlashSaleIds(lines.keySet())) {
+                flashSale.put(id, lines.remove(id));
+            }
+        }
+        return flashSale;
+    }
+
+    private void reserveInDatabase(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(quantities.entrySet());
+        if (lines.isEmpty()) {
+            return;
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(RESERVE_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, line.getKey());
+            ps.setInt(3, line.getValue());
+        });
+
+        Map<Long, Integer> failed = new TreeMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (counts[0][i] == 0) {
+                failed.put(lines.get(i).getKey(), lines.get(i).getValue());
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new InsufficientStockException(shortages(failed));
+        }
+    }
+
+    private List<StockShortageDto> shortages(Map<Long, Integer> failed) {
+        Map<Long, Object[]> levels = new HashMap<>();
+        for (Object[] row : productRepository.findStockLevels(failed.keySet())) {
+            levels.put((Long) row[0], row);
+        }
+        List<StockShortageDto> shortages = new ArrayList<>();
+        failed.forEach((productId, requested) -> {
+            Object[] level = levels.get(productId);
+            shortages.add(new StockShortageDto(productId, null,
+                    level != null ? (String) level[1] : null,
+                    requested,
+                    level != null ? (Integer) level[2] : 0));
+        });
+        return shortages;
+    }
+
+    private List<StockShortageDto> variantShortages(Map<Long, Integer> failed) {
+        List<StockShortageDto> shortages = new ArrayList<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(VARIANT_STOCK_LEVELS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", failed.keySet().toArray()));
+            return ps;
+        }, rs -> {
+            long variantId = rs.getLong("id");
+            String label = ProductVariant.label(rs.getString("size"), rs.getString("color"));
+            shortages.add(new StockShortageDto(rs.getLong("product_id"), variantId,
+                    label == null ? rs.getString("name") : rs.getString("name") + " (" + label + ")",
+                    failed.get(variantId), rs.getBoolean("active") ? rs.getInt("stock_quantity") : 0));
+        });
+        return shortages;
+    }
+}
@@ -1,18 +1,28 @@
 package com.shopease.service;
 
+import com.shopease.dto.response.CursorPage;
 import com.shopease.entity.Order;
 import com.shopease.entity.OrderItem;
 import com.shopease.entity.Payment;
+import com.shopease.event.ProductStockChangedEvent;
 import com.shopease.exception.BadRequestException;
 import com.shopease.exception.ResourceNotFoundException;
 import com.shopease.repository.OrderRepository;
 import com.shopease.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 @Service
 @RequiredArgsConstructor
 public class OrderService {
@@ -22,6 +32,9 @@ public class OrderService {
     private final CartService cartService;
     private final AddressService addressService;
     private final ProductService productService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InventoryService inventoryService;
+    private final StockReservationService stockReservationService;
 
     @Transactional(readOnly = true)
     public Page<Order> getUserOrders(Long userId, Pageable pageable) {
@@ -33,6 +46,28 @@ public class OrderService {
         return orderRepository.findAllByOrderByOrderedAtDesc(pageable);
     }
 
+    @Transactional(readOnly = true)
+    public CursorPage<Order> scrollUserOrders(Long userId, String cursor, Integer size) {
+        KeysetCursor.Position after = KeysetCursor.decode(cursor);
+        int limit = KeysetCursor.clampSize(size);
+        PageRequest fetch = PageRequest.of(0, limit + 1);
+        List<Order> rows = after == null
+                ? orderRepository.findByUserIdFirstPage(userId, fetch)
+                : orderRepository.findByUserIdAfter(userId, after.sortKey(), after.id(), fetch);
+        return KeysetCursor.page(rows, limit, Order::getOrderedAt, Order::getId);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<Order> scrollAllOrders(String cursor, Integer size) {
+        KeysetCursor.Position after = KeysetCursor.decode(cursor);
+        int limit = KeysetCursor.clampSize(size);
+        PageRequest fetch = PageRequest.of(0, limit + 1);
+        List<Order> rows = after == null
+                ? orderRepository.findFirstPage(fetch)
+                : orderRepository.findAfter(after.sortKey(), after.id(), fetch);
+        return KeysetCursor.page(rows, limit, Order::getOrderedAt, Order::getId);
+    }
+
     @Transactional(readOnly = true)
     public Order getOrderById(Long orderId) {
         return orderRepository.findById(orderId)
@@ -41,17 +76,31 @@ public class OrderService {
 
     @Transactional
     public Order updateOrderStatus(Long orderId, Order.OrderStatus status) {
-        Order order = getOrderById(orderId);
+        Order order = orderRepository.findByIdForUpdate(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+        if (order.getStatus() == Order.OrderStatus.PENDING && status != Order.OrderStatus.PENDING) {
+            stockReservationService.settle(orderId);
+        }
 
         // Cancelled order restocking
         if (status == Order.OrderStatus.CANCELLED && order.getStatus() != Order.OrderStatus.CANCELLED) {
+            Map<Long, Integer> restocked = new HashMap<>();
+            Map<Long, Integer> restockedVariants = new HashMap<>();
+            Set<Long> stockChanged = new HashSet<>();
             for (OrderItem item : order.getItems()) {
                 if (item.getProduct() != null) {
-                    item.getProduct().setStockQuantity(item.getProduct().getStockQuantity() + item.getQuantity());
-                    // Soft update, avoiding directly calling another service save if possible
-                    // (managed by hibernate)
+                    stockChanged.add(item.getProduct().getId());
+                }
+                // A line whose variant has since been deleted keeps only its label and restocks nothing
+                if (item.getVariant() != null) {
+                    restockedVariants.merge(item.getVariant().getId(), item.getQuantity(), Integer::sum);
+                } else if (item.getProduct() != null && item.getVariantLabel() == null) {
+                    restocked.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
                 }
             }
+            inventoryService.release(restocked);
+            inventoryService.releaseVariants(restockedVariants);
+            eventPublisher.publishEvent(new ProductStockChangedEvent(stockChanged));
             if (order.getPayment() != null && order.getPayment().getStatus() == Payment.PaymentStatus.SUCCESS) {
                 order.getPayment().setStatus(Payment.PaymentStatus.REFUNDED);
                 paymentRepository.save(order.getPayment());
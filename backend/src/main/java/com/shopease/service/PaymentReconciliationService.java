@@ -0,0 +1,293 @@
+package com.shopease.service;
+
+import com.shopease.gateway.GatewayGuard;
+import com.shopease.gateway.PaymentGateway;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Settles payments the client never verified. Customers who close the tab
+ * after paying, or never pay at all, leave their payment PENDING; this job
+ * asks the gateway what happened and records it.
+ *
+ * Pending payments older than {@code min-age} are read in keyset pages of
+ * {@code page-size} ids, so a backlog of any size is walked with constant
+ * memory. Each page is looked up on virtual threads, at most
+ * {@code parallelism} at a time and through {@link GatewayGuard}, then
+ * applied with a handful of set-based statements in one transaction:
+ * captured payments of PENDING orders become SUCCESS and confirm their order,
+ * and payments of orders that are no longer PENDING (e.g. cancelled by the
+ * reservation sweeper) become FAILED. A capture on such an order is money
+ * taken for nothing; like the webhook worker, it is parked as a FAILED event
+ * in the webhook inbox, with the capture id and "needs a refund" as its
+ * error, so both paths surface refunds in one place. Order rows are locked first,
+ * like {@link PaymentService#verifyPayment} and the webhook worker do, and
+ * every update re-checks the status, so a payment settled concurrently is
+ * left alone.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentReconciliationService {
+
+    private static final String PAGE_SQL = "SELECT p.id, p.razorpay_order_id, o.status AS order_status "
+            + "FROM payments p JOIN orders o ON o.id = p.order_id "
+            + "WHERE p.status = 'PENDING' AND p.id > ? AND o.ordered_at < ? ORDER BY p.id LIMIT ?";
+    private static final String LOCK_ORDERS_SQL = "SELECT o.id FROM orders o JOIN payments p ON p.order_id = o.id "
+            + "WHERE p.id = ANY (?) ORDER BY o.id FOR UPDATE OF o";
+    private static final String MARK_PAID_SQL = "UPDATE payments p "
+            + "SET status = 'SUCCESS', razorpay_payment_id = v.payment_id, paid_at = ? "
+            + "FROM unnest(?::bigint[], ?::varchar[]) AS v(id, payment_id), orders o "
+            + "WHERE p.id = v.id AND o.id = p.order_id AND p.status = 'PENDING' AND o.status = 'PENDING' "
+            + "RETURNING p.order_id";
+    private static final String MARK_CAPTURED_FAILED_SQL = "UPDATE payments p "
+            + "SET status = 'FAILED', razorpay_payment_id = v.payment_id "
+            + "FROM unnest(?::bigint[], ?::varchar[]) AS v(id, payment_id), orders o "
+            + "WHERE p.id = v.id AND o.id = p.order_id AND p.status = 'PENDING' AND o.status <> 'PENDING' "
+            + "RETURNING p.razorpay_order_id, v.payment_id";
+    private static final String FLAG_REFUND_SQL = "INSERT INTO payment_webhook_events "
+            + "(event_id, event_type, razorpay_order_id, razorpay_payment_id, payload, status, last_error, "
+            + "processed_at) VALUES (?, ?, ?, ?, '{}', 'FAILED', ?, ?) ON CONFLICT (event_id) DO NOTHING";
+    private static final String CONFIRM_ORDERS_SQL = "UPDATE orders SET status = 'CONFIRMED', updated_at = ? "
+            + "WHERE id = ANY (?) AND status = 'PENDING' RETURNING id";
+    private static final String SETTLE_RESERVATIONS_SQL = "DELETE FROM stock_reservations WHERE order_id = ANY (?)";
+    private static final String MARK_FAILED_SQL = "UPDATE payments p SET status = 'FAILED' FROM orders o "
+            + "WHERE o.id = p.order_id AND p.id = ANY (?) AND p.status = 'PENDING' AND o.status <> 'PENDING'";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentGateway paymentGateway;
+    private final GatewayGuard gatewayGuard;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.payments.reconcile.min-age:5m}")
+    private Duration minAge;
+
+    @Value("${app.payments.reconcile.page-size:500}")
+    private int pageSize;
+
+    @Value("${app.payments.reconcile.parallelism:4}")
+    private int parallelism;
+
+    /**
+     * Walks all pending payments once. Stops early when a whole page of
+     * lookups failed, since the gateway is then most likely down.
+     */
+    @Scheduled(fixedDelayString = "${app.payments.reconcile.interval:PT5M}")
+    public void reconcile() {
+        if (!paymentGateway.isConfigured()) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(minAge));
+        Tally total = new Tally();
+        long afterId = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<PendingPayment> page;
+            do {
+                page = jdbcTemplate.query(PAGE_SQL, PENDING_PAYMENT, afterId, cutoff, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).id();
+
+                Tally tally = reconcilePage(page, executor);
+                total.add(tally);
+                if (tally.errors > 0 && tally.errors == tally.lookups) {
+                    log.warn("[PaymentReconciliation] All {} gateway lookup(s) of a page failed, stopping this run",
+                            tally.lookups);
+                    break;
+                }
+            } while (page.size() == pageSize);
+        } catch (RuntimeException e) {
+            log.error("[PaymentReconciliation] Run failed after payment id {}, retrying next run", afterId, e);
+        } finally {
+            sample.stop(Timer.builder("payments.reconcile.run")
+                    .description("Duration of one reconciliation pass over pending payments")
+                    .register(meterRegistry));
+        }
+        if (total.paid + total.failed + total.refunds > 0) {
+            log.info("[PaymentReconciliation] {} payment(s) paid, {} failed, {} to refund, {} still pending, "
+                    + "{} lookup error(s)", total.paid, total.failed, total.refunds, total.pending, total.errors);
+        }
+    }
+
+    private Tally reconcilePage(List<PendingPayment> page, ExecutorService executor) {
+        Semaphore permits = new Semaphore(parallelism);
+        Map<PendingPayment, Future<Optional<String>>> lookups = new LinkedHashMap<>();
+        List<Long> abandoned = new ArrayList<>();
+        for (PendingPayment payment : page) {
+            if (payment.razorpayOrderId() == null) {
+                // Never reached the gateway, so nothing can have been captured
+                if (!payment.orderPending()) {
+                    abandoned.add(payment.id());
+                }
+                continue;
+            }
+            lookups.put(payment, executor.submit(() -> {
+                permits.acquire();
+                try {
+                    return gatewayGuard.call("payments.fetch",
+                            () -> paymentGateway.findCapturedPayment(payment.razorpayOrderId()));
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        Tally tally = new Tally();
+        tally.lookups = lookups.size();
+        Map<Long, String> captured = new LinkedHashMap<>();
+        for (Map.Entry<PendingPayment, Future<Optional<String>>> lookup : lookups.entrySet()) {
+            PendingPayment payment = lookup.getKey();
+            Optional<String> capturedId;
+            try {
+                capturedId = lookup.getValue().get();
+            } catch (ExecutionException e) {
+                tally.errors++;
+                log.debug("[PaymentReconciliation] Lookup of {} failed: {}", payment.razorpayOrderId(),
+                        e.getCause().getMessage());
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reconciling payments", e);
+            }
+            if (capturedId.isPresent()) {
+                captured.put(payment.id(), capturedId.get());
+            } else if (!payment.orderPending()) {
+                abandoned.add(payment.id());
+            } else {
+                tally.pending++;
+            }
+        }
+
+        if (!captured.isEmpty() || !abandoned.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> apply(captured, abandoned, tally));
+        }
+        count("paid", tally.paid);
+        count("failed", tally.failed);
+        count("refund", tally.refunds);
+        count("pending", tally.pending);
+        count("error", tally.errors);
+        return tally;
+    }
+
+    private void apply(Map<Long, String> captured, List<Long> abandoned, Tally tally) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> paymentIds = new ArrayList<>(captured.keySet());
+        paymentIds.addAll(abandoned);
+        jdbcTemplate.query(con -> statement(con, LOCK_ORDERS_SQL, bigints(con, paymentIds)),
+                (rs, i) -> rs.getLong(1));
+
+        if (!captured.isEmpty()) {
+            List<Long> paidOrderIds = jdbcTemplate.query(con -> statement(con, MARK_PAID_SQL,
+                    Timestamp.valueOf(now), bigints(con, captured.keySet()),
+                    con.createArrayOf("varchar", captured.values().toArray())),
+                    (rs, i) -> rs.getLong(1));
+            List<Long> confirmed = jdbcTemplate.query(con -> statement(con, CONFIRM_ORDERS_SQL,
+                    Timestamp.valueOf(now), bigints(con, paidOrderIds)), (rs, i) -> rs.getLong(1));
+            jdbcTemplate.update(con -> statement(con, SETTLE_RESERVATIONS_SQL, bigints(con, confirmed)));
+            tally.paid = paidOrderIds.size();
+
+            // Same check as PaymentWebhookWorker: never confirm an order that was cancelled before capture
+            List<Refund> refunds = jdbcTemplate.query(con -> statement(con, MARK_CAPTURED_FAILED_SQL,
+                    bigints(con, captured.keySet()), con.createArrayOf("varchar", captured.values().toArray())),
+                    (rs, i) -> new Refund(rs.getString(1), rs.getString(2)));
+            flagRefunds(refunds, now);
+            tally.refunds = refunds.size();
+        }
+        if (!abandoned.isEmpty()) {
+            tally.failed = jdbcTemplate.update(con -> statement(con, MARK_FAILED_SQL, bigints(con, abandoned)));
+        }
+    }
+
+    private void flagRefunds(List<Refund> refunds, LocalDateTime now) {
+        if (refunds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(FLAG_REFUND_SQL, refunds, refunds.size(), (ps, refund) -> {
+            ps.setString(1, "reconcile_" + refund.paymentId());
+            ps.setString(2, PaymentWebhookService.PAYMENT_CAPTURED);
+            ps.setString(3, refund.razorpayOrderId());
+            ps.setString(4, refund.paymentId());
+            ps.setString(5, "Order was cancelled before capture; " + refund.paymentId() + " needs a refund");
+            ps.setTimestamp(6, Timestamp.valueOf(now));
+        });
+        log.warn("[PaymentReconciliation] {} captured payment(s) belong to cancelled orders and need a refund, "
+                + "e.g. {}", refunds.size(), refunds.stream().limit(10).map(Refund::paymentId).toList());
+    }
+
+    private void count(String outcome, int amount) {
+        Counter.builder("payments.reconciled")
+                .description("Pending payments examined by reconciliation")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    private static PreparedStatement statement(Connection con, String sql, Object... params) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql);
+        for (int i = 0; i < params.length; i++) {
+            ps.setObject(i + 1, params[i]);
+        }
+        return ps;
+    }
+
+    private static Array bigints(Connection con, Collection<Long> ids) throws SQLException {
+        return con.createArrayOf("bigint", ids.toArray());
+    }
+
+    private static final RowMapper<PendingPayment> PENDING_PAYMENT = (rs, i) -> new PendingPayment(
+            rs.getLong("id"), rs.getString("razorpay_order_id"), "PENDING".equals(rs.getString("order_status")));
+
+    private record PendingPayment(long id, String razorpayOrderId, boolean orderPending) {
+    }
+
+    private record Refund(String razorpayOrderId, String paymentId) {
+    }
+
+    private static final class Tally {
+        int lookups;
+        int paid;
+        int failed;
+        int refunds;
+        int pending;
+        int errors;
+
+        void add(Tally other) {
+            paid += other.paid;
+            failed += other.failed;
+            refunds += other.refunds;
+            pending += other.pending;
+            errors += other.errors;
+        }
+    }
+}
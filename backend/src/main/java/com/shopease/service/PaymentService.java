@@ -1,23 +1,32 @@
 package com.shopease.service;
 
-import com.razorpay.RazorpayClient;
-import com.razorpay.RazorpayException;
 import com.shopease.entity.*;
+import com.shopease.event.ProductStockChangedEvent;
 import com.shopease.exception.BadRequestException;
 import com.shopease.exception.ResourceNotFoundException;
+import com.shopease.gateway.GatewayGuard;
+import com.shopease.gateway.PaymentGateway;
+import com.shopease.pricing.CartTotals;
+import com.shopease.pricing.PricingEngine;
 import com.shopease.repository.OrderRepository;
 import com.shopease.repository.PaymentRepository;
-import jakarta.annotation.PostConstruct;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
@@ -28,29 +37,21 @@ public class PaymentService {
     private final CartService cartService;
     private final AddressService addressService;
     private final EmailService emailService;
-
-    @Value("${app.razorpay.key-id}")
-    private String keyId;
+    private final InventoryService inventoryService;
+    private final StockReservationService stockReservationService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final PaymentGateway paymentGateway;
+    private final GatewayGuard gatewayGuard;
+    private final PricingEngine pricing;
 
     @Value("${app.razorpay.key-secret}")
     private String keySecret;
 
-    private RazorpayClient razorpayClient;
-
-    @PostConstruct
-    public void init() {
-        if (keyId != null && !keyId.isEmpty() && keySecret != null && !keySecret.isEmpty()) {
-            try {
-                razorpayClient = new RazorpayClient(keyId, keySecret);
-            } catch (RazorpayException e) {
-                throw new RuntimeException("Could not initialize Razorpay SDK", e);
-            }
-        }
-    }
-
     @Transactional
     public Order placeOrderFromCart(User user, Long addressId, String notes) {
-        Cart cart = cartService.getCartByUserId(user.getId());
+        Cart cart = cartService.getCartForCheckout(user.getId());
 
         if (cart.getItems().isEmpty()) {
             throw new BadRequestException("Cart is empty");
@@ -64,60 +65,58 @@ public class PaymentService {
         order.setNotes(notes);
         order.setStatus(Order.OrderStatus.PENDING);
 
-        BigDecimal totalAmount = BigDecimal.ZERO;
-
+        // Deduct stock atomically; rolls back the whole checkout if any line is short.
+        // A variant line takes the variant's stock only.
+        Map<Long, Integer> quantities = new HashMap<>();
+        Map<Long, Integer> variantQuantities = new HashMap<>();
+        // Cached product details carry variant stock too
+        Set<Long> stockChanged = new HashSet<>();
         for (CartItem cartItem : cart.getItems()) {
-            Product product = cartItem.getProduct();
-            if (product.getStockQuantity() < cartItem.getQuantity()) {
-                throw new BadRequestException("Not enough stock for product: " + product.getName());
+            stockChanged.add(cartItem.getProduct().getId());
+            if (cartItem.getVariant() != null) {
+                variantQuantities.merge(cartItem.getVariant().getId(), cartItem.getQuantity(), Integer::sum);
+            } else {
+                quantities.merge(cartItem.getProduct().getId(), cartItem.getQuantity(), Integer::sum);
             }
+        }
+        inventoryService.reserve(quantities);
+        inventoryService.reserveVariants(variantQuantities);
+
+        long subtotal = 0;
 
-            // Deduct stock
-            product.setStockQuantity(product.getStockQuantity() - cartItem.getQuantity());
+        for (CartItem cartItem : cart.getItems()) {
+            Product product = cartItem.getProduct();
+            ProductVariant variant = cartItem.getVariant();
 
             OrderItem orderItem = new OrderItem();
             orderItem.setOrder(order);
             orderItem.setProduct(product);
+            orderItem.setVariant(variant);
             orderItem.setProductName(product.getName());
+            orderItem.setVariantLabel(variant == null ? null : variant.label());
             orderItem.setProductImageUrl(
                     product.getImages().isEmpty() ? null : product.getImages().get(0).getImageUrl());
             orderItem.setQuantity(cartItem.getQuantity());
+            orderItem.setUnitPrice(PricingEngine.toRupees(pricing.unitPrice(product, variant)));
 
-            BigDecimal currentPrice = product.getSalePrice() != null ? product.getSalePrice() : product.getPrice();
-            orderItem.setUnitPrice(currentPrice);
-
-            totalAmount = totalAmount.add(orderItem.getSubtotal());
+            subtotal += pricing.lineTotal(product, variant, cartItem.getQuantity());
             order.getItems().add(orderItem);
         }
 
-        BigDecimal discountAmount = BigDecimal.ZERO;
-
-        if (cart.getCoupon() != null && cart.getCoupon().isValid()) {
-            Coupon coupon = cart.getCoupon();
-            if (coupon.getMinOrderAmount() == null || totalAmount.compareTo(coupon.getMinOrderAmount()) >= 0) {
-                if ("PERCENTAGE".equalsIgnoreCase(coupon.getDiscountType())) {
-                    discountAmount = totalAmount.multiply(coupon.getDiscountValue())
-                            .divide(new BigDecimal("100"), 2, java.math.RoundingMode.HALF_UP);
-                } else if ("FIXED".equalsIgnoreCase(coupon.getDiscountType())) {
-                    discountAmount = coupon.getDiscountValue();
-                }
-
-                if (discountAmount.compareTo(totalAmount) > 0) {
-                    discountAmount = totalAmount;
-                }
-
-                order.setCoupon(coupon);
-            }
+        CartTotals totals = pricing.totals(subtotal, cart.getCoupon());
+        if (pricing.qualifies(cart.getCoupon(), subtotal)) {
+            order.setCoupon(cart.getCoupon());
         }
-
-        order.setDiscountAmount(discountAmount);
-        order.setTotalAmount(totalAmount.subtract(discountAmount));
+        order.setDiscountAmount(totals.discount());
+        order.setTotalAmount(totals.total());
 
         // Empty the cart
-        cart.getItems().clear();
-        cart.setCoupon(null);
+        cartService.clearAfterCheckout(user.getId());
 
         Order savedOrder = orderRepository.save(order);
+        // Unpaid orders give their stock back once the reservation expires
+        stockReservationService.hold(savedOrder);
+        eventPublisher.publishEvent(new ProductStockChangedEvent(stockChanged));
 
         // Send order confirmation email asynchronously
         emailService.sendOrderConfirmationEmail(user, savedOrder);
@@ -125,64 +124,79 @@ public class PaymentService {
         return savedOrder;
     }
 
-    @Transactional
+    /**
+     * Creates the Razorpay order for a PENDING order without holding a
+     * connection or row lock during the gateway round-trip: a short
+     * transaction reserves the local payment row, the gateway is called with
+     * no transaction open, and a second short transaction records the
+     * gateway order id. Calling it again for the same order reuses the row.
+     */
     public Payment createRazorpayOrder(Long orderId) {
-        Order order = orderRepository.findById(orderId)
+        Payment reserved = timeTransaction("reserve",
+                () -> transactionTemplate.execute(status -> reservePayment(orderId)));
+        if (reserved.getRazorpayOrderId() != null) {
+            return reserved;
+        }
+
+        // For development without keys
+        String razorpayOrderId = !paymentGateway.isConfigured()
+                ? "mock_order_" + orderId
+                : gatewayGuard.call("orders.create",
+                        () -> paymentGateway.createOrder(reserved.getAmount(), "INR", "txn_" + orderId));
+
+        return timeTransaction("finalize", () -> transactionTemplate.execute(status -> {
+            paymentRepository.attachRazorpayOrderId(reserved.getId(), razorpayOrderId);
+            return paymentRepository.findById(reserved.getId()).orElseThrow();
+        }));
+    }
+
+    private Payment reservePayment(Long orderId) {
+        Order order = orderRepository.findByIdForUpdate(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
 
         if (order.getStatus() != Order.OrderStatus.PENDING) {
             throw new BadRequestException("Cannot initiate payment for order in status: " + order.getStatus());
         }
 
-        if (razorpayClient == null) {
-            // For development without keys
-            return createMockPayment(order);
-        }
-
-        try {
-            JSONObject options = new JSONObject();
-            // Razorpay considers amount in paise (multiply by 100)
-            options.put("amount", order.getTotalAmount().multiply(new BigDecimal("100")).intValue());
-            options.put("currency", "INR");
-            options.put("receipt", "txn_" + order.getId());
-
-            com.razorpay.Order razorpayOrder = razorpayClient.orders.create(options);
-
-            Payment payment = new Payment();
+        Payment payment = order.getPayment();
+        if (payment == null) {
+            payment = new Payment();
             payment.setOrder(order);
             payment.setAmount(order.getTotalAmount());
-            payment.setRazorpayOrderId(razorpayOrder.get("id"));
             payment.setStatus(Payment.PaymentStatus.PENDING);
-
             order.setPayment(payment);
-            return paymentRepository.save(payment);
-
-        } catch (RazorpayException e) {
-            throw new RuntimeException("Error creating Razorpay order: " + e.getMessage());
         }
+        return paymentRepository.save(payment);
     }
 
-    private Payment createMockPayment(Order order) {
-        Payment payment = new Payment();
-        payment.setOrder(order);
-        payment.setAmount(order.getTotalAmount());
-        payment.setRazorpayOrderId("mock_order_" + order.getId());
-        payment.setStatus(Payment.PaymentStatus.PENDING);
-        order.setPayment(payment);
-        return paymentRepository.save(payment);
+    // Each phase holds a pooled connection for exactly its duration
+    private <T> T timeTransaction(String phase, Supplier<T> transaction) {
+        return Timer.builder("payments.initiate.transaction")
+                .description("Database transactions of payment initiation; the gateway call runs between them")
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .record(transaction);
     }
 
     @Transactional
     public Payment verifyPayment(Long orderId, String razorpayOrderId, String razorpayPaymentId,
             String razorpaySignature) {
+        // Lock first: the expiry sweeper may be cancelling this order right now
+        Order order = orderRepository.findByIdForUpdate(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+        if (order.getStatus() == Order.OrderStatus.CANCELLED) {
+            throw new BadRequestException("Order was cancelled before the payment was completed");
+        }
+
         Payment payment = paymentRepository.findByOrderId(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment not found for order"));
 
-        if (!payment.getRazorpayOrderId().equals(razorpayOrderId)) {
+        // Null until the gateway call after the payment row was committed has succeeded
+        if (razorpayOrderId == null || !razorpayOrderId.equals(payment.getRazorpayOrderId())) {
             throw new BadRequestException("Invalid Razorpay Order ID");
         }
 
-        if (razorpayClient != null) {
+        if (paymentGateway.isConfigured()) {
             try {
                 String payload = razorpayOrderId + "|" + razorpayPaymentId;
                 Mac mac = Mac.getInstance("HmacSHA256");
@@ -201,14 +215,24 @@ public class PaymentService {
             }
         }
 
+        markPaid(order, payment, razorpayPaymentId, razorpaySignature);
+        return paymentRepository.save(payment);
+    }
+
+    /**
+     * Records a captured payment and confirms its order. Shared by
+     * {@link #verifyPayment} and the webhook worker; the caller must hold the
+     * order's row lock.
+     */
+    void markPaid(Order order, Payment payment, String razorpayPaymentId, String razorpaySignature) {
         payment.setStatus(Payment.PaymentStatus.SUCCESS);
         payment.setRazorpayPaymentId(razorpayPaymentId);
-        payment.setRazorpaySignature(razorpaySignature);
+        if (razorpaySignature != null) {
+            payment.setRazorpaySignature(razorpaySignature);
+        }
         payment.setPaidAt(java.time.LocalDateTime.now());
 
-        Order order = payment.getOrder();
         order.setStatus(Order.OrderStatus.CONFIRMED);
-
-        return paymentRepository.save(payment);
+        stockReservationService.settle(order.getId());
     }
 }
@@ -0,0 +1,125 @@
+package com.shopease.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shopease.exception.BadRequestException;
+import com.shopease.exception.UnauthorizedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Receiving side of Razorpay webhooks. A delivery is verified against the
+ * webhook secret and written to the payment_webhook_events inbox, nothing
+ * more, so Razorpay gets its 2xx within a single insert. Events are applied
+ * to payments and orders later by {@link PaymentWebhookWorker}.
+ *
+ * Redeliveries of the same event hit the unique event_id and are dropped.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentWebhookService {
+
+    public static final String SIGNATURE_HEADER = "X-Razorpay-Signature";
+    public static final String EVENT_ID_HEADER = "X-Razorpay-Event-Id";
+
+    static final String PAYMENT_CAPTURED = "payment.captured";
+    static final String ORDER_PAID = "order.paid";
+    static final String PAYMENT_FAILED = "payment.failed";
+
+    private static final Set<String> HANDLED_EVENTS = Set.of(PAYMENT_CAPTURED, ORDER_PAID, PAYMENT_FAILED);
+
+    private static final String ENQUEUE_SQL = "INSERT INTO payment_webhook_events "
+            + "(event_id, event_type, razorpay_order_id, razorpay_payment_id, payload) VALUES (?, ?, ?, ?, ?) "
+            + "ON CONFLICT (event_id) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final PaymentWebhookWorker worker;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.razorpay.webhook-secret}")
+    private String webhookSecret;
+
+    /**
+     * Verifies and enqueues one delivery. Event types the worker does not act
+     * on are acknowledged without being stored.
+     *
+     * @param eventId Razorpay's event id header; without it the event type
+     *                and payment id identify the event
+     */
+    public void receive(String body, String signature, String eventId) {
+        if (!signatureMatches(body, signature)) {
+            count("rejected");
+            throw new UnauthorizedException("Invalid webhook signature");
+        }
+
+        JsonNode event;
+        try {
+            event = objectMapper.readTree(body);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Webhook body is not valid JSON");
+        }
+        String type = event.path("event").asText();
+        if (!HANDLED_EVENTS.contains(type)) {
+            count("ignored");
+            return;
+        }
+
+        JsonNode payment = event.path("payload").path("payment").path("entity");
+        String razorpayPaymentId = payment.path("id").asText(null);
+        String razorpayOrderId = payment.path("order_id").asText(null);
+        if (razorpayPaymentId == null || razorpayOrderId == null) {
+            throw new BadRequestException("Webhook payload has no payment entity");
+        }
+        if (eventId == null || eventId.isBlank()) {
+            eventId = type + ":" + razorpayPaymentId;
+        }
+
+        int inserted = jdbcTemplate.update(ENQUEUE_SQL, eventId, type, razorpayOrderId, razorpayPaymentId, body);
+        if (inserted == 0) {
+            count("duplicate");
+            return;
+        }
+        count("enqueued");
+        worker.wakeUp();
+    }
+
+    private boolean signatureMatches(String body, String signature) {
+        if (webhookSecret == null || webhookSecret.isEmpty() || signature == null) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] expected = mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
+            return MessageDigest.isEqual(expected, HexFormat.of().parseHex(signature));
+        } catch (IllegalArgumentException e) {
+            return false;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private void count(String result) {
+        Counter.builder("payments.webhook.received")
+                .description("Razorpay webhook deliveries")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
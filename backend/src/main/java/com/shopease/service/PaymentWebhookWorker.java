@@ -0,0 +1,257 @@
+package com.shopease.service;
+
+import com.shopease.entity.Order;
+import com.shopease.entity.Payment;
+import com.shopease.repository.OrderRepository;
+import com.shopease.repository.PaymentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Applies inboxed Razorpay webhook events to payments and orders.
+ *
+ * A pool of {@code workers} threads each claims up to {@code batch-size}
+ * events with FOR UPDATE SKIP LOCKED, so workers on all nodes share the inbox
+ * without contention, and applies the batch in one transaction. Events are
+ * grouped by Razorpay payment id: redeliveries and follow-up events for one
+ * payment collapse into a single update, and a payment already confirmed by
+ * {@link PaymentService#verifyPayment} is left alone. If the batch fails, its
+ * payments are retried one transaction each; an event that keeps failing is
+ * parked as FAILED after {@code max-attempts}. Retries back off exponentially
+ * from {@code retry-backoff}, so a transient error does not use up the
+ * attempts at once. A claim is leased, so events held by a node that died
+ * are picked up again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentWebhookWorker {
+
+    private static final String CLAIM_SQL = "UPDATE payment_webhook_events "
+            + "SET status = 'PROCESSING', attempts = attempts + 1, locked_until = ? "
+            + "WHERE id IN (SELECT id FROM payment_webhook_events "
+            + "WHERE status IN ('PENDING', 'PROCESSING') AND (locked_until IS NULL OR locked_until < ?) "
+            + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "RETURNING id, event_type, razorpay_order_id, razorpay_payment_id, attempts";
+    private static final String FINISH_SQL = "UPDATE payment_webhook_events "
+            + "SET status = ?, last_error = ?, locked_until = ?, processed_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderRepository orderRepository;
+    private final PaymentRepository paymentRepository;
+    private final PaymentService paymentService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.payments.webhook.workers:2}")
+    private int workers;
+
+    @Value("${app.payments.webhook.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.payments.webhook.poll-interval:1s}")
+    private Duration pollInterval;
+
+    @Value("${app.payments.webhook.lease:60s}")
+    private Duration lease;
+
+    @Value("${app.payments.webhook.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.payments.webhook.retry-backoff:5s}")
+    private Duration retryBackoff;
+
+    @Value("${app.payments.webhook.max-retry-backoff:5m}")
+    private Duration maxRetryBackoff;
+
+    private final Object signal = new Object();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+    private boolean signalled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            threads.add(Thread.ofPlatform().name("payment-webhook-" + i).daemon().start(this::run));
+        }
+        log.info("[PaymentWebhook] Started {} worker(s)", workers);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        wakeUp();
+        for (Thread thread : threads) {
+            thread.join(pollInterval.toMillis());
+        }
+    }
+
+    /** Cuts the poll wait short after an event was enqueued on this node. */
+    void wakeUp() {
+        synchronized (signal) {
+            signalled = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            int claimed = 0;
+            try {
+                claimed = processBatch();
+            } catch (RuntimeException e) {
+                log.error("[PaymentWebhook] Could not claim events", e);
+            }
+            if (claimed == 0) {
+                awaitWork();
+            }
+        }
+    }
+
+    private void awaitWork() {
+        synchronized (signal) {
+            try {
+                if (!signalled && running) {
+                    signal.wait(pollInterval.toMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            signalled = false;
+        }
+    }
+
+    /** Claims and applies one batch. @return number of events claimed */
+    int processBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<InboxEvent> events = jdbcTemplate.query(CLAIM_SQL, (rs, i) -> new InboxEvent(
+                rs.getLong("id"), rs.getString("event_type"), rs.getString("razorpay_order_id"),
+                rs.getString("razorpay_payment_id"), rs.getInt("attempts")),
+                Timestamp.valueOf(now.plus(lease)), Timestamp.valueOf(now), batchSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<InboxEvent>> byPayment = events.stream()
+                .sorted(Comparator.comparing(InboxEvent::id))
+                .collect(Collectors.groupingBy(InboxEvent::razorpayPaymentId, LinkedHashMap::new,
+                        Collectors.toList()));
+        try {
+            transactionTemplate.executeWithoutResult(status -> byPayment.values()
+                    .forEach(group -> finish(group, apply(group))));
+        } catch (RuntimeException e) {
+            log.warn("[PaymentWebhook] Batch of {} event(s) failed, retrying one payment at a time",
+                    events.size(), e);
+            for (List<InboxEvent> group : byPayment.values()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> finish(group, apply(group)));
+                } catch (RuntimeException groupError) {
+                    finish(group, Result.retry(String.valueOf(groupError.getMessage())));
+                }
+            }
+        }
+        return events.size();
+    }
+
+    /** Applies the events of one Razorpay payment. Must run in a transaction. */
+    private Result apply(List<InboxEvent> group) {
+        InboxEvent first = group.get(0);
+        String razorpayPaymentId = first.razorpayPaymentId();
+        boolean captured = group.stream()
+                .anyMatch(event -> !PaymentWebhookService.PAYMENT_FAILED.equals(event.eventType()));
+
+        // Lock before reading the payment: verifyPayment and the expiry sweeper take the same lock
+        Order order = orderRepository.findByRazorpayOrderIdForUpdate(first.razorpayOrderId()).orElse(null);
+        if (order == null) {
+            return Result.retry("No payment for Razorpay order " + first.razorpayOrderId());
+        }
+        Payment payment = paymentRepository.findByRazorpayOrderId(first.razorpayOrderId()).orElseThrow();
+
+        if (payment.getStatus() == Payment.PaymentStatus.SUCCESS) {
+            if (!captured || razorpayPaymentId.equals(payment.getRazorpayPaymentId())) {
+                return Result.PROCESSED;
+            }
+            return Result.failed("Order already paid by " + payment.getRazorpayPaymentId()
+                    + "; " + razorpayPaymentId + " needs a refund");
+        }
+        if (!captured) {
+            payment.setStatus(Payment.PaymentStatus.FAILED);
+            return Result.PROCESSED;
+        }
+        if (order.getStatus() == Order.OrderStatus.CANCELLED) {
+            // Settled here, so reconciliation does not flag the same capture for refund again
+            payment.setStatus(Payment.PaymentStatus.FAILED);
+            payment.setRazorpayPaymentId(razorpayPaymentId);
+            return Result.failed("Order was cancelled before capture; " + razorpayPaymentId + " needs a refund");
+        }
+        paymentService.markPaid(order, payment, razorpayPaymentId, null);
+        return Result.PROCESSED;
+    }
+
+    private void finish(List<InboxEvent> group, Result result) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(FINISH_SQL, group, group.size(), (ps, event) -> {
+            String status = result.status();
+            if ("PENDING".equals(status) && event.attempts() >= maxAttempts) {
+                status = "FAILED";
+            }
+            boolean retry = "PENDING".equals(status);
+            ps.setString(1, status);
+            ps.setString(2, result.error());
+            ps.setTimestamp(3, retry ? Timestamp.valueOf(now.plus(backoff(event.attempts()))) : null);
+            ps.setTimestamp(4, retry ? null : Timestamp.valueOf(now));
+            ps.setLong(5, event.id());
+        });
+        if (result.error() != null) {
+            log.warn("[PaymentWebhook] Payment {}: {}", group.get(0).razorpayPaymentId(), result.error());
+        }
+        Counter.builder("payments.webhook.applied")
+                .description("Razorpay webhook events applied by the worker")
+                .tag("result", result.status().toLowerCase())
+                .register(meterRegistry)
+                .increment(group.size());
+    }
+
+    /** Wait before the next attempt of an event tried {@code attempts} times: doubles each time, capped. */
+    private Duration backoff(int attempts) {
+        Duration backoff = retryBackoff.multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 20));
+        return backoff.compareTo(maxRetryBackoff) > 0 ? maxRetryBackoff : backoff;
+    }
+
+    private record InboxEvent(Long id, String eventType, String razorpayOrderId, String razorpayPaymentId,
+            int attempts) {
+    }
+
+    private record Result(String status, String error) {
+        static final Result PROCESSED = new Result("PROCESSED", null);
+
+        static Result failed(String error) {
+            return new Result("FAILED", error);
+        }
+
+        static Result retry(String error) {
+            return new Result("PENDING", error);
+        }
+    }
+}
@@ -1,31 +1,206 @@
 package com.shopease.service;
 
+import com.shopease.config.CacheConfig;
+import com.shopease.dto.request.ProductFilterRequest;
+import com.shopease.dto.response.CursorPage;
+import com.shopease.dto.response.FacetedProductsResponse;
+import com.shopease.dto.response.ProductDetailsDto;
+import com.shopease.dto.response.ProductSummaryDto;
 import com.shopease.entity.Product;
+import com.shopease.event.ProductChangedEvent;
+import com.shopease.event.ProductPriceChangedEvent;
 import com.shopease.exception.BadRequestException;
 import com.shopease.exception.ResourceNotFoundException;
 import com.shopease.repository.ProductRepository;
+import com.shopease.search.ProductFacetIndex;
+import com.shopease.search.ProductSearchIndex;
+import com.shopease.search.ProductSearchResult;
+import com.shopease.search.QueryCorrector;
+import com.shopease.search.SearchBackend;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PagedModel;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
 
+    private static final Map<String, String> FULL_TEXT_SORT_COLUMNS = Map.of(
+            "id", "id",
+            "name", "name",
+            "price", "price",
+            "createdAt", "created_at",
+            "averageRating", "average_rating");
+
     private final ProductRepository productRepository;
     private final CategoryService categoryService;
+    private final ObjectProvider<ProductSearchIndex> productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.search.backend:index}")
+    private SearchBackend searchBackend;
+
+    @Value("${app.search.fuzzy-budget:25ms}")
+    private Duration fuzzyBudget;
 
+    /**
+     * A category filter matches the whole subtree under that category; an
+     * unknown category matches nothing.
+     */
     @Transactional(readOnly = true)
-    public Page<Product> getProducts(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, String search,
+    public ProductSearchResult getProducts(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, String search,
+            Pageable pageable) {
+        String categoryPath = null;
+        if (categoryId != null) {
+            categoryPath = categoryService.getSubtreePath(categoryId);
+            if (categoryPath == null) {
+                return ProductSearchResult.of(Page.empty(pageable));
+            }
+        }
+        if (search != null && !search.isBlank()) {
+            ProductSearchIndex index = productSearchIndex.getIfAvailable();
+            if (searchBackend == SearchBackend.INDEX && index != null && index.isReady()) {
+                Set<Long> categoryIds = categoryId != null ? categoryService.getSubtreeIds(categoryId) : null;
+                return searchIndex(index, categoryIds, minPrice, maxPrice, search, pageable);
+            }
+            if (searchBackend == SearchBackend.FULLTEXT) {
+                return searchFullText(categoryPath, minPrice, maxPrice, search, pageable);
+            }
+        }
+        if (categoryPath != null || minPrice != null || maxPrice != null || search != null) {
+            return ProductSearchResult.of(
+                    productRepository.findSummariesWithFilters(categoryPath, minPrice, maxPrice, search, pageable));
+        }
+        return ProductSearchResult.of(productRepository.findActiveSummaries(pageable));
+    }
+
+    private ProductSearchResult searchIndex(ProductSearchIndex index, Set<Long> categoryIds, BigDecimal minPrice,
+            BigDecimal maxPrice, String search, Pageable pageable) {
+        List<Long> ids = index.search(search, categoryIds, minPrice, maxPrice, pageable.getSort());
+        if (!ids.isEmpty()) {
+            return ProductSearchResult.of(pageOf(ids, pageable));
+        }
+        ProductSearchIndex.FuzzyResult fuzzy = index.searchFuzzy(search, categoryIds, minPrice, maxPrice,
+                pageable.getSort(), fuzzyBudget);
+        return new ProductSearchResult(pageOf(fuzzy.ids(), pageable), fuzzy.suggestion());
+    }
+
+    /**
+     * Filtered page plus facet counts for the whole result set, computed in
+     * one pass by {@link ProductFacetIndex}. Text matching is delegated to the
+     * configured search backend and only contributes the ranked id list.
+     */
+    @Transactional(readOnly = true)
+    public FacetedProductsResponse getFacetedProducts(ProductFilterRequest filter, Pageable pageable) {
+        List<Long> rankedIds = null;
+        String search = filter.getSearch();
+        if (search != null && !search.isBlank()) {
+            ProductSearchIndex index = productSearchIndex.getIfAvailable();
+            if (searchBackend == SearchBackend.INDEX && index != null && index.isReady()) {
+                rankedIds = index.search(search, null, null, null, pageable.getSort());
+            } else if (searchBackend == SearchBackend.FULLTEXT) {
+                rankedIds = productRepository.findIdsByFullText(search);
+            } else {
+                rankedIds = productRepository.findIdsBySearchTerm(search);
+            }
+        }
+        Set<Long> categoryIds = filter.getCategoryId() != null
+                ? categoryService.getSubtreeIds(filter.getCategoryId())
+                : null;
+        ProductFacetIndex.FacetResult result = productFacetIndex.query(filter, categoryIds, rankedIds,
+                pageable.getSort());
+        return new FacetedProductsResponse(new PagedModel<>(pageOf(result.ids(), pageable)), result.facets());
+    }
+
+    private Page<ProductSummaryDto> pageOf(List<Long> ids, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(summariesInOrder(ids), pageable, ids.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(summariesInOrder(ids.subList(from, to)), pageable, ids.size());
+    }
+
+    private ProductSearchResult searchFullText(String categoryPath, BigDecimal minPrice, BigDecimal maxPrice,
+            String search, Pageable pageable) {
+        Page<Product> page = findByFullText(categoryPath, minPrice, maxPrice, search, pageable);
+        if (page.getTotalElements() > 0) {
+            return ProductSearchResult.of(summariesOf(page));
+        }
+        // Nothing matched literally: fall back to trigram similarity on the name
+        Page<Product> similar = productRepository.findBySimilarName(categoryPath, minPrice, maxPrice, search,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+        // Corrected from the names found, which already passed the filters
+        String suggestion = QueryCorrector.correct(search,
+                similar.getContent().stream().map(Product::getName).toList());
+        return new ProductSearchResult(summariesOf(similar), suggestion);
+    }
+
+    private Page<Product> findByFullText(String categoryPath, BigDecimal minPrice, BigDecimal maxPrice, String search,
             Pageable pageable) {
-        if (categoryId != null || minPrice != null || maxPrice != null || search != null) {
-            return productRepository.findWithFilters(categoryId, minPrice, maxPrice, search, pageable);
+        if (pageable.getSort().isUnsorted()) {
+            return productRepository.findByFullText(categoryPath, minPrice, maxPrice, search, pageable);
+        }
+        // Native query: translate entity properties to column names
+        Sort columns = Sort.by(pageable.getSort().stream()
+                .filter(order -> FULL_TEXT_SORT_COLUMNS.containsKey(order.getProperty()))
+                .map(order -> order.withProperty(FULL_TEXT_SORT_COLUMNS.get(order.getProperty())))
+                .toList());
+        if (columns.isUnsorted()) {
+            return productRepository.findByFullText(categoryPath, minPrice, maxPrice, search,
+                    PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
         }
-        return productRepository.findByActiveTrue(pageable);
+        return productRepository.findByFullTextSorted(categoryPath, minPrice, maxPrice, search,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), columns));
+    }
+
+    /** Native full-text queries cannot use constructor projections; re-read their page as summaries. */
+    private Page<ProductSummaryDto> summariesOf(Page<Product> page) {
+        List<ProductSummaryDto> content = summariesInOrder(page.getContent().stream().map(Product::getId).toList());
+        return new PageImpl<>(content, page.getPageable(), page.getTotalElements());
+    }
+
+    private List<ProductSummaryDto> summariesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Integer> position = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            position.put(ids.get(i), i);
+        }
+        return productRepository.findSummariesByIdIn(ids).stream()
+                .sorted(Comparator.comparing(p -> position.get(p.getId())))
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<ProductSummaryDto> scrollProducts(String cursor, Integer size) {
+        KeysetCursor.Position after = KeysetCursor.decode(cursor);
+        int limit = KeysetCursor.clampSize(size);
+        PageRequest fetch = PageRequest.of(0, limit + 1);
+        List<ProductSummaryDto> rows = after == null
+                ? productRepository.findActiveSummariesFirstPage(fetch)
+                : productRepository.findActiveSummariesAfter(after.sortKey(), after.id(), fetch);
+        return KeysetCursor.page(rows, limit, ProductSummaryDto::getCreatedAt, ProductSummaryDto::getId);
     }
 
     @Transactional(readOnly = true)
@@ -38,14 +213,29 @@ public class ProductService {
         return product;
     }
 
+    /**
+     * Product detail view served through the two-tier products cache. The
+     * cached value is an immutable snapshot, not the entity, so callers share
+     * it safely. Entries are evicted after commit by
+     * {@link com.shopease.cache.ProductCacheInvalidator}; internal callers that
+     * need live stock must keep using {@link #getProductById(Long)}.
+     */
+    @Cacheable(cacheNames = CacheConfig.PRODUCTS, key = "#id")
+    @Transactional(readOnly = true)
+    public ProductDetailsDto getProductDetails(Long id) {
+        return ProductDetailsDto.of(getProductById(id));
+    }
+
     @Transactional
     public Product createProduct(Product product, Long categoryId) {
         if (productRepository.existsBySku(product.getSku())) {
             throw new BadRequestException("SKU already exists");
         }
 
-        product.setCategory(categoryService.getCategoryById(categoryId));
-        return productRepository.save(product);
+        product.setCategory(categoryService.getCategoryReference(categoryId));
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved, ProductChangedEvent.Type.CREATED));
+        return saved;
     }
 
     @Transactional
@@ -58,6 +248,13 @@ public class ProductService {
             throw new BadRequestException("SKU already exists");
         }
 
+        if (product.isFlashSale() && product.getStockQuantity() != productDetails.getStockQuantity()) {
+            throw new BadRequestException("Stock of a flash-sale product cannot be edited; end the flash sale first");
+        }
+
+        boolean repriced = !samePrice(product.getPrice(), productDetails.getPrice())
+                || !samePrice(product.getSalePrice(), productDetails.getSalePrice());
+
         product.setName(productDetails.getName());
         product.setSku(productDetails.getSku());
         product.setDescription(productDetails.getDescription());
@@ -66,10 +263,16 @@ public class ProductService {
         product.setStockQuantity(productDetails.getStockQuantity());
 
         if (categoryId != null) {
-            product.setCategory(categoryService.getCategoryById(categoryId));
+            product.setCategory(categoryService.getCategoryReference(categoryId));
         }
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(saved, ProductChangedEvent.Type.UPDATED));
+        // Published after ProductChangedEvent so the product cache is evicted before carts are repriced
+        if (repriced) {
+            eventPublisher.publishEvent(new ProductPriceChangedEvent(saved.getId()));
+        }
+        return saved;
     }
 
     @Transactional
@@ -78,5 +281,11 @@ public class ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
         product.setActive(false); // Soft delete
         productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.Type.DELETED));
+        eventPublisher.publishEvent(new ProductPriceChangedEvent(product.getId()));
+    }
+
+    private static boolean samePrice(BigDecimal current, BigDecimal updated) {
+        return current == null ? updated == null : updated != null && current.compareTo(updated) == 0;
     }
 }
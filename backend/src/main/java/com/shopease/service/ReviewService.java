@@ -1,19 +1,24 @@
 package com.shopease.service;
 
+import com.shopease.dto.response.CursorPage;
 import com.shopease.entity.Product;
 import com.shopease.entity.Review;
 import com.shopease.entity.User;
+import com.shopease.event.ProductChangedEvent;
 import com.shopease.exception.BadRequestException;
 import com.shopease.exception.ResourceNotFoundException;
 import com.shopease.repository.ProductRepository;
 import com.shopease.repository.ReviewRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -22,12 +27,24 @@ public class ReviewService {
     private final ReviewRepository reviewRepository;
     private final ProductRepository productRepository;
     private final ProductService productService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional(readOnly = true)
     public Page<Review> getProductReviews(Long productId, Pageable pageable) {
         return reviewRepository.findByProductId(productId, pageable);
     }
 
+    @Transactional(readOnly = true)
+    public CursorPage<Review> scrollProductReviews(Long productId, String cursor, Integer size) {
+        KeysetCursor.Position after = KeysetCursor.decode(cursor);
+        int limit = KeysetCursor.clampSize(size);
+        PageRequest fetch = PageRequest.of(0, limit + 1);
+        List<Review> rows = after == null
+                ? reviewRepository.findByProductIdFirstPage(productId, fetch)
+                : reviewRepository.findByProductIdAfter(productId, after.sortKey(), after.id(), fetch);
+        return KeysetCursor.page(rows, limit, Review::getCreatedAt, Review::getId);
+    }
+
     @Transactional
     public Review addReview(User user, Long productId, int rating, String comment) {
         if (rating < 1 || rating > 5) {
@@ -83,5 +100,6 @@ public class ReviewService {
         product.setAverageRating(avgRating != null ? BigDecimal.valueOf(avgRating) : BigDecimal.ZERO);
         product.setReviewCount((int) count);
         productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(product, ProductChangedEvent.Type.UPDATED));
     }
 }
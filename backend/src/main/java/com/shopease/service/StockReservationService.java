@@ -0,0 +1,198 @@
+package com.shopease.service;
+
+import com.shopease.entity.Order;
+import com.shopease.entity.StockReservation;
+import com.shopease.event.ProductStockChangedEvent;
+import com.shopease.repository.StockReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time limit on the stock an unpaid order holds. Checkout records one
+ * reservation per order line, of a product or of a variant; the rows go away
+ * when the order leaves PENDING.
+ * Orders still PENDING when their reservations expire are cancelled by
+ * {@link #sweepExpired()} and their stock is returned.
+ *
+ * The sweeper works set-based, in batches of {@code sweep-batch-size}
+ * reservations per transaction: one UPDATE cancels the expired orders, one
+ * DELETE returns their lines. Payment verification and status changes lock
+ * the order row first, so an order is either paid or swept, never both.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationService {
+
+    // Drops rows of orders that were settled without going through settle(), e.g. by a failed sweep
+    private static final String CLEAR_SETTLED_SQL = "DELETE FROM stock_reservations r USING orders o "
+            + "WHERE r.order_id = o.id AND o.status <> 'PENDING'";
+    // status is re-checked under the row lock, so an order paid concurrently is skipped
+    private static final String CANCEL_EXPIRED_SQL = "UPDATE orders SET status = 'CANCELLED', updated_at = ? "
+            + "WHERE status = 'PENDING' AND id IN (SELECT order_id FROM stock_reservations "
+            + "WHERE expires_at < ? ORDER BY expires_at LIMIT ?) RETURNING id";
+    private static final String DELETE_FOR_ORDERS_SQL =
+            "DELETE FROM stock_reservations WHERE order_id = ANY (?) RETURNING product_id, variant_id, quantity";
+    private static final String OLDEST_EXPIRED_SQL =
+            "SELECT MIN(expires_at) FROM stock_reservations WHERE expires_at < ?";
+
+    private final StockReservationRepository stockReservationRepository;
+    private final InventoryService inventoryService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.orders.reservation-ttl:15m}")
+    private Duration reservationTtl;
+
+    @Value("${app.orders.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private Counter ordersExpired;
+    private Counter reservationsReleased;
+    private Timer sweepTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        ordersExpired = Counter.builder("orders.reservations.expired")
+                .description("Unpaid orders cancelled because their reservations expired")
+                .register(meterRegistry);
+        reservationsReleased = Counter.builder("orders.reservations.released")
+                .description("Expired reservation lines returned to stock")
+                .register(meterRegistry);
+        sweepTimer = Timer.builder("orders.reservations.sweep")
+                .description("Duration of one expiry sweep")
+                .register(meterRegistry);
+        Gauge.builder("orders.reservations.lag", lagSeconds, AtomicLong::get)
+                .baseUnit("seconds")
+                .description("How long the oldest expired reservation had been waiting when the last sweep began")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the reservations for a freshly placed order. Must run in the
+     * checkout transaction, after the stock has been taken.
+     *
+     * @return when the reservations expire
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public LocalDateTime hold(Order order) {
+        LocalDateTime expiresAt = LocalDateTime.now().plus(reservationTtl);
+        List<StockReservation> reservations = order.getItems().stream()
+                .filter(item -> item.getProduct() != null)
+                .map(item -> StockReservation.builder()
+                        .order(order)
+                        .product(item.getProduct())
+                        .variant(item.getVariant())
+                        .quantity(item.getQuantity())
+                        .expiresAt(expiresAt)
+                        .build())
+                .toList();
+        stockReservationRepository.saveAll(reservations);
+        return expiresAt;
+    }
+
+    /**
+     * Drops an order's reservations once it has left PENDING. The stock itself
+     * stays taken (paid) or is released by the caller (cancelled).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void settle(Long orderId) {
+        stockReservationRepository.deleteByOrderId(orderId);
+    }
+
+    /**
+     * Cancels PENDING orders whose reservations have expired and returns their
+     * stock, one batch per transaction until nothing expired is left.
+     */
+    @Scheduled(fixedDelayString = "${app.orders.sweep-interval:PT30S}")
+    public void sweepExpired() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        LocalDateTime now = LocalDateTime.now();
+        int orders = 0;
+        int lines = 0;
+        try {
+            jdbcTemplate.update(CLEAR_SETTLED_SQL);
+            Timestamp oldest = jdbcTemplate.queryForObject(OLDEST_EXPIRED_SQL, Timestamp.class, Timestamp.valueOf(now));
+            lagSeconds.set(oldest == null ? 0 : Duration.between(oldest.toLocalDateTime(), now).toSeconds());
+
+            Sweep batch;
+            do {
+                batch = transactionTemplate.execute(status -> sweepBatch(now));
+                ordersExpired.increment(batch.orders());
+                reservationsReleased.increment(batch.reservations());
+                orders += batch.orders();
+                lines += batch.reservations();
+            } while (batch.orders() > 0);
+        } catch (RuntimeException e) {
+            log.error("[StockReservation] Expiry sweep failed, retrying next run", e);
+        } finally {
+            sample.stop(sweepTimer);
+        }
+        if (orders > 0) {
+            log.info("[StockReservation] Cancelled {} expired order(s), released {} reservation(s)", orders, lines);
+        }
+    }
+
+    private Sweep sweepBatch(LocalDateTime now) {
+        Timestamp cutoff = Timestamp.valueOf(now);
+        List<Long> orderIds = jdbcTemplate.queryForList(CANCEL_EXPIRED_SQL, Long.class,
+                cutoff, cutoff, sweepBatchSize);
+        if (orderIds.isEmpty()) {
+            return new Sweep(0, 0);
+        }
+
+        Map<Long, Integer> released = new HashMap<>();
+        Map<Long, Integer> releasedVariants = new HashMap<>();
+        // Variant lines change the variant stock shown with their product
+        Set<Long> stockChanged = new HashSet<>();
+        int[] lines = { 0 };
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(DELETE_FOR_ORDERS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", orderIds.toArray()));
+            return ps;
+        }, rs -> {
+            stockChanged.add(rs.getLong("product_id"));
+            Long variantId = rs.getObject("variant_id", Long.class);
+            if (variantId != null) {
+                releasedVariants.merge(variantId, rs.getInt("quantity"), Integer::sum);
+            } else {
+                released.merge(rs.getLong("product_id"), rs.getInt("quantity"), Integer::sum);
+            }
+            lines[0]++;
+        });
+        inventoryService.release(released);
+        inventoryService.releaseVariants(releasedVariants);
+        eventPublisher.publishEvent(new ProductStockChangedEvent(stockChanged));
+        return new Sweep(orderIds.size(), lines[0]);
+    }
+
+    private record Sweep(int orders, int reservations) {
+    }
+}
@@ -0,0 +1,219 @@
+package com.shopease.service;
+
+import com.shopease.entity.ProductVariant;
+import com.shopease.event.ProductPriceChangedEvent;
+import com.shopease.pricing.PricingEngine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Active product variants held in memory, so the variants endpoint, the cart
+ * and checkout resolve a variant by id or by (product, size, color) without
+ * a query. Loaded with one query into parallel arrays sorted by product, so a
+ * product's variants are one contiguous range.
+ *
+ * Stock here is advisory, like the stock of a cached product: it is adjusted
+ * as this node's checkouts commit and reloaded every {@code refresh-interval},
+ * while the conditional updates in {@link InventoryService} remain what
+ * decides whether stock is available. A reload that finds a price changed
+ * publishes {@link ProductPriceChangedEvent} for the product.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VariantIndex {
+
+    private static final String LOAD_SQL = "SELECT id, product_id, size, color, sku_suffix, stock_quantity, "
+            + "price_override FROM product_variants WHERE active ORDER BY product_id, id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile Snapshot snapshot;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${app.variants.refresh-interval:PT1M}",
+            initialDelayString = "${app.variants.refresh-interval:PT1M}")
+    public void refresh() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("[VariantIndex] Reload failed, keeping the previous index: {}", e.getMessage());
+        }
+    }
+
+    /** @return the active variants of {@code productId}, detached, in id order */
+    public List<ProductVariant> variantsOf(Long productId) {
+        Snapshot current = snapshot();
+        int[] range = current.ranges.get(productId);
+        if (range == null) {
+            return List.of();
+        }
+        List<ProductVariant> variants = new ArrayList<>(range[1] - range[0]);
+        for (int i = range[0]; i < range[1]; i++) {
+            variants.add(current.variant(i));
+        }
+        return variants;
+    }
+
+    /** Matches size and color ignoring case; a null option matches only a variant without it. */
+    public Optional<ProductVariant> find(Long productId, String size, String color) {
+        Snapshot current = snapshot();
+        int[] range = current.ranges.get(productId);
+        if (range != null) {
+            for (int i = range[0]; i < range[1]; i++) {
+                if (sameOption(current.sizes[i], size) && sameOption(current.colors[i], color)) {
+                    return Optional.of(current.variant(i));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** @return the variant if it is active and belongs to {@code productId} */
+    public Optional<ProductVariant> find(Long productId, Long variantId) {
+        Snapshot current = snapshot();
+        Integer i = current.positions.get(variantId);
+        if (i == null || !productId.equals(current.productIds[i])) {
+            return Optional.empty();
+        }
+        return Optional.of(current.variant(i));
+    }
+
+    /** Applies committed stock changes (variant id to units, negative when taken). */
+    void adjust(Map<Long, Integer> deltas) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        deltas.forEach((variantId, delta) -> {
+            Integer i = current.positions.get(variantId);
+            if (i != null) {
+                current.stock.addAndGet(i, delta);
+            }
+        });
+    }
+
+    private synchronized void rebuild() {
+        List<Object[]> rows = jdbcTemplate.query(LOAD_SQL, (rs, i) -> new Object[] {
+                rs.getLong("id"), rs.getLong("product_id"), rs.getString("size"), rs.getString("color"),
+                rs.getString("sku_suffix"), rs.getInt("stock_quantity"), rs.getBigDecimal("price_override") });
+        Snapshot previous = snapshot;
+        Snapshot next = new Snapshot(rows);
+        snapshot = next;
+        log.debug("[VariantIndex] Loaded {} active variant(s)", rows.size());
+
+        if (previous != null) {
+            for (Long productId : next.repricedSince(previous)) {
+                eventPublisher.publishEvent(new ProductPriceChangedEvent(productId));
+            }
+        }
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    rebuild();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static boolean sameOption(String option, String wanted) {
+        return option == null ? wanted == null || wanted.isBlank() : option.equalsIgnoreCase(wanted);
+    }
+
+    private static final class Snapshot {
+
+        private static final long NO_OVERRIDE = -1;
+
+        private final long[] ids;
+        private final long[] productIds;
+        private final String[] sizes;
+        private final String[] colors;
+        private final String[] skuSuffixes;
+        private final long[] pricePaise;
+        private final AtomicIntegerArray stock;
+        private final Map<Long, Integer> positions;
+        private final Map<Long, int[]> ranges;
+
+        Snapshot(List<Object[]> rows) {
+            int n = rows.size();
+            ids = new long[n];
+            productIds = new long[n];
+            sizes = new String[n];
+            colors = new String[n];
+            skuSuffixes = new String[n];
+            pricePaise = new long[n];
+            stock = new AtomicIntegerArray(n);
+            positions = new HashMap<>(n * 2);
+            ranges = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                Object[] row = rows.get(i);
+                ids[i] = (Long) row[0];
+                productIds[i] = (Long) row[1];
+                sizes[i] = (String) row[2];
+                colors[i] = (String) row[3];
+                skuSuffixes[i] = (String) row[4];
+                stock.set(i, (Integer) row[5]);
+                pricePaise[i] = row[6] == null ? NO_OVERRIDE : PricingEngine.toPaise((BigDecimal) row[6]);
+                positions.put(ids[i], i);
+                // Rows arrive sorted by product, so a product's range only grows at its end
+                int[] range = ranges.get(productIds[i]);
+                if (range == null) {
+                    ranges.put(productIds[i], new int[] { i, i + 1 });
+                } else {
+                    range[1] = i + 1;
+                }
+            }
+        }
+
+        ProductVariant variant(int i) {
+            return ProductVariant.builder()
+                    .id(ids[i])
+                    .size(sizes[i])
+                    .color(colors[i])
+                    .skuSuffix(skuSuffixes[i])
+                    .stockQuantity(stock.get(i))
+                    .priceOverride(pricePaise[i] == NO_OVERRIDE ? null : PricingEngine.toRupees(pricePaise[i]))
+                    .active(true)
+                    .build();
+        }
+
+        /** Products with a variant repriced or no longer sold since {@code previous}. */
+        Set<Long> repricedSince(Snapshot previous) {
+            Set<Long> repriced = new TreeSet<>();
+            for (int j = 0; j < previous.ids.length; j++) {
+                Integer i = positions.get(previous.ids[j]);
+                if (i == null || pricePaise[i] != previous.pricePaise[j]) {
+                    repriced.add(previous.productIds[j]);
+                }
+            }
+            return repriced;
+        }
+    }
+}
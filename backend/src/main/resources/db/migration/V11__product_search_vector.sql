@@ -0,0 +1,10 @@
+-- V11: Full-text search over products
+-- Weighted tsvector (name = A, description = B) kept in sync by PostgreSQL itself
+
+ALTER TABLE products
+ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(name, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(description, '')), 'B')
+) STORED;
+
+CREATE INDEX idx_products_search_vector ON products USING GIN (search_vector);
@@ -0,0 +1,6 @@
+-- V12: Typo-tolerant product name matching
+-- Trigram GIN index backing word_similarity (<%) lookups on products.name
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_products_name_trgm ON products USING GIN (name gin_trgm_ops);
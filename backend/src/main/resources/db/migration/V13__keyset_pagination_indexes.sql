@@ -0,0 +1,10 @@
+-- V13: Composite indexes for keyset (cursor) pagination
+-- Each matches the (sort key DESC, id DESC) order and row-value predicate of its listing
+
+CREATE INDEX idx_products_active_created ON products (created_at DESC, id DESC) WHERE active = TRUE;
+
+CREATE INDEX idx_orders_ordered_at ON orders (ordered_at DESC, id DESC);
+
+CREATE INDEX idx_orders_user_ordered_at ON orders (user_id, ordered_at DESC, id DESC);
+
+CREATE INDEX idx_reviews_product_created ON reviews (product_id, created_at DESC, id DESC);
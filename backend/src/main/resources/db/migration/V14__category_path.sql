@@ -0,0 +1,20 @@
+-- V14: Materialized path on categories for subtree filtering
+-- path is '/<root id>/.../<own id>/', so a subtree is a prefix match on the ancestor's path.
+-- Maintained by CategoryService on create, update and move.
+
+ALTER TABLE categories ADD COLUMN path VARCHAR(1000);
+
+WITH RECURSIVE tree AS (
+    SELECT id, '/' || id || '/' AS path
+    FROM categories
+    WHERE parent_id IS NULL
+    UNION ALL
+    SELECT c.id, t.path || c.id || '/'
+    FROM categories c
+    JOIN tree t ON c.parent_id = t.id
+)
+UPDATE categories c SET path = tree.path FROM tree WHERE c.id = tree.id;
+
+CREATE INDEX idx_categories_path ON categories (path varchar_pattern_ops);
+
+CREATE INDEX idx_products_category ON products (category_id);
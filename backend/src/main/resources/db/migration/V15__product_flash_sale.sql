@@ -0,0 +1,5 @@
+-- V15: Per-product flash-sale mode
+-- While set, available stock is held in a Redis counter and products.stock_quantity
+-- is brought up to date asynchronously by FlashSaleService.
+
+ALTER TABLE products ADD COLUMN flash_sale BOOLEAN NOT NULL DEFAULT FALSE;
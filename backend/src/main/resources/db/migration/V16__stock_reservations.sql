@@ -0,0 +1,17 @@
+-- V16: Time-bounded stock reservations for unpaid orders
+-- One row per order line while the order awaits payment. Rows are deleted when
+-- the order leaves PENDING; if expires_at passes first, StockReservationService
+-- cancels the order and returns the stock.
+
+CREATE TABLE stock_reservations (
+    id BIGSERIAL PRIMARY KEY,
+    order_id BIGINT NOT NULL REFERENCES orders(id) ON DELETE CASCADE,
+    product_id BIGINT NOT NULL REFERENCES products(id) ON DELETE CASCADE,
+    quantity INT NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX idx_stock_reservations_expires_at ON stock_reservations (expires_at);
+
+CREATE INDEX idx_stock_reservations_order ON stock_reservations (order_id);
@@ -0,0 +1,18 @@
+-- V17: Idempotency-Key dedupe store for order placement and payment initiation
+-- A row is claimed before the request runs (response_status NULL, leased until
+-- locked_until) and completed with the response that is replayed to retries.
+
+CREATE TABLE idempotency_keys (
+    id BIGSERIAL PRIMARY KEY,
+    owner VARCHAR(150) NOT NULL,
+    endpoint VARCHAR(100) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_hash VARCHAR(64) NOT NULL,
+    response_status INT,
+    response_body TEXT,
+    locked_until TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    CONSTRAINT uq_idempotency_keys UNIQUE (owner, endpoint, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_created_at ON idempotency_keys (created_at);
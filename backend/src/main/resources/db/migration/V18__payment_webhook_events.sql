@@ -0,0 +1,22 @@
+-- V18: Inbox for Razorpay webhooks
+-- The webhook endpoint only verifies and inserts; PaymentWebhookWorker applies
+-- events to payments and orders in batches. event_id dedupes redeliveries.
+
+CREATE TABLE payment_webhook_events (
+    id BIGSERIAL PRIMARY KEY,
+    event_id VARCHAR(100) NOT NULL UNIQUE,
+    event_type VARCHAR(60) NOT NULL,
+    razorpay_order_id VARCHAR(100) NOT NULL,
+    razorpay_payment_id VARCHAR(100) NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INT NOT NULL DEFAULT 0,
+    locked_until TIMESTAMP,
+    last_error TEXT,
+    received_at TIMESTAMP NOT NULL DEFAULT NOW(),
+    processed_at TIMESTAMP
+);
+
+-- Only unfinished events are ever polled
+CREATE INDEX idx_payment_webhook_events_open ON payment_webhook_events (id)
+    WHERE status IN ('PENDING', 'PROCESSING');
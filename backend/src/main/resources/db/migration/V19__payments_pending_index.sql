@@ -0,0 +1,2 @@
+-- V19: Keyset scan over pending payments for PaymentReconciliationService
+CREATE INDEX idx_payments_pending ON payments (id) WHERE status = 'PENDING';
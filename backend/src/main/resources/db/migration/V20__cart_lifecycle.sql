@@ -0,0 +1,7 @@
+-- V20: Abandoned-cart lifecycle for AbandonedCartService
+-- reminded_at records the last reminder sent for a cart; a cart changed since
+-- then (updated_at > reminded_at) can be reminded again.
+ALTER TABLE carts ADD COLUMN reminded_at TIMESTAMP;
+
+-- Keyset scan over idle carts, oldest first
+CREATE INDEX idx_carts_updated_at ON carts (updated_at, id);
@@ -0,0 +1,14 @@
+-- V21: Variant-aware cart lines, order lines and stock reservations
+-- A line without a variant is for the product itself; a product in the cart in
+-- two sizes is two lines. NULLS NOT DISTINCT keeps one variant-less line per
+-- product, as the old (cart_id, product_id) constraint did.
+
+ALTER TABLE cart_items ADD COLUMN variant_id BIGINT REFERENCES product_variants(id) ON DELETE CASCADE;
+ALTER TABLE cart_items DROP CONSTRAINT cart_items_cart_id_product_id_key;
+ALTER TABLE cart_items ADD CONSTRAINT cart_items_line_key UNIQUE NULLS NOT DISTINCT (cart_id, product_id, variant_id);
+
+-- variant_label is a snapshot, like product_name
+ALTER TABLE order_items ADD COLUMN variant_id BIGINT REFERENCES product_variants(id) ON DELETE SET NULL;
+ALTER TABLE order_items ADD COLUMN variant_label VARCHAR(120);
+
+ALTER TABLE stock_reservations ADD COLUMN variant_id BIGINT REFERENCES product_variants(id) ON DELETE CASCADE;
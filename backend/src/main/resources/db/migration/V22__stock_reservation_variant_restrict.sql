@@ -0,0 +1,9 @@
+-- V22: Keep the reservations of a variant while its order awaits payment
+-- With ON DELETE CASCADE, deleting a variant dropped the reservation rows, and
+-- an unpaid order whose lines were all of that variant was never swept.
+-- SET NULL would turn the row into a reservation of product stock, so deleting
+-- a reserved variant is refused instead; deactivate it to stop selling it.
+
+ALTER TABLE stock_reservations DROP CONSTRAINT stock_reservations_variant_id_fkey;
+ALTER TABLE stock_reservations ADD CONSTRAINT stock_reservations_variant_id_fkey
+    FOREIGN KEY (variant_id) REFERENCES product_variants(id) ON DELETE RESTRICT;
@@ -0,0 +1,14 @@
+-- Acknowledges a write-behind flush.
+-- KEYS[1] cart hash, KEYS[2] dirty set
+-- ARGV[1] user id, ARGV[2] version that was written, ARGV[3] carts.updated_at it
+-- was written with, ARGV[4] now (epoch ms)
+-- The cart stays queued, due at once, if it changed while it was being written.
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    redis.call('HSET', KEYS[1], 'db', ARGV[3])
+    if redis.call('HGET', KEYS[1], 'v') ~= ARGV[2] then
+        redis.call('ZADD', KEYS[2], ARGV[4], ARGV[1])
+        return 0
+    end
+end
+redis.call('ZREM', KEYS[2], ARGV[1])
+return 1
@@ -0,0 +1,155 @@
+-- Applies one operation to a hot cart and returns the resulting cart.
+-- KEYS[1] cart hash, KEYS[2] dirty set (user id -> when the cart is due for write-behind),
+-- KEYS[3] price version (bumped whenever a product price changes), KEYS[4] guest cart (merge only)
+-- ARGV[1] operation, ARGV[2] user id, ARGV[3] now (epoch ms), ARGV[4] idle TTL (seconds),
+-- ARGV[5..] operation arguments:
+--   read                                       nothing changes
+--   checkout                                   nothing changes, but the cart is queued for write-behind
+--   add     line, quantity, stock, price       adds to the line, up to the stock
+--   set     line, quantity, stock, price       replaces the quantity of an existing line
+--   remove  line, price
+--   clear                                      drops every line and the coupon
+--   coupon  coupon id and JSON, or nothing to remove it
+--   batch   kind (add, set or remove), line, quantity, stock, price per change; the
+--           changes are checked in order as add and set are, and made only if all pass
+--   merge   line, quantity, stock, price per line of the guest cart KEYS[4], which is
+--           deleted; each line is added up to the stock. A guest cart that is already
+--           gone (merged by a concurrent login) changes nothing.
+--   price   subtotal, cart version and price version it was computed at; stored only if
+--           neither has moved on since
+-- A line is a product id, or 'product id:variant id' for a variant; stock and price are
+-- the variant's when there is one. Prices are unit prices in paise. The hash keeps the
+-- subtotal in 'sub' and adjusts it by each change; it is dropped when the price version
+-- moves on and nothing is adjusted until a 'price' operation stores a fresh one.
+-- Returns nil when the cart is not in Redis, {'STOCK'} or {'MISSING'} (followed by
+-- the line for batch) when the operation is refused (nothing is changed),
+-- otherwise {'OK', field, value, ...}.
+local cart = KEYS[1]
+if redis.call('EXISTS', cart) == 0 then
+    return false
+end
+local prices = redis.call('GET', KEYS[3]) or '0'
+if redis.call('HGET', cart, 'pv') ~= prices then
+    redis.call('HDEL', cart, 'sub')
+    redis.call('HSET', cart, 'pv', prices)
+end
+
+local function reprice(delta)
+    if delta ~= 0 and redis.call('HEXISTS', cart, 'sub') == 1 then
+        redis.call('HINCRBY', cart, 'sub', delta)
+    end
+end
+
+local op = ARGV[1]
+if op == 'add' or op == 'set' then
+    local line = 'q:' .. ARGV[5]
+    local current = redis.call('HGET', cart, line)
+    if op == 'set' and not current then
+        return {'MISSING'}
+    end
+    local quantity = tonumber(ARGV[6])
+    if op == 'add' then
+        quantity = quantity + tonumber(current or '0')
+    end
+    if quantity > tonumber(ARGV[7]) then
+        return {'STOCK'}
+    end
+    redis.call('HSET', cart, line, quantity)
+    if not current then
+        redis.call('HSET', cart, 'o:' .. ARGV[5], redis.call('HINCRBY', cart, 'seq', 1))
+    end
+    reprice((quantity - tonumber(current or '0')) * tonumber(ARGV[8]))
+elseif op == 'remove' then
+    local current = redis.call('HGET', cart, 'q:' .. ARGV[5])
+    if current then
+        redis.call('HDEL', cart, 'q:' .. ARGV[5], 'o:' .. ARGV[5])
+        reprice(-tonumber(current) * tonumber(ARGV[6]))
+    end
+elseif op == 'clear' then
+    for _, field in ipairs(redis.call('HKEYS', cart)) do
+        local kind = string.sub(field, 1, 2)
+        if kind == 'q:' or kind == 'o:' then
+            redis.call('HDEL', cart, field)
+        end
+    end
+    redis.call('HDEL', cart, 'cid', 'coupon')
+    redis.call('HSET', cart, 'sub', 0)
+elseif op == 'coupon' then
+    if ARGV[5] then
+        redis.call('HSET', cart, 'cid', ARGV[5], 'coupon', ARGV[6])
+    else
+        redis.call('HDEL', cart, 'cid', 'coupon')
+    end
+elseif op == 'batch' then
+    local pending, before, price, touched = {}, {}, {}, {}
+    for i = 5, #ARGV, 5 do
+        local kind, product = ARGV[i], ARGV[i + 1]
+        if pending[product] == nil then
+            before[product] = tonumber(redis.call('HGET', cart, 'q:' .. product) or '0')
+            pending[product] = before[product]
+            table.insert(touched, product)
+        end
+        price[product] = tonumber(ARGV[i + 4])
+        if kind == 'remove' then
+            pending[product] = 0
+        elseif kind == 'set' and pending[product] == 0 then
+            return {'MISSING', product}
+        else
+            local quantity = tonumber(ARGV[i + 2])
+            if kind == 'add' then
+                quantity = quantity + pending[product]
+            end
+            if quantity > tonumber(ARGV[i + 3]) then
+                return {'STOCK', product}
+            end
+            pending[product] = quantity
+        end
+    end
+    local delta = 0
+    for _, product in ipairs(touched) do
+        if pending[product] == 0 then
+            redis.call('HDEL', cart, 'q:' .. product, 'o:' .. product)
+        else
+            if redis.call('HEXISTS', cart, 'o:' .. product) == 0 then
+                redis.call('HSET', cart, 'o:' .. product, redis.call('HINCRBY', cart, 'seq', 1))
+            end
+            redis.call('HSET', cart, 'q:' .. product, pending[product])
+        end
+        delta = delta + (pending[product] - before[product]) * price[product]
+    end
+    reprice(delta)
+elseif op == 'merge' then
+    if redis.call('DEL', KEYS[4]) == 0 then
+        op = 'read'
+    else
+        local delta = 0
+        for i = 5, #ARGV, 4 do
+            local line = 'q:' .. ARGV[i]
+            local current = tonumber(redis.call('HGET', cart, line) or '0')
+            local quantity = math.min(current + tonumber(ARGV[i + 1]), tonumber(ARGV[i + 2]))
+            if quantity > current then
+                redis.call('HSET', cart, line, quantity)
+                if current == 0 then
+                    redis.call('HSET', cart, 'o:' .. ARGV[i], redis.call('HINCRBY', cart, 'seq', 1))
+                end
+                delta = delta + (quantity - current) * tonumber(ARGV[i + 3])
+            end
+        end
+        reprice(delta)
+    end
+elseif op == 'price' then
+    if redis.call('HGET', cart, 'v') == ARGV[6] and prices == ARGV[7] then
+        redis.call('HSET', cart, 'sub', ARGV[5])
+    end
+end
+if op ~= 'read' and op ~= 'price' then
+    if op ~= 'checkout' then
+        redis.call('HINCRBY', cart, 'v', 1)
+        redis.call('HSET', cart, 't', ARGV[3])
+    end
+    redis.call('ZADD', KEYS[2], 'NX', ARGV[3], ARGV[2])
+end
+redis.call('EXPIRE', cart, ARGV[4])
+local result = redis.call('HGETALL', cart)
+table.insert(result, 1, 'OK')
+return result
@@ -0,0 +1,10 @@
+-- Claims carts that are due for write-behind by pushing their score out to the
+-- end of the lease, so flushers on other nodes skip them until this one
+-- acknowledges them or its lease runs out.
+-- KEYS[1] dirty set
+-- ARGV[1] now (epoch ms), ARGV[2] lease expiry (epoch ms), ARGV[3] batch size
+local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[3])
+for _, user in ipairs(due) do
+    redis.call('ZADD', KEYS[1], 'XX', ARGV[2], user)
+end
+return due
@@ -0,0 +1,5 @@
+-- Drops a hot cart so the next request reloads it from Postgres.
+-- KEYS[1] cart hash, KEYS[2] dirty set; ARGV[1] user id
+redis.call('DEL', KEYS[1])
+redis.call('ZREM', KEYS[2], ARGV[1])
+return 1
@@ -0,0 +1,8 @@
+-- Loads a cart read from Postgres, unless another request loaded it first.
+-- KEYS[1] cart hash
+-- ARGV[1] idle TTL (seconds), ARGV[2..] field, value pairs
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+    redis.call('EXPIRE', KEYS[1], ARGV[1])
+end
+return 1
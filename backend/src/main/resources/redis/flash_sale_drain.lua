@@ -0,0 +1,15 @@
+-- Takes pending deltas for reconciliation into Postgres.
+-- KEYS[1] pending hash
+-- ARGV[1] product id to drain, or none to drain every product
+-- Returns a flat {productId, units, ...} list; the drained fields are removed.
+if ARGV[1] then
+    local units = redis.call('HGET', KEYS[1], ARGV[1])
+    redis.call('HDEL', KEYS[1], ARGV[1])
+    if units then
+        return {ARGV[1], units}
+    end
+    return {}
+end
+local entries = redis.call('HGETALL', KEYS[1])
+redis.call('DEL', KEYS[1])
+return entries
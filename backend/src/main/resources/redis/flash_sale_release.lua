@@ -0,0 +1,16 @@
+-- Returns reserved units to their counters (cancellation or checkout rollback).
+-- Same KEYS/ARGV layout as flash_sale_reserve.lua.
+-- Returns 1 for each line released in Redis and 0 where the counter no longer
+-- exists; those lines must be released in Postgres instead.
+local n = #KEYS - 1
+local released = {}
+for i = 1, n do
+    if redis.call('EXISTS', KEYS[i + 1]) == 1 then
+        redis.call('INCRBY', KEYS[i + 1], ARGV[i])
+        redis.call('HINCRBY', KEYS[1], ARGV[n + i], -tonumber(ARGV[i]))
+        released[i] = 1
+    else
+        released[i] = 0
+    end
+end
+return released
@@ -0,0 +1,29 @@
+-- Reserves every line of a checkout, or none of them.
+-- KEYS[1]      pending hash (product id -> units sold but not yet applied in Postgres)
+-- KEYS[2..n+1] stock counters
+-- ARGV[1..n]   quantities, ARGV[n+1..2n] product ids
+-- Returns an empty table on success. Otherwise nothing is changed and the result
+-- holds the stock available for each line, or -1 where the counter is missing.
+local n = #KEYS - 1
+local available = {}
+local ok = true
+for i = 1, n do
+    local stock = redis.call('GET', KEYS[i + 1])
+    if stock then
+        available[i] = tonumber(stock)
+        if available[i] < tonumber(ARGV[i]) then
+            ok = false
+        end
+    else
+        available[i] = -1
+        ok = false
+    end
+end
+if not ok then
+    return available
+end
+for i = 1, n do
+    redis.call('DECRBY', KEYS[i + 1], ARGV[i])
+    redis.call('HINCRBY', KEYS[1], ARGV[n + i], ARGV[i])
+end
+return {}
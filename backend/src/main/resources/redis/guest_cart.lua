@@ -0,0 +1,56 @@
+-- Applies one operation to a guest cart and returns the resulting cart. Guest
+-- carts live only in Redis; the first add creates one.
+-- KEYS[1] guest cart hash
+-- ARGV[1] operation, ARGV[2] now (epoch ms), ARGV[3] idle TTL (seconds), ARGV[4] most lines a
+-- cart may hold, ARGV[5..] operation arguments:
+--   read                           nothing changes
+--   add     line, quantity, stock  adds to the line, up to the stock; a new line only if
+--                                  the cart has room for it
+--   set     line, quantity, stock  replaces the quantity of an existing line
+--   remove  line
+--   clear                          drops the cart
+-- A line is a product id, or 'product id:variant id' for a variant.
+-- Returns {'STOCK'}, {'MISSING'} or {'FULL'} when the operation is refused
+-- (nothing is changed), otherwise {'OK', field, value, ...}.
+local cart = KEYS[1]
+local op = ARGV[1]
+if op == 'add' or op == 'set' then
+    local line = 'q:' .. ARGV[5]
+    local current = redis.call('HGET', cart, line)
+    if op == 'set' and not current then
+        return {'MISSING'}
+    end
+    local quantity = tonumber(ARGV[6])
+    if op == 'add' then
+        quantity = quantity + tonumber(current or '0')
+    end
+    if quantity > tonumber(ARGV[7]) then
+        return {'STOCK'}
+    end
+    if not current then
+        local lines = 0
+        for _, field in ipairs(redis.call('HKEYS', cart)) do
+            if string.sub(field, 1, 2) == 'q:' then
+                lines = lines + 1
+            end
+        end
+        if lines >= tonumber(ARGV[4]) then
+            return {'FULL'}
+        end
+    end
+    redis.call('HSET', cart, line, quantity)
+    if not current then
+        redis.call('HSET', cart, 'o:' .. ARGV[5], redis.call('HINCRBY', cart, 'seq', 1))
+    end
+elseif op == 'remove' then
+    redis.call('HDEL', cart, 'q:' .. ARGV[5], 'o:' .. ARGV[5])
+elseif op == 'clear' then
+    redis.call('DEL', cart)
+end
+if op ~= 'read' and redis.call('EXISTS', cart) == 1 then
+    redis.call('HSET', cart, 't', ARGV[2])
+end
+redis.call('EXPIRE', cart, ARGV[3])
+local result = redis.call('HGETALL', cart)
+table.insert(result, 1, 'OK')
+return result
@@ -0,0 +1,137 @@
+package com.shopease;
+
+import com.shopease.entity.Product;
+import com.shopease.entity.User;
+import com.shopease.repository.ProductRepository;
+import com.shopease.repository.UserRepository;
+import com.shopease.service.AbandonedCartService;
+import com.shopease.service.EmailService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Sweeps carts of various ages with a page size small enough that the
+ * reminder pass has to follow the keyset across pages.
+ */
+@SpringBootTest(properties = {
+        "app.cart.abandoned.page-size=2",
+        "app.cart.abandoned.interval=PT1H",
+        "app.cart.abandoned.reminders-per-second=1000"
+})
+@Testcontainers
+class AbandonedCartTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @TestConfiguration
+    static class RecordingMailConfig {
+        @Bean
+        @Primary
+        RecordingEmailService recordingEmailService() {
+            return new RecordingEmailService();
+        }
+    }
+
+    static class RecordingEmailService extends EmailService {
+        final List<CartReminder> sent = new CopyOnWriteArrayList<>();
+
+        RecordingEmailService() {
+            super(null);
+        }
+
+        @Override
+        public void sendCartReminderEmails(List<CartReminder> reminders) {
+            sent.addAll(reminders);
+        }
+    }
+
+    @Autowired
+    AbandonedCartService abandonedCartService;
+
+    @Autowired
+    RecordingEmailService mail;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void remindsIdleCartsOnceAndEmptiesExpiredOnes() {
+        Product product = product();
+        List<Long> idle = List.of(cart("2 days", product), cart("3 days", product), cart("4 days", product));
+        Long recent = cart("1 hour", product);
+        Long expired = cart("40 days", product);
+        Long empty = cart("5 days", null);
+
+        abandonedCartService.sweep();
+
+        assertEquals(Set.of("idle-2days", "idle-3days", "idle-4days"),
+                mail.sent.stream().map(reminder -> reminder.email().substring(0, reminder.email().indexOf("-", 5)))
+                        .collect(Collectors.toSet()));
+        assertEquals(0, lines(expired));
+        assertEquals(1, lines(recent));
+        idle.forEach(cartId -> assertEquals(1, lines(cartId)));
+        assertEquals(0, lines(empty));
+
+        // Reminded already and unchanged since
+        abandonedCartService.sweep();
+        assertEquals(3, mail.sent.size());
+    }
+
+    private int lines(Long cartId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_items WHERE cart_id = ?", Integer.class,
+                cartId);
+    }
+
+    private Long cart(String idleFor, Product product) {
+        User user = new User();
+        user.setName("Abandoned cart test");
+        user.setEmail("idle-" + idleFor.replace(" ", "") + "-" + UUID.randomUUID().toString().substring(0, 8)
+                + "@example.com");
+        user.setPassword("not-used");
+        userRepository.save(user);
+
+        Long cartId = jdbcTemplate.queryForObject("INSERT INTO carts (user_id, updated_at) "
+                + "VALUES (?, NOW() - ?::interval) RETURNING id", Long.class, user.getId(), idleFor);
+        if (product != null) {
+            jdbcTemplate.update("INSERT INTO cart_items (cart_id, product_id, quantity) VALUES (?, ?, 1)",
+                    cartId, product.getId());
+        }
+        return cartId;
+    }
+
+    private Product product() {
+        Product product = new Product();
+        product.setSku("IDLE-" + UUID.randomUUID().toString().substring(0, 8));
+        product.setName("Abandoned cart test product");
+        product.setPrice(new BigDecimal("100.00"));
+        product.setStockQuantity(10);
+        product.setActive(true);
+        return productRepository.save(product);
+    }
+}
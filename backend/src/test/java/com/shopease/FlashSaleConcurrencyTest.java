@@ -0,0 +1,167 @@
+package com.shopease;
+
+import com.shopease.entity.Product;
+import com.shopease.exception.BadRequestException;
+import com.shopease.exception.InsufficientStockException;
+import com.shopease.repository.ProductRepository;
+import com.shopease.service.FlashSaleService;
+import com.shopease.service.InventoryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Flash-sale reservations go through the Redis counter: concurrent buyers
+ * never oversell it, and reconciliation brings Postgres to the same value.
+ */
+@SpringBootTest
+@Testcontainers
+class FlashSaleConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int CHECKOUTS = 300;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Container
+    @ServiceConnection(name = "redis")
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    @Autowired
+    FlashSaleService flashSaleService;
+
+    @Autowired
+    InventoryService inventoryService;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    StringRedisTemplate redisTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void concurrentFlashSaleReservationsNeverOversell() throws Exception {
+        int initialStock = 100;
+        Product product = productRepository.save(product(initialStock));
+        flashSaleService.enable(product.getId());
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            int units = 1 + i % 3;
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    transactionTemplate.executeWithoutResult(
+                            status -> inventoryService.reserve(Map.of(product.getId(), units)));
+                    return units;
+                } catch (InsufficientStockException e) {
+                    return 0;
+                }
+            }));
+        }
+        start.countDown();
+
+        int sold = 0;
+        for (Future<Integer> result : results) {
+            sold += result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        int counter = Integer.parseInt(redisTemplate.opsForValue().get("shopease:{flash}:stock:" + product.getId()));
+        assertTrue(counter >= 0, "counter went negative");
+        assertEquals(initialStock - sold, counter);
+
+        flashSaleService.reconcile();
+        assertEquals(counter, productRepository.findById(product.getId()).orElseThrow().getStockQuantity());
+
+        flashSaleService.disable(product.getId());
+        Product ended = productRepository.findById(product.getId()).orElseThrow();
+        assertFalse(ended.isFlashSale());
+        assertEquals(counter, ended.getStockQuantity());
+    }
+
+    @Test
+    void rolledBackCheckoutReturnsUnitsToCounter() {
+        Product product = productRepository.save(product(5));
+        flashSaleService.enable(product.getId());
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            inventoryService.reserve(Map.of(product.getId(), 3));
+            throw new IllegalStateException("payment failed");
+        }));
+
+        assertEquals("5", redisTemplate.opsForValue().get("shopease:{flash}:stock:" + product.getId()));
+        flashSaleService.disable(product.getId());
+        assertEquals(5, productRepository.findById(product.getId()).orElseThrow().getStockQuantity());
+    }
+
+    @Test
+    void checkoutRolledBackAfterTheSaleEndedReturnsUnitsToStock() {
+        Product product = productRepository.save(product(5));
+        flashSaleService.enable(product.getId());
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            inventoryService.reserve(Map.of(product.getId(), 3));
+            // Ended by an admin, on another connection, before this checkout rolls back
+            CompletableFuture.runAsync(() -> flashSaleService.disable(product.getId())).join();
+            assertEquals(2, productRepository.findById(product.getId()).orElseThrow().getStockQuantity());
+            throw new IllegalStateException("payment failed");
+        }));
+
+        Product ended = productRepository.findById(product.getId()).orElseThrow();
+        assertFalse(ended.isFlashSale());
+        assertEquals(5, ended.getStockQuantity());
+    }
+
+    @Test
+    void enablingARunningSaleIsRefusedAndKeepsTheCounter() {
+        Product product = productRepository.save(product(10));
+        flashSaleService.enable(product.getId());
+        transactionTemplate.executeWithoutResult(status -> inventoryService.reserve(Map.of(product.getId(), 4)));
+
+        assertThrows(BadRequestException.class, () -> flashSaleService.enable(product.getId()));
+
+        assertEquals("6", redisTemplate.opsForValue().get("shopease:{flash}:stock:" + product.getId()));
+    }
+
+    private Product product(int stock) {
+        Product product = new Product();
+        product.setSku("FLASH-" + UUID.randomUUID().toString().substring(0, 8));
+        product.setName("Flash sale product");
+        product.setPrice(new BigDecimal("100.00"));
+        product.setStockQuantity(stock);
+        product.setActive(true);
+        return product;
+    }
+}
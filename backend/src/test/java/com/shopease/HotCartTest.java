@@ -0,0 +1,369 @@
+package com.shopease;
+
+import com.shopease.dto.request.CartUpdateRequest;
+import com.shopease.dto.request.LoginRequest;
+import com.shopease.dto.request.RegisterRequest;
+import com.shopease.dto.response.CartSummary;
+import com.shopease.entity.Cart;
+import com.shopease.entity.CartItem;
+import com.shopease.entity.Order;
+import com.shopease.entity.OrderItem;
+import com.shopease.entity.Product;
+import com.shopease.entity.User;
+import com.shopease.event.ProductPriceChangedEvent;
+import com.shopease.exception.BadRequestException;
+import com.shopease.repository.ProductRepository;
+import com.shopease.repository.UserRepository;
+import com.shopease.service.AuthService;
+import com.shopease.service.CartService;
+import com.shopease.service.HotCartStore;
+import com.shopease.service.PaymentService;
+import com.shopease.service.ProductService;
+import com.shopease.service.VariantIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Carts live in Redis: mutations are not written to Postgres until the
+ * write-behind run, which writes each cart once, and a Redis copy that
+ * Postgres has moved past is dropped rather than written. Guest carts are
+ * merged into the user's cart on login.
+ */
+@SpringBootTest(properties = { "app.cart.flush-interval=PT1H", "app.cart.guest-max-lines=3" })
+@Testcontainers
+class HotCartTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Container
+    @ServiceConnection(name = "redis")
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    @Autowired
+    CartService cartService;
+
+    @Autowired
+    HotCartStore hotCartStore;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    AuthService authService;
+
+    @Autowired
+    PasswordEncoder passwordEncoder;
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    VariantIndex variantIndex;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void mutationsAreCoalescedIntoOneWrite() {
+        User user = userWithCart();
+        Product first = productRepository.save(product(10));
+        Product second = productRepository.save(product(10));
+
+        for (int i = 0; i < 5; i++) {
+            cartService.addItemToCart(user.getId(), first.getId(), null, 1);
+        }
+        cartService.addItemToCart(user.getId(), second.getId(), null, 2);
+        cartService.updateItemQuantity(user.getId(), first.getId(), null, 3);
+        cartService.removeItemFromCart(user.getId(), second.getId(), null);
+        CartSummary summary = cartService.addItemToCart(user.getId(), second.getId(), null, 1);
+
+        assertEquals(2, summary.getLineCount());
+        assertEquals(4, summary.getTotalQuantity());
+        assertEquals(Map.of(first.getId(), 3, second.getId(), 1), quantities(cartService.getCart(user.getId())));
+        assertEquals(Map.of(), storedLines(user));
+
+        double flushedBefore = flushed();
+        hotCartStore.flushDirty();
+
+        assertEquals(Map.of(first.getId(), 3, second.getId(), 1), storedLines(user));
+        assertEquals(1.0, flushed() - flushedBefore);
+    }
+
+    @Test
+    void staleRedisCopyIsDroppedInsteadOfWritten() {
+        User user = userWithCart();
+        Product first = productRepository.save(product(10));
+        Product second = productRepository.save(product(10));
+        cartService.addItemToCart(user.getId(), first.getId(), null, 1);
+
+        // Edited in Postgres behind Redis's back, as while Redis was unreachable
+        jdbcTemplate.update("INSERT INTO cart_items (cart_id, product_id, quantity) "
+                + "SELECT id, ?, 4 FROM carts WHERE user_id = ?", second.getId(), user.getId());
+        jdbcTemplate.update("UPDATE carts SET updated_at = NOW() WHERE user_id = ?", user.getId());
+
+        hotCartStore.flushDirty();
+
+        assertEquals(Map.of(second.getId(), 4), storedLines(user));
+        assertEquals(Map.of(second.getId(), 4), quantities(cartService.getCart(user.getId())));
+    }
+
+    @Test
+    void checkoutTakesTheRedisCartAndEmptiesIt() {
+        User user = userWithCart();
+        Product product = productRepository.save(product(10));
+        cartService.addItemToCart(user.getId(), product.getId(), null, 2);
+        Long addressId = jdbcTemplate.queryForObject("INSERT INTO addresses "
+                + "(user_id, full_name, phone, line1, city, state, pincode) "
+                + "VALUES (?, 'Hot Cart', '9999999999', '1 Test Road', 'Pune', 'MH', '411001') RETURNING id",
+                Long.class, user.getId());
+
+        Order order = paymentService.placeOrderFromCart(user, addressId, null);
+
+        assertEquals(2, order.getItems().get(0).getQuantity());
+        assertEquals(8, productRepository.findById(product.getId()).orElseThrow().getStockQuantity());
+        assertTrue(cartService.getCart(user.getId()).getItems().isEmpty());
+        hotCartStore.flushDirty();
+        assertEquals(Map.of(), storedLines(user));
+    }
+
+    @Test
+    void bulkUpdateAppliesAllOperationsOrNone() {
+        User user = userWithCart();
+        Product kept = productRepository.save(product(10));
+        Product removed = productRepository.save(product(10));
+        Product scarce = productRepository.save(product(2));
+        cartService.addItemToCart(user.getId(), kept.getId(), null, 1);
+        cartService.addItemToCart(user.getId(), removed.getId(), null, 1);
+
+        assertThrows(BadRequestException.class, () -> cartService.updateCart(user.getId(), List.of(
+                new CartUpdateRequest.Operation(CartUpdateRequest.Type.UPDATE, kept.getId(), null, 5),
+                new CartUpdateRequest.Operation(CartUpdateRequest.Type.ADD, scarce.getId(), null, 3))));
+        assertEquals(Map.of(kept.getId(), 1, removed.getId(), 1), quantities(cartService.getCart(user.getId())));
+
+        Cart cart = cartService.updateCart(user.getId(), List.of(
+                new CartUpdateRequest.Operation(CartUpdateRequest.Type.UPDATE, kept.getId(), null, 5),
+                new CartUpdateRequest.Operation(CartUpdateRequest.Type.REMOVE, removed.getId(), null, null),
+                new CartUpdateRequest.Operation(CartUpdateRequest.Type.ADD, scarce.getId(), null, 1),
+                new CartUpdateRequest.Operation(CartUpdateRequest.Type.ADD, scarce.getId(), null, 1)));
+
+        assertEquals(Map.of(kept.getId(), 5, scarce.getId(), 2), quantities(cart));
+    }
+
+    @Test
+    void subtotalFollowsLineChangesAndPriceUpdates() {
+        User user = userWithCart();
+        Product onSale = product(10);
+        onSale.setSalePrice(new BigDecimal("80.00"));
+        onSale = productRepository.save(onSale);
+        Product regular = productRepository.save(product(10));
+        cartService.addItemToCart(user.getId(), onSale.getId(), null, 2);
+        assertEquals(new BigDecimal("160.00"), cartService.getCart(user.getId()).getTotals().subtotal());
+
+        CartSummary summary = cartService.addItemToCart(user.getId(), regular.getId(), null, 1);
+        assertEquals(new BigDecimal("260.00"), summary.getSubtotal());
+        cartService.updateItemQuantity(user.getId(), onSale.getId(), null, 3);
+        assertEquals(new BigDecimal("340.00"), cartService.getCart(user.getId()).getTotals().subtotal());
+
+        onSale.setSalePrice(null);
+        productService.updateProduct(onSale.getId(), onSale, null);
+
+        assertEquals(new BigDecimal("400.00"), cartService.getCart(user.getId()).getTotals().subtotal());
+    }
+
+    @Test
+    void stalePriceVersionIsPricedFromPostgresNotTheProductCache() {
+        User user = userWithCart();
+        Product product = productRepository.save(product(10));
+        cartService.addItemToCart(user.getId(), product.getId(), null, 2);
+        assertEquals(new BigDecimal("200.00"), cartService.getCart(user.getId()).getTotals().subtotal());
+
+        // Price committed and bumped before this node's product cache has heard of it
+        jdbcTemplate.update("UPDATE products SET price = 150.00 WHERE id = ?", product.getId());
+        cartService.onPriceChanged(new ProductPriceChangedEvent(product.getId()));
+
+        assertEquals(new BigDecimal("300.00"), cartService.getCart(user.getId()).getTotals().subtotal());
+        // What was stored under the new version is the new price too
+        assertEquals(new BigDecimal("300.00"), cartService.getCart(user.getId()).getTotals().subtotal());
+    }
+
+    @Test
+    void guestCartIsMergedOnLogin() {
+        User user = userWithCart();
+        user.setPassword(passwordEncoder.encode("guest-merge"));
+        userRepository.save(user);
+        Product inBoth = productRepository.save(product(3));
+        Product guestOnly = productRepository.save(product(10));
+        cartService.addItemToCart(user.getId(), inBoth.getId(), null, 2);
+        String token = UUID.randomUUID().toString();
+        cartService.addItemToGuestCart(token, inBoth.getId(), null, 2);
+        cartService.addItemToGuestCart(token, guestOnly.getId(), null, 1);
+
+        authService.authenticateUser(new LoginRequest(user.getEmail(), "guest-merge"), token);
+
+        // Capped at the stock of 3
+        assertEquals(Map.of(inBoth.getId(), 3, guestOnly.getId(), 1), quantities(cartService.getCart(user.getId())));
+        assertTrue(cartService.getGuestCart(token).getItems().isEmpty());
+        hotCartStore.flushDirty();
+        assertEquals(Map.of(inBoth.getId(), 3, guestOnly.getId(), 1), storedLines(user));
+    }
+
+    @Test
+    void variantOfAnotherProductIsRefused() {
+        User user = userWithCart();
+        Product product = productRepository.save(product(10));
+        Product other = productRepository.save(product(10));
+        Long otherVariantId = jdbcTemplate.queryForObject("INSERT INTO product_variants "
+                + "(product_id, size, color, stock_quantity) VALUES (?, 'M', 'Black', 5) RETURNING id",
+                Long.class, other.getId());
+        variantIndex.refresh();
+
+        BadRequestException refused = assertThrows(BadRequestException.class,
+                () -> cartService.addItemToCart(user.getId(), product.getId(), otherVariantId, 1));
+        assertTrue(refused.getMessage().contains("not a variant of product " + product.getId()));
+        assertThrows(BadRequestException.class, () -> cartService.addItemToGuestCart(UUID.randomUUID().toString(),
+                product.getId(), otherVariantId, 1));
+        assertTrue(cartService.getCart(user.getId()).getItems().isEmpty());
+    }
+
+    @Test
+    void guestCartIsMergedOnceRegistrationCommits() {
+        Product product = productRepository.save(product(10));
+        String token = UUID.randomUUID().toString();
+        cartService.addItemToGuestCart(token, product.getId(), null, 2);
+
+        // A rolled-back transaction leaves the guest cart alone
+        User other = userWithCart();
+        transactionTemplate.executeWithoutResult(status -> {
+            cartService.mergeGuestCart(other.getId(), token);
+            status.setRollbackOnly();
+        });
+        assertEquals(Map.of(product.getId(), 2), quantities(cartService.getGuestCart(token)));
+        assertTrue(cartService.getCart(other.getId()).getItems().isEmpty());
+
+        RegisterRequest request = new RegisterRequest();
+        request.setName("Hot cart test");
+        request.setEmail("register-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com");
+        request.setPassword("guest-merge");
+        Long userId = authService.registerUser(request, token).getId();
+
+        assertEquals(Map.of(product.getId(), 2), quantities(cartService.getCart(userId)));
+        assertTrue(cartService.getGuestCart(token).getItems().isEmpty());
+    }
+
+    @Test
+    void guestCartHoldsAtMostTheConfiguredLines() {
+        String token = UUID.randomUUID().toString();
+        Product first = productRepository.save(product(10));
+        cartService.addItemToGuestCart(token, first.getId(), null, 1);
+        cartService.addItemToGuestCart(token, productRepository.save(product(10)).getId(), null, 1);
+        cartService.addItemToGuestCart(token, productRepository.save(product(10)).getId(), null, 1);
+
+        Long fourth = productRepository.save(product(10)).getId();
+        assertThrows(BadRequestException.class, () -> cartService.addItemToGuestCart(token, fourth, null, 1));
+        // Lines already in the cart can still grow
+        cartService.addItemToGuestCart(token, first.getId(), null, 1);
+        assertEquals(3, cartService.getGuestCart(token).getItems().size());
+    }
+
+    @Test
+    void variantLinesTakeTheVariantsStockAndPrice() {
+        User user = userWithCart();
+        Product product = productRepository.save(product(10));
+        Long variantId = jdbcTemplate.queryForObject("INSERT INTO product_variants "
+                + "(product_id, size, color, stock_quantity, price_override) "
+                + "VALUES (?, 'M', 'Black', 3, 150.00) RETURNING id", Long.class, product.getId());
+        variantIndex.refresh();
+
+        cartService.addItemToCart(user.getId(), product.getId(), null, 1);
+        cartService.addItemToCart(user.getId(), product.getId(), variantId, 2);
+        assertThrows(BadRequestException.class,
+                () -> cartService.addItemToCart(user.getId(), product.getId(), variantId, 2));
+        assertEquals(new BigDecimal("400.00"), cartService.getCart(user.getId()).getTotals().subtotal());
+
+        Long addressId = jdbcTemplate.queryForObject("INSERT INTO addresses "
+                + "(user_id, full_name, phone, line1, city, state, pincode) "
+                + "VALUES (?, 'Hot Cart', '9999999999', '1 Test Road', 'Pune', 'MH', '411001') RETURNING id",
+                Long.class, user.getId());
+        Order order = paymentService.placeOrderFromCart(user, addressId, null);
+
+        OrderItem variantLine = order.getItems().stream()
+                .filter(item -> item.getVariantLabel() != null)
+                .findFirst().orElseThrow();
+        assertEquals("M / Black", variantLine.getVariantLabel());
+        assertEquals(new BigDecimal("150.00"), variantLine.getUnitPrice());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT stock_quantity FROM product_variants WHERE id = ?",
+                Integer.class, variantId));
+        assertEquals(9, productRepository.findById(product.getId()).orElseThrow().getStockQuantity());
+        assertEquals(1, variantIndex.find(product.getId(), variantId).orElseThrow().getStockQuantity());
+    }
+
+    private double flushed() {
+        return meterRegistry.get("cart.writebehind.flushed").counter().count();
+    }
+
+    private static Map<Long, Integer> quantities(Cart cart) {
+        return cart.getItems().stream().collect(Collectors.toMap(CartItem::getId, CartItem::getQuantity));
+    }
+
+    private Map<Long, Integer> storedLines(User user) {
+        return jdbcTemplate.queryForList("SELECT i.product_id, i.quantity FROM cart_items i "
+                + "JOIN carts c ON c.id = i.cart_id WHERE c.user_id = ?", user.getId()).stream()
+                .collect(Collectors.toMap(row -> ((Number) row.get("product_id")).longValue(),
+                        row -> ((Number) row.get("quantity")).intValue()));
+    }
+
+    private User userWithCart() {
+        User user = new User();
+        user.setName("Hot cart test");
+        user.setEmail("cart-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com");
+        user.setPassword("not-used");
+        Cart cart = new Cart();
+        cart.setUser(user);
+        user.setCart(cart);
+        return userRepository.save(user);
+    }
+
+    private Product product(int stock) {
+        Product product = new Product();
+        product.setSku("CART-" + UUID.randomUUID().toString().substring(0, 8));
+        product.setName("Cart test product");
+        product.setPrice(new BigDecimal("100.00"));
+        product.setStockQuantity(stock);
+        product.setActive(true);
+        return product;
+    }
+}
@@ -0,0 +1,194 @@
+package com.shopease;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.shopease.exception.BadRequestException;
+import com.shopease.exception.ConflictException;
+import com.shopease.service.IdempotencyService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Claims, replays and concurrent repeats of one {@code Idempotency-Key},
+ * each test under a key of its own.
+ */
+@SpringBootTest(properties = "app.idempotency.wait-timeout=2s")
+@Testcontainers
+class IdempotencyTest {
+
+    private static final String OWNER = "idempotency@example.com";
+    private static final String ENDPOINT = "orders.place";
+    private static final Map<String, Object> REQUEST = Map.of("addressId", 1);
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    IdempotencyService idempotencyService;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void firstRequestRunsAndRepeatsAreReplayed() {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+        Supplier<ResponseEntity<?>> placeOrder = () -> new ResponseEntity<>(
+                Map.of("id", 100 + runs.incrementAndGet()), HttpStatus.CREATED);
+
+        ResponseEntity<?> first = idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST, placeOrder);
+        ResponseEntity<?> repeat = idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST, placeOrder);
+
+        assertEquals(1, runs.get());
+        assertEquals(HttpStatus.CREATED, first.getStatusCode());
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(HttpStatus.CREATED, repeat.getStatusCode());
+        assertEquals("true", repeat.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(101, ((JsonNode) repeat.getBody()).get("id").asInt());
+
+        // Same key, different body
+        assertThrows(BadRequestException.class, () -> idempotencyService.execute(OWNER, ENDPOINT, key,
+                Map.of("addressId", 2), placeOrder));
+        // Keys are scoped per endpoint
+        idempotencyService.execute(OWNER, "payments.initiate", key, REQUEST, placeOrder);
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    void failedRequestReleasesItsKey() {
+        String key = UUID.randomUUID().toString();
+        assertThrows(BadRequestException.class, () -> idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST,
+                () -> {
+                    throw new BadRequestException("Cart is empty");
+                }));
+
+        ResponseEntity<?> retry = idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST,
+                () -> ResponseEntity.ok(Map.of("id", 1)));
+        assertNull(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void concurrentRepeatWaitsForTheFirstAndGetsItsResponse() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        Supplier<ResponseEntity<?>> slowOrder = () -> {
+            running.countDown();
+            sleep(300);
+            return new ResponseEntity<>(Map.of("id", runs.incrementAndGet()), HttpStatus.CREATED);
+        };
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<?>> first = pool.submit(
+                    () -> idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST, slowOrder));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            Future<ResponseEntity<?>> repeat = pool.submit(
+                    () -> idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST, slowOrder));
+
+            assertEquals(HttpStatus.CREATED, first.get(10, TimeUnit.SECONDS).getStatusCode());
+            ResponseEntity<?> replayed = repeat.get(10, TimeUnit.SECONDS);
+            assertEquals(1, runs.get());
+            assertEquals("true", replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+            assertEquals(1, ((JsonNode) replayed.getBody()).get("id").asInt());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void repeatGivesUpWhileTheLeaseIsHeld() throws Exception {
+        String key = UUID.randomUUID().toString();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResponseEntity<?>> first = pool.submit(() -> idempotencyService.execute(OWNER, ENDPOINT, key,
+                    REQUEST, blockUntil(running, finish)));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+
+            assertThrows(ConflictException.class, () -> idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST,
+                    () -> ResponseEntity.ok(Map.of("id", 2))));
+            finish.countDown();
+            assertEquals(HttpStatus.CREATED, first.get(10, TimeUnit.SECONDS).getStatusCode());
+        } finally {
+            finish.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void expiredLeaseIsTakenOver() throws Exception {
+        String key = UUID.randomUUID().toString();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // Stands in for a node that claimed the key and died
+            pool.submit(() -> idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST,
+                    blockUntil(running, finish)));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            jdbcTemplate.update("UPDATE idempotency_keys SET locked_until = NOW() - INTERVAL '1 second' "
+                    + "WHERE owner = ? AND idempotency_key = ?", OWNER, key);
+
+            ResponseEntity<?> takenOver = idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST,
+                    () -> new ResponseEntity<>(Map.of("id", 2), HttpStatus.CREATED));
+            assertNull(takenOver.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+
+            ResponseEntity<?> repeat = idempotencyService.execute(OWNER, ENDPOINT, key, REQUEST,
+                    () -> ResponseEntity.ok(Map.of("id", 3)));
+            assertEquals(2, ((JsonNode) repeat.getBody()).get("id").asInt());
+            assertEquals(List.of(201), jdbcTemplate.queryForList("SELECT response_status FROM idempotency_keys "
+                    + "WHERE owner = ? AND idempotency_key = ?", Integer.class, OWNER, key));
+        } finally {
+            finish.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    private static Supplier<ResponseEntity<?>> blockUntil(CountDownLatch running, CountDownLatch finish) {
+        return () -> {
+            running.countDown();
+            try {
+                finish.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ResponseEntity<>(Map.of("id", 1), HttpStatus.CREATED);
+        };
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.shopease;
+
+import com.shopease.entity.Product;
+import com.shopease.exception.InsufficientStockException;
+import com.shopease.repository.ProductRepository;
+import com.shopease.service.InventoryService;
+import com.shopease.service.VariantIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many checkouts racing for the same stock must never oversell: every unit
+ * sold is accounted for and stock never goes below zero, for products and
+ * for variants alike.
+ */
+@SpringBootTest
+@Testcontainers
+class InventoryConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int CHECKOUTS = 200;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    InventoryService inventoryService;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    VariantIndex variantIndex;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        int initialStock = 50;
+        Product first = productRepository.save(product(initialStock));
+        Product second = productRepository.save(product(initialStock));
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            int units = 1 + i % 3;
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    // Both products in every cart, so rows are contended in both lock orders
+                    transactionTemplate.executeWithoutResult(status -> inventoryService.reserve(
+                            Map.of(first.getId(), units, second.getId(), units)));
+                    return units;
+                } catch (InsufficientStockException e) {
+                    return 0;
+                }
+            }));
+        }
+        start.countDown();
+
+        int sold = 0;
+        for (Future<Integer> result : results) {
+            sold += result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        int firstLeft = productRepository.findById(first.getId()).orElseThrow().getStockQuantity();
+        int secondLeft = productRepository.findById(second.getId()).orElseThrow().getStockQuantity();
+        assertTrue(firstLeft >= 0, "stock went negative");
+        assertEquals(initialStock - sold, firstLeft);
+        assertEquals(firstLeft, secondLeft);
+        assertTrue(sold > 0);
+    }
+
+    @Test
+    void concurrentVariantReservationsNeverOversell() throws Exception {
+        int initialStock = 50;
+        Product product = productRepository.save(product(initialStock));
+        Long small = variant(product, "S", initialStock);
+        Long large = variant(product, "L", initialStock);
+        variantIndex.refresh();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < CHECKOUTS; i++) {
+            int units = 1 + i % 3;
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> inventoryService.reserveVariants(
+                            Map.of(small, units, large, units)));
+                    return units;
+                } catch (InsufficientStockException e) {
+                    return 0;
+                }
+            }));
+        }
+        start.countDown();
+
+        int sold = 0;
+        for (Future<Integer> result : results) {
+            sold += result.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        int smallLeft = variantStock(small);
+        assertTrue(smallLeft >= 0, "variant stock went negative");
+        assertEquals(initialStock - sold, smallLeft);
+        assertEquals(smallLeft, variantStock(large));
+        assertTrue(sold > 0);
+        // Variant lines leave the product's own stock alone
+        assertEquals(initialStock, productRepository.findById(product.getId()).orElseThrow().getStockQuantity());
+        // The index is adjusted by every committed reservation
+        assertEquals(smallLeft, variantIndex.find(product.getId(), small).orElseThrow().getStockQuantity());
+    }
+
+    private Long variant(Product product, String size, int stock) {
+        return jdbcTemplate.queryForObject("INSERT INTO product_variants (product_id, size, stock_quantity) "
+                + "VALUES (?, ?, ?) RETURNING id", Long.class, product.getId(), size, stock);
+    }
+
+    private int variantStock(Long variantId) {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM product_variants WHERE id = ?",
+                Integer.class, variantId);
+    }
+
+    private Product product(int stock) {
+        Product product = new Product();
+        product.setSku("STRESS-" + UUID.randomUUID().toString().substring(0, 8));
+        product.setName("Stress test product");
+        product.setPrice(new BigDecimal("100.00"));
+        product.setStockQuantity(stock);
+        product.setActive(true);
+        return product;
+    }
+}
@@ -0,0 +1,159 @@
+package com.shopease;
+
+import com.shopease.entity.Order;
+import com.shopease.entity.Payment;
+import com.shopease.entity.User;
+import com.shopease.exception.PaymentGatewayException;
+import com.shopease.repository.OrderRepository;
+import com.shopease.repository.UserRepository;
+import com.shopease.service.PaymentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.annotation.DirtiesContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Payment initiation against {@link StubPaymentGateway}: a slow gateway is
+ * cut off at the timeout, excess concurrent calls are turned away by the
+ * bulkhead, and repeated failures open the circuit until the gateway
+ * recovers.
+ */
+@SpringBootTest(properties = {
+        "app.razorpay.resilience.timeout=200ms",
+        "app.razorpay.resilience.max-concurrent-calls=2",
+        "app.razorpay.resilience.window-size=4",
+        "app.razorpay.resilience.minimum-calls=4",
+        "app.razorpay.resilience.failure-rate-threshold=50",
+        "app.razorpay.resilience.open-duration=500ms",
+        "app.razorpay.resilience.half-open-calls=1"
+})
+@Testcontainers
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class PaymentGatewayResilienceTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @TestConfiguration
+    static class StubGatewayConfig {
+        @Bean
+        @Primary
+        StubPaymentGateway stubPaymentGateway() {
+            return new StubPaymentGateway();
+        }
+    }
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    StubPaymentGateway gateway;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void slowGatewayIsCutOffAtTheTimeout() {
+        Long orderId = pendingOrder();
+        gateway.respondAfter(Duration.ofSeconds(3));
+
+        long started = System.nanoTime();
+        assertThrows(PaymentGatewayException.class, () -> paymentService.createRazorpayOrder(orderId));
+        assertTrue(Duration.ofNanos(System.nanoTime() - started).toMillis() < 1500, "caller was not released");
+
+        gateway.respondAfter(Duration.ZERO);
+        Payment payment = paymentService.createRazorpayOrder(orderId);
+        assertTrue(payment.getRazorpayOrderId().startsWith("order_stub"));
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondTheLimit() throws Exception {
+        Long orderId = pendingOrder();
+        gateway.respondAfter(Duration.ofSeconds(1));
+
+        ExecutorService pool = Executors.newFixedThreadPool(6);
+        List<Future<?>> calls = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            calls.add(pool.submit(() -> paymentService.createRazorpayOrder(orderId)));
+        }
+        for (Future<?> call : calls) {
+            try {
+                call.get(10, TimeUnit.SECONDS);
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertTrue(e.getCause() instanceof PaymentGatewayException);
+            }
+        }
+        pool.shutdown();
+
+        // Two calls reach the gateway and time out; the rest never leave the node
+        assertEquals(2, gateway.calls());
+        assertEquals(4.0, meterRegistry.get("payments.gateway.rejected").tag("reason", "bulkhead_full")
+                .counter().count());
+    }
+
+    @Test
+    void circuitOpensOnFailuresAndClosesAfterRecovery() throws Exception {
+        Long orderId = pendingOrder();
+        gateway.failRequests(true);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(PaymentGatewayException.class, () -> paymentService.createRazorpayOrder(orderId));
+        }
+        assertEquals(1.0, circuitState("open"));
+
+        // Fails fast without calling the gateway
+        assertThrows(PaymentGatewayException.class, () -> paymentService.createRazorpayOrder(orderId));
+        assertEquals(4, gateway.calls());
+
+        gateway.failRequests(false);
+        Thread.sleep(600);
+        Payment payment = paymentService.createRazorpayOrder(orderId);
+        assertTrue(payment.getRazorpayOrderId().startsWith("order_stub"));
+        assertEquals(1.0, circuitState("closed"));
+    }
+
+    private double circuitState(String state) {
+        return meterRegistry.get("payments.gateway.circuit.state").tag("state", state).gauge().value();
+    }
+
+    private Long pendingOrder() {
+        User user = new User();
+        user.setName("Gateway test");
+        user.setEmail("gateway-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com");
+        user.setPassword("not-used");
+        userRepository.save(user);
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setTotalAmount(new BigDecimal("500.00"));
+        return orderRepository.save(order).getId();
+    }
+}
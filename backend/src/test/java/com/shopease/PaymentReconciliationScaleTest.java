@@ -0,0 +1,89 @@
+package com.shopease;
+
+import com.shopease.service.PaymentReconciliationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Walks a backlog of 100k pending payments against {@link StubPaymentGateway}
+ * with 2ms of latency per lookup: every payment is looked up exactly once
+ * and the run settles 10k captures and fails 30k abandoned payments.
+ */
+@SpringBootTest(properties = {
+        "app.payments.reconcile.page-size=500",
+        "app.payments.reconcile.parallelism=16",
+        "app.payments.reconcile.interval=PT1H"
+})
+@Testcontainers
+class PaymentReconciliationScaleTest {
+
+    private static final int PAYMENTS = 100_000;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @TestConfiguration
+    static class StubGatewayConfig {
+        @Bean
+        @Primary
+        StubPaymentGateway stubPaymentGateway() {
+            return new StubPaymentGateway();
+        }
+    }
+
+    @Autowired
+    PaymentReconciliationService reconciliationService;
+
+    @Autowired
+    StubPaymentGateway gateway;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void reconcilesALargeBacklogWithOneLookupPerPayment() {
+        Long userId = jdbcTemplate.queryForObject("INSERT INTO users (name, email, password) "
+                + "VALUES ('Reconciliation scale', 'reconcile-scale@example.com', 'not-used') RETURNING id", Long.class);
+        // n % 10: 0-2 cancelled by the sweeper, 3-9 still open, of which 9 was paid
+        jdbcTemplate.update("INSERT INTO orders (user_id, status, total_amount, notes, ordered_at) "
+                + "SELECT ?, CASE WHEN n % 10 < 3 THEN 'CANCELLED' ELSE 'PENDING' END, 500, 'scale-' || n, "
+                + "NOW() - INTERVAL '1 hour' FROM generate_series(1, ?) AS n", userId, PAYMENTS);
+        jdbcTemplate.update("INSERT INTO payments (order_id, razorpay_order_id, amount, status) "
+                + "SELECT id, 'order_' || notes, 500, 'PENDING' FROM orders WHERE notes LIKE 'scale-%'");
+        for (int n = 9; n <= PAYMENTS; n += 10) {
+            gateway.capture("order_scale-" + n, "pay_scale" + n);
+        }
+        gateway.respondAfter(Duration.ofMillis(2));
+        int callsBefore = gateway.calls();
+
+        reconciliationService.reconcile();
+
+        assertEquals(PAYMENTS, gateway.calls() - callsBefore);
+        assertEquals(Map.of("SUCCESS", 10_000L, "FAILED", 30_000L, "PENDING", 60_000L), count(
+                "SELECT p.status, COUNT(*) FROM payments p JOIN orders o ON o.id = p.order_id "
+                        + "WHERE o.notes LIKE 'scale-%' GROUP BY p.status"));
+        assertEquals(Map.of("CONFIRMED", 10_000L, "CANCELLED", 30_000L, "PENDING", 60_000L), count(
+                "SELECT status, COUNT(*) FROM orders WHERE notes LIKE 'scale-%' GROUP BY status"));
+    }
+
+    private Map<String, Long> count(String sql) {
+        return jdbcTemplate.queryForList(sql).stream().collect(Collectors.toMap(
+                row -> (String) row.get("status"), row -> ((Number) row.get("count")).longValue()));
+    }
+}
@@ -0,0 +1,137 @@
+package com.shopease;
+
+import com.shopease.entity.Order;
+import com.shopease.entity.Payment;
+import com.shopease.entity.User;
+import com.shopease.repository.OrderRepository;
+import com.shopease.repository.PaymentRepository;
+import com.shopease.repository.UserRepository;
+import com.shopease.service.PaymentReconciliationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Reconciles payments left PENDING against {@link StubPaymentGateway}, with a
+ * page size small enough that the run has to follow the keyset across pages.
+ */
+@SpringBootTest(properties = {
+        "app.payments.reconcile.page-size=2",
+        "app.payments.reconcile.interval=PT1H"
+})
+@Testcontainers
+class PaymentReconciliationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @TestConfiguration
+    static class StubGatewayConfig {
+        @Bean
+        @Primary
+        StubPaymentGateway stubPaymentGateway() {
+            return new StubPaymentGateway();
+        }
+    }
+
+    @Autowired
+    PaymentReconciliationService reconciliationService;
+
+    @Autowired
+    StubPaymentGateway gateway;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    PaymentRepository paymentRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Test
+    void settlesPendingPaymentsFromGatewayState() {
+        Payment paid = pendingPayment(Order.OrderStatus.PENDING, true);
+        Payment unpaid = pendingPayment(Order.OrderStatus.PENDING, true);
+        Payment expired = pendingPayment(Order.OrderStatus.CANCELLED, true);
+        Payment neverInitiated = pendingPayment(Order.OrderStatus.CANCELLED, false);
+        Payment tooRecent = pendingPayment(Order.OrderStatus.PENDING, true);
+        Payment paidTooLate = pendingPayment(Order.OrderStatus.CANCELLED, true);
+        gateway.capture(paid.getRazorpayOrderId(), "pay_R1");
+        gateway.capture(tooRecent.getRazorpayOrderId(), "pay_R2");
+        gateway.capture(paidTooLate.getRazorpayOrderId(), "pay_R3");
+        jdbcTemplate.update("UPDATE orders SET ordered_at = NOW() - INTERVAL '1 hour' WHERE id <> ?",
+                tooRecent.getOrder().getId());
+
+        reconciliationService.reconcile();
+
+        Payment settled = paymentRepository.findById(paid.getId()).orElseThrow();
+        assertEquals(Payment.PaymentStatus.SUCCESS, settled.getStatus());
+        assertEquals("pay_R1", settled.getRazorpayPaymentId());
+        assertEquals(Order.OrderStatus.CONFIRMED, orderStatus(paid));
+
+        // The customer may still pay for an order that has not expired
+        assertEquals(Payment.PaymentStatus.PENDING, status(unpaid));
+        assertEquals(Order.OrderStatus.PENDING, orderStatus(unpaid));
+
+        assertEquals(Payment.PaymentStatus.FAILED, status(expired));
+        assertEquals(Payment.PaymentStatus.FAILED, status(neverInitiated));
+        assertEquals(Payment.PaymentStatus.PENDING, status(tooRecent));
+
+        // Captured after the order was cancelled: never SUCCESS, parked for a refund like the webhook does
+        Payment refund = paymentRepository.findById(paidTooLate.getId()).orElseThrow();
+        assertEquals(Payment.PaymentStatus.FAILED, refund.getStatus());
+        assertEquals("pay_R3", refund.getRazorpayPaymentId());
+        assertEquals(Order.OrderStatus.CANCELLED, orderStatus(paidTooLate));
+        reconciliationService.reconcile();
+        assertEquals(List.of("FAILED"), jdbcTemplate.queryForList(
+                "SELECT status FROM payment_webhook_events WHERE razorpay_payment_id = 'pay_R3' "
+                        + "AND last_error LIKE '%needs a refund'", String.class));
+    }
+
+    private Payment.PaymentStatus status(Payment payment) {
+        return paymentRepository.findById(payment.getId()).orElseThrow().getStatus();
+    }
+
+    private Order.OrderStatus orderStatus(Payment payment) {
+        return orderRepository.findById(payment.getOrder().getId()).orElseThrow().getStatus();
+    }
+
+    private Payment pendingPayment(Order.OrderStatus orderStatus, boolean initiated) {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setName("Reconciliation test");
+        user.setEmail("reconcile-" + suffix + "@example.com");
+        user.setPassword("not-used");
+        userRepository.save(user);
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setStatus(orderStatus);
+        order.setTotalAmount(new BigDecimal("500.00"));
+        Payment payment = new Payment();
+        payment.setOrder(order);
+        payment.setAmount(order.getTotalAmount());
+        payment.setRazorpayOrderId(initiated ? "order_" + suffix : null);
+        order.setPayment(payment);
+        return orderRepository.save(order).getPayment();
+    }
+}
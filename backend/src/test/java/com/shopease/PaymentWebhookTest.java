@@ -0,0 +1,207 @@
+package com.shopease;
+
+import com.shopease.entity.Order;
+import com.shopease.entity.Payment;
+import com.shopease.entity.User;
+import com.shopease.repository.OrderRepository;
+import com.shopease.repository.PaymentRepository;
+import com.shopease.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the webhook endpoint with {@link RazorpayWebhookSimulator}: signed
+ * deliveries are acknowledged at once, applied by the worker pool, and
+ * redeliveries or follow-up events for the same payment change nothing.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "app.razorpay.webhook-secret=" + PaymentWebhookTest.SECRET)
+@Testcontainers
+class PaymentWebhookTest {
+
+    static final String SECRET = "whsec_test";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    OrderRepository orderRepository;
+
+    @Autowired
+    PaymentRepository paymentRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    RazorpayWebhookSimulator razorpay;
+
+    @BeforeEach
+    void setUp() {
+        razorpay = new RazorpayWebhookSimulator(restTemplate, SECRET);
+    }
+
+    @Test
+    void capturedPaymentConfirmsOrderOnceDespiteRedeliveries() throws Exception {
+        Payment payment = pendingPayment();
+        String razorpayOrderId = payment.getRazorpayOrderId();
+        RazorpayWebhookSimulator.Delivery captured = razorpay.paymentCaptured(razorpayOrderId, "pay_A1");
+        RazorpayWebhookSimulator.Delivery paid = razorpay.orderPaid(razorpayOrderId, "pay_A1");
+
+        // Razorpay retries deliveries it considers timed out, possibly in parallel
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<HttpStatusCode>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            RazorpayWebhookSimulator.Delivery delivery = i % 2 == 0 ? captured : paid;
+            responses.add(pool.submit(() -> razorpay.deliver(delivery)));
+        }
+        for (Future<HttpStatusCode> response : responses) {
+            assertEquals(HttpStatus.OK, response.get(30, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        awaitTrue(() -> openEvents(razorpayOrderId) == 0);
+
+        Payment applied = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertEquals(Payment.PaymentStatus.SUCCESS, applied.getStatus());
+        assertEquals("pay_A1", applied.getRazorpayPaymentId());
+        assertEquals(Order.OrderStatus.CONFIRMED,
+                orderRepository.findById(payment.getOrder().getId()).orElseThrow().getStatus());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payment_webhook_events "
+                + "WHERE razorpay_order_id = ? AND status = 'PROCESSED'", Integer.class, razorpayOrderId));
+    }
+
+    @Test
+    void failedAttemptThenCaptureEndsPaid() {
+        Payment payment = pendingPayment();
+        String razorpayOrderId = payment.getRazorpayOrderId();
+
+        assertEquals(HttpStatus.OK, razorpay.deliver(razorpay.paymentFailed(razorpayOrderId, "pay_B1")));
+        awaitTrue(() -> openEvents(razorpayOrderId) == 0);
+        assertEquals(Payment.PaymentStatus.FAILED,
+                paymentRepository.findById(payment.getId()).orElseThrow().getStatus());
+
+        assertEquals(HttpStatus.OK, razorpay.deliver(razorpay.paymentCaptured(razorpayOrderId, "pay_B2")));
+        awaitTrue(() -> openEvents(razorpayOrderId) == 0);
+        Payment applied = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertEquals(Payment.PaymentStatus.SUCCESS, applied.getStatus());
+        assertEquals("pay_B2", applied.getRazorpayPaymentId());
+    }
+
+    @Test
+    void captureOfCancelledOrderSettlesThePaymentAsFailed() {
+        Payment payment = pendingPayment();
+        String razorpayOrderId = payment.getRazorpayOrderId();
+        jdbcTemplate.update("UPDATE orders SET status = 'CANCELLED' WHERE id = ?", payment.getOrder().getId());
+
+        assertEquals(HttpStatus.OK, razorpay.deliver(razorpay.paymentCaptured(razorpayOrderId, "pay_D1")));
+        awaitTrue(() -> openEvents(razorpayOrderId) == 0);
+
+        // No longer PENDING, so reconciliation will not flag the capture a second time
+        Payment applied = paymentRepository.findById(payment.getId()).orElseThrow();
+        assertEquals(Payment.PaymentStatus.FAILED, applied.getStatus());
+        assertEquals("pay_D1", applied.getRazorpayPaymentId());
+        assertEquals("FAILED", jdbcTemplate.queryForObject("SELECT status FROM payment_webhook_events "
+                + "WHERE razorpay_order_id = ?", String.class, razorpayOrderId));
+    }
+
+    @Test
+    void failedEventIsRetriedAfterABackoff() throws InterruptedException {
+        String razorpayOrderId = "order_unknown" + UUID.randomUUID().toString().substring(0, 8);
+
+        assertEquals(HttpStatus.OK, razorpay.deliver(razorpay.paymentCaptured(razorpayOrderId, "pay_E1")));
+        awaitTrue(() -> attempts(razorpayOrderId) == 1 && openEvents(razorpayOrderId) == 1
+                && "PENDING".equals(jdbcTemplate.queryForObject("SELECT status FROM payment_webhook_events "
+                        + "WHERE razorpay_order_id = ?", String.class, razorpayOrderId)));
+
+        // Several poll intervals pass without another attempt
+        Thread.sleep(2_500);
+        assertEquals(1, attempts(razorpayOrderId));
+        assertTrue(jdbcTemplate.queryForObject("SELECT locked_until > NOW() FROM payment_webhook_events "
+                + "WHERE razorpay_order_id = ?", Boolean.class, razorpayOrderId));
+    }
+
+    @Test
+    void forgedDeliveryIsRejectedAndNotStored() {
+        Payment payment = pendingPayment();
+        RazorpayWebhookSimulator.Delivery delivery = razorpay.paymentCaptured(payment.getRazorpayOrderId(), "pay_C1");
+
+        assertEquals(HttpStatus.UNAUTHORIZED, razorpay.deliverWithSignature(delivery, "00ff"));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payment_webhook_events "
+                + "WHERE event_id = ?", Integer.class, delivery.eventId()));
+        assertEquals(Payment.PaymentStatus.PENDING,
+                paymentRepository.findById(payment.getId()).orElseThrow().getStatus());
+    }
+
+    private Payment pendingPayment() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        User user = new User();
+        user.setName("Webhook test");
+        user.setEmail("webhook-" + suffix + "@example.com");
+        user.setPassword("not-used");
+        userRepository.save(user);
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setTotalAmount(new BigDecimal("500.00"));
+        Payment payment = new Payment();
+        payment.setOrder(order);
+        payment.setAmount(order.getTotalAmount());
+        payment.setRazorpayOrderId("order_" + suffix);
+        order.setPayment(payment);
+        return orderRepository.save(order).getPayment();
+    }
+
+    private int openEvents(String razorpayOrderId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payment_webhook_events "
+                + "WHERE razorpay_order_id = ? AND status IN ('PENDING', 'PROCESSING')", Integer.class,
+                razorpayOrderId);
+    }
+
+    private int attempts(String razorpayOrderId) {
+        return jdbcTemplate.queryForObject("SELECT attempts FROM payment_webhook_events WHERE razorpay_order_id = ?",
+                Integer.class, razorpayOrderId);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "webhook events were not applied in time");
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
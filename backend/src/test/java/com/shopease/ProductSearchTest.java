@@ -0,0 +1,224 @@
+package com.shopease;
+
+import com.shopease.dto.request.ProductFilterRequest;
+import com.shopease.dto.response.FacetedProductsResponse;
+import com.shopease.dto.response.ProductSummaryDto;
+import com.shopease.dto.response.SuggestionDto;
+import com.shopease.entity.Category;
+import com.shopease.entity.Product;
+import com.shopease.search.ProductFacetIndex;
+import com.shopease.search.ProductSearchResult;
+import com.shopease.search.ProductSuggester;
+import com.shopease.service.CategoryService;
+import com.shopease.service.ProductService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Product search and faceted filtering over the in-memory indexes, each test
+ * in a category of its own so the seed catalogue does not interfere.
+ */
+@SpringBootTest
+@Testcontainers
+class ProductSearchTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    CategoryService categoryService;
+
+    @Autowired
+    ProductFacetIndex productFacetIndex;
+
+    @Autowired
+    ProductSuggester productSuggester;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    Long categoryId;
+
+    @BeforeEach
+    void category() {
+        String slug = "search-" + UUID.randomUUID().toString().substring(0, 8);
+        categoryId = categoryService.createCategory(Category.builder().name(slug).slug(slug).build()).getId();
+    }
+
+    @Test
+    void updatesKeepTheFacetIndexFromGrowing() {
+        Product product = productService.createProduct(product("Facet churn", "100.00"), categoryId);
+        int ordinals = productFacetIndex.ordinalCount();
+
+        for (int i = 0; i < 50; i++) {
+            Product details = product("Facet churn " + i, "100.00");
+            details.setSku(product.getSku());
+            productService.updateProduct(product.getId(), details, null);
+        }
+        assertEquals(ordinals, productFacetIndex.ordinalCount());
+        assertEquals(List.of(product.getId()), ids(productService.getFacetedProducts(inCategory(),
+                PageRequest.of(0, 10))));
+
+        // A removed product's ordinal goes to the next product added
+        productService.deleteProduct(product.getId());
+        Product successor = productService.createProduct(product("Facet successor", "100.00"), categoryId);
+        assertEquals(ordinals, productFacetIndex.ordinalCount());
+        assertEquals(List.of(successor.getId()), ids(productService.getFacetedProducts(inCategory(),
+                PageRequest.of(0, 10))));
+    }
+
+    @Test
+    void sizeAndColorFiltersIgnoreCase() {
+        Product tee = productService.createProduct(product("Case tee", "500.00"), categoryId);
+        jdbcTemplate.update("INSERT INTO product_variants (product_id, size, color, stock_quantity) "
+                + "VALUES (?, 'M', 'Black', 5)", tee.getId());
+        productFacetIndex.rebuild();
+
+        ProductFilterRequest filter = inCategory();
+        filter.setSize("m");
+        filter.setColor("BLACK");
+        FacetedProductsResponse response = productService.getFacetedProducts(filter, PageRequest.of(0, 10));
+
+        assertEquals(List.of(tee.getId()), ids(response));
+        assertEquals(Map.of("M", 1L), response.getFacets().getSizes());
+        assertEquals(Map.of("Black", 1L), response.getFacets().getColors());
+    }
+
+    @Test
+    void stopWordOnlyQueryMatchesNothing() {
+        productService.createProduct(product("The lamp of the house", "100.00"), categoryId);
+
+        assertEquals(List.of(), productService.getProducts(categoryId, null, null, "the of and",
+                PageRequest.of(0, 10)).getPage().getContent());
+        ProductFilterRequest filter = inCategory();
+        filter.setSearch("the");
+        assertEquals(List.of(), ids(productService.getFacetedProducts(filter, PageRequest.of(0, 10))));
+    }
+
+    @Test
+    void priceFilterUsesTheSalePrice() {
+        Product discounted = product("Desk lamp", "1000.00");
+        discounted.setSalePrice(new BigDecimal("400.00"));
+        discounted = productService.createProduct(discounted, categoryId);
+        Product regular = productService.createProduct(product("Floor lamp", "600.00"), categoryId);
+        BigDecimal max = new BigDecimal("500.00");
+        BigDecimal min = new BigDecimal("500.00");
+
+        // Index search, listing filter and facet filter
+        assertEquals(List.of(discounted.getId()), summaryIds(productService.getProducts(categoryId, null, max,
+                "lamp", PageRequest.of(0, 10))));
+        assertEquals(List.of(regular.getId()), summaryIds(productService.getProducts(categoryId, min, null,
+                "lamp", PageRequest.of(0, 10))));
+        assertEquals(List.of(discounted.getId()), summaryIds(productService.getProducts(categoryId, null, max,
+                null, PageRequest.of(0, 10))));
+        ProductFilterRequest filter = inCategory();
+        filter.setMaxPrice(max);
+        FacetedProductsResponse response = productService.getFacetedProducts(filter, PageRequest.of(0, 10));
+        assertEquals(List.of(discounted.getId()), ids(response));
+    }
+
+    @Test
+    void suggestionIsCorrectedWithinTheFilters() {
+        String slug = "search-" + UUID.randomUUID().toString().substring(0, 8);
+        Long otherCategoryId = categoryService.createCategory(Category.builder().name(slug).slug(slug).build())
+                .getId();
+        // Both names are equally close to the query; only one is in the filtered category
+        productService.createProduct(product("Zorblax gadget", "100.00"), otherCategoryId);
+        Product widget = productService.createProduct(product("Zorblix widget", "100.00"), categoryId);
+
+        ProductSearchResult result = productService.getProducts(categoryId, null, null, "zorblex",
+                PageRequest.of(0, 10));
+
+        assertEquals(List.of(widget.getId()), summaryIds(result));
+        assertEquals("zorblix", result.getSuggestion());
+    }
+
+    @Test
+    void categorySuggestionsFollowCategoryChanges() {
+        Category created = categoryService.createCategory(Category.builder().name("Zygomorph lamps")
+                .slug("zygomorph-lamps").build());
+        assertEquals(List.of(created.getId()), categorySuggestions("zygomorph"));
+
+        categoryService.updateCategory(created.getId(), Category.builder().name("Quillwort lamps")
+                .slug("quillwort-lamps").build());
+        assertEquals(List.of(), categorySuggestions("zygomorph"));
+        assertEquals(List.of(created.getId()), categorySuggestions("quillwort"));
+
+        categoryService.deleteCategory(created.getId());
+        assertEquals(List.of(), categorySuggestions("quillwort"));
+    }
+
+    @Test
+    void suggestionRankingFollowsRefreshedSales() {
+        Product alpha = productService.createProduct(product("Quuxwid alpha", "100.00"), categoryId);
+        Product beta = productService.createProduct(product("Quuxwid beta", "100.00"), categoryId);
+
+        sell(alpha, 5);
+        productSuggester.refreshPopularity();
+        assertEquals(alpha.getId(), productSuggester.suggest("quuxwid", 10).get(0).getId());
+
+        sell(beta, 10);
+        productSuggester.refreshPopularity();
+        assertEquals(beta.getId(), productSuggester.suggest("quuxwid", 10).get(0).getId());
+    }
+
+    private List<Long> categorySuggestions(String query) {
+        return productSuggester.suggest(query, 10).stream()
+                .filter(suggestion -> "CATEGORY".equals(suggestion.getType()))
+                .map(SuggestionDto::getId)
+                .toList();
+    }
+
+    private void sell(Product product, int quantity) {
+        Long userId = jdbcTemplate.queryForObject("INSERT INTO users (name, email, password) VALUES "
+                + "('Suggest test', ?, 'not-used') RETURNING id", Long.class,
+                "suggest-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com");
+        Long orderId = jdbcTemplate.queryForObject("INSERT INTO orders (user_id, status, total_amount) "
+                + "VALUES (?, 'CONFIRMED', 100.00) RETURNING id", Long.class, userId);
+        jdbcTemplate.update("INSERT INTO order_items (order_id, product_id, product_name, quantity, unit_price) "
+                + "VALUES (?, ?, ?, ?, 100.00)", orderId, product.getId(), product.getName(), quantity);
+    }
+
+    private ProductFilterRequest inCategory() {
+        ProductFilterRequest filter = new ProductFilterRequest();
+        filter.setCategoryId(categoryId);
+        return filter;
+    }
+
+    private static List<Long> summaryIds(ProductSearchResult result) {
+        return result.getPage().getContent().stream().map(ProductSummaryDto::getId).toList();
+    }
+
+    private static List<Long> ids(FacetedProductsResponse response) {
+        return response.getProducts().getContent().stream().map(ProductSummaryDto::getId).toList();
+    }
+
+    private static Product product(String name, String price) {
+        Product product = new Product();
+        product.setSku("SEARCH-" + UUID.randomUUID().toString().substring(0, 8));
+        product.setName(name);
+        product.setPrice(new BigDecimal(price));
+        product.setStockQuantity(10);
+        product.setActive(true);
+        return product;
+    }
+}
@@ -0,0 +1,85 @@
+package com.shopease;
+
+import com.shopease.service.PaymentWebhookService;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Stands in for Razorpay's webhook sender: builds event payloads in
+ * Razorpay's shape, signs them with the webhook secret and POSTs them to the
+ * running application.
+ */
+class RazorpayWebhookSimulator {
+
+    private static final String WEBHOOK_PATH = "/api/v1/payments/webhook";
+
+    private final TestRestTemplate restTemplate;
+    private final String secret;
+
+    RazorpayWebhookSimulator(TestRestTemplate restTemplate, String secret) {
+        this.restTemplate = restTemplate;
+        this.secret = secret;
+    }
+
+    Delivery paymentCaptured(String razorpayOrderId, String razorpayPaymentId) {
+        return event("payment.captured", razorpayOrderId, razorpayPaymentId, "captured");
+    }
+
+    Delivery orderPaid(String razorpayOrderId, String razorpayPaymentId) {
+        return event("order.paid", razorpayOrderId, razorpayPaymentId, "captured");
+    }
+
+    Delivery paymentFailed(String razorpayOrderId, String razorpayPaymentId) {
+        return event("payment.failed", razorpayOrderId, razorpayPaymentId, "failed");
+    }
+
+    private Delivery event(String type, String razorpayOrderId, String razorpayPaymentId, String status) {
+        String body = """
+                {"entity":"event","account_id":"acc_test","event":"%s","contains":["payment"],
+                 "payload":{"payment":{"entity":{"id":"%s","entity":"payment","amount":50000,
+                 "currency":"INR","status":"%s","order_id":"%s","method":"upi"}}},
+                 "created_at":%d}""".formatted(type, razorpayPaymentId, status, razorpayOrderId,
+                System.currentTimeMillis() / 1000);
+        return new Delivery("evt_" + UUID.randomUUID().toString().replace("-", ""), body);
+    }
+
+    /** Posts a delivery with a valid signature. Razorpay redelivers with the same event id. */
+    HttpStatusCode deliver(Delivery delivery) {
+        return post(delivery, sign(delivery.body()));
+    }
+
+    HttpStatusCode deliverWithSignature(Delivery delivery, String signature) {
+        return post(delivery, signature);
+    }
+
+    private HttpStatusCode post(Delivery delivery, String signature) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(PaymentWebhookService.EVENT_ID_HEADER, delivery.eventId());
+        headers.set(PaymentWebhookService.SIGNATURE_HEADER, signature);
+        return restTemplate.postForEntity(WEBHOOK_PATH, new HttpEntity<>(delivery.body(), headers), String.class)
+                .getStatusCode();
+    }
+
+    private String sign(String body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(body.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    record Delivery(String eventId, String body) {
+    }
+}
@@ -0,0 +1,172 @@
+package com.shopease;
+
+import com.shopease.entity.Product;
+import com.shopease.repository.ProductRepository;
+import com.shopease.service.PaymentService;
+import com.shopease.service.StockReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The expiry sweeper against orders placed straight into the tables: stock
+ * is taken and reserved as checkout leaves it, with reservations already
+ * expired or not.
+ */
+@SpringBootTest(properties = "app.orders.sweep-interval=PT1H")
+@Testcontainers
+class StockReservationSweepTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine");
+
+    @Autowired
+    StockReservationService stockReservationService;
+
+    @Autowired
+    PaymentService paymentService;
+
+    @Autowired
+    ProductRepository productRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    Long userId;
+
+    @BeforeEach
+    void user() {
+        userId = jdbcTemplate.queryForObject("INSERT INTO users (name, email, password) VALUES "
+                + "('Sweep test', ?, 'not-used') RETURNING id", Long.class,
+                "sweep-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com");
+    }
+
+    @Test
+    void expiredReservationsAreReturnedToStockAndTheirOrderCancelled() {
+        Product product = product(8);
+        Long variantId = jdbcTemplate.queryForObject("INSERT INTO product_variants "
+                + "(product_id, size, color, stock_quantity) VALUES (?, 'M', 'Black', 1) RETURNING id",
+                Long.class, product.getId());
+        Long expired = order();
+        reserve(expired, product.getId(), null, 2, LocalDateTime.now().minusMinutes(1));
+        reserve(expired, product.getId(), variantId, 1, LocalDateTime.now().minusMinutes(1));
+        Long live = order();
+        reserve(live, product.getId(), null, 1, LocalDateTime.now().plusMinutes(10));
+
+        stockReservationService.sweepExpired();
+
+        assertEquals("CANCELLED", orderStatus(expired));
+        assertEquals(10, stock(product));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT stock_quantity FROM product_variants WHERE id = ?",
+                Integer.class, variantId));
+        assertEquals(0, reservations(expired));
+
+        assertEquals("PENDING", orderStatus(live));
+        assertEquals(1, reservations(live));
+    }
+
+    @Test
+    void sweepRacingPaymentVerificationLeavesThePaidOrderAlone() throws Exception {
+        Product product = product(8);
+        Long orderId = order();
+        reserve(orderId, product.getId(), null, 2, LocalDateTime.now().minusSeconds(1));
+        jdbcTemplate.update("INSERT INTO payments (order_id, razorpay_order_id, amount) VALUES (?, ?, 200.00)",
+                orderId, "order_sweep" + orderId);
+
+        CountDownLatch verified = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> payment = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                status -> {
+                    // Holds the order's row lock until the sweep is waiting on it
+                    paymentService.verifyPayment(orderId, "order_sweep" + orderId, "pay_sweep", null);
+                    verified.countDown();
+                    await(commit);
+                }));
+        assertTrue(verified.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Void> sweep = CompletableFuture.runAsync(stockReservationService::sweepExpired);
+        awaitLockWaiter();
+        commit.countDown();
+        payment.get(10, TimeUnit.SECONDS);
+        sweep.get(10, TimeUnit.SECONDS);
+
+        assertEquals("CONFIRMED", orderStatus(orderId));
+        assertEquals("SUCCESS", jdbcTemplate.queryForObject("SELECT status FROM payments WHERE order_id = ?",
+                String.class, orderId));
+        assertEquals(8, stock(product));
+        assertEquals(0, reservations(orderId));
+    }
+
+    private void awaitLockWaiter() throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock'",
+                Integer.class) == 0) {
+            assertTrue(System.nanoTime() < deadline, "Sweep never waited for the order's row lock");
+            Thread.sleep(20);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Long order() {
+        return jdbcTemplate.queryForObject("INSERT INTO orders (user_id, status, total_amount) "
+                + "VALUES (?, 'PENDING', 200.00) RETURNING id", Long.class, userId);
+    }
+
+    private void reserve(Long orderId, Long productId, Long variantId, int quantity, LocalDateTime expiresAt) {
+        jdbcTemplate.update("INSERT INTO stock_reservations (order_id, product_id, variant_id, quantity, expires_at) "
+                + "VALUES (?, ?, ?, ?, ?)", orderId, productId, variantId, quantity, Timestamp.valueOf(expiresAt));
+    }
+
+    private String orderStatus(Long orderId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM orders WHERE id = ?", String.class, orderId);
+    }
+
+    private int reservations(Long orderId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_reservations WHERE order_id = ?",
+                Integer.class, orderId);
+    }
+
+    private int stock(Product product) {
+        return productRepository.findById(product.getId()).orElseThrow().getStockQuantity();
+    }
+
+    /** A product with {@code stock} left after the test's orders took theirs. */
+    private Product product(int stock) {
+        Product product = new Product();
+        product.setSku("SWEEP-" + UUID.randomUUID().toString().substring(0, 8));
+        product.setName("Sweep test product");
+        product.setPrice(new BigDecimal("100.00"));
+        product.setStockQuantity(stock);
+        product.setActive(true);
+        return productRepository.save(product);
+    }
+}
@@ -0,0 +1,68 @@
+package com.shopease;
+
+import com.shopease.gateway.PaymentGateway;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the payment gateway with injectable latency and
+ * errors.
+ */
+class StubPaymentGateway implements PaymentGateway {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Map<String, String> capturedPayments = new ConcurrentHashMap<>();
+    private volatile Duration latency = Duration.ZERO;
+    private volatile boolean failing;
+
+    void respondAfter(Duration latency) {
+        this.latency = latency;
+    }
+
+    void failRequests(boolean failing) {
+        this.failing = failing;
+    }
+
+    void capture(String gatewayOrderId, String paymentId) {
+        capturedPayments.put(gatewayOrderId, paymentId);
+    }
+
+    int calls() {
+        return calls.get();
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return true;
+    }
+
+    @Override
+    public String createOrder(BigDecimal amount, String currency, String receipt) {
+        return "order_stub" + respond();
+    }
+
+    @Override
+    public Optional<String> findCapturedPayment(String gatewayOrderId) {
+        respond();
+        return Optional.ofNullable(capturedPayments.get(gatewayOrderId));
+    }
+
+    private int respond() {
+        int call = calls.incrementAndGet();
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Stub gateway call interrupted");
+        }
+        if (failing) {
+            throw new IllegalStateException("Stub gateway returned 502");
+        }
+        return call;
+    }
+}
@@ -7,18 +7,25 @@ import { Separator } from '@/components/ui/separator';
 import { ShoppingBag, Trash2, Plus, Minus, ArrowRight, Loader2, Tag, X } from 'lucide-react';
 import Link from 'next/link';
 import { useRouter } from 'next/navigation';
-import { useState } from 'react';
+import { useEffect, useState } from 'react';
 import { Input } from '@/components/ui/input';
 import { toast } from 'sonner';
 
 export default function CartPage() {
-    const { cart, isLoading, updateItemQuantity, removeItem, clearCart, applyCoupon, removeCoupon } = useCartStore();
+    const { cart, isLoading, fetchCart, updateItemQuantity, removeItem, clearCart, applyCoupon, removeCoupon } = useCartStore();
     const { isAuthenticated } = useAuthStore();
     const router = useRouter();
 
     const [couponCode, setCouponCode] = useState('');
     const [isApplyingCoupon, setIsApplyingCoupon] = useState(false);
 
+    // Items added elsewhere only update the count, so load the full cart here
+    useEffect(() => {
+        if (isAuthenticated) {
+            fetchCart();
+        }
+    }, [isAuthenticated, fetchCart]);
+
     const handleApplyCoupon = async () => {
         if (!couponCode.trim()) return;
         setIsApplyingCoupon(true);
@@ -99,7 +106,7 @@ export default function CartPage() {
                                     const primaryImage = product.images?.[0]?.imageUrl || 'https://images.unsplash.com/photo-1505740420928-5e560c06d30e?w=200';
 
                                     return (
-                                        <li key={item.id} className="p-4 sm:p-6 flex flex-col md:grid md:grid-cols-12 gap-4 items-center">
+                                        <li key={item.lineId} className="p-4 sm:p-6 flex flex-col md:grid md:grid-cols-12 gap-4 items-center">
                                             <div className="col-span-6 flex items-center gap-4 w-full">
                                                 <div className="h-20 w-20 shrink-0 overflow-hidden rounded-md border bg-muted">
                                                     <img src={primaryImage} alt={product.name} className="h-full w-full object-cover" />
@@ -108,7 +115,12 @@ export default function CartPage() {
                                                     <Link href={`/products/${product.id}`} className="font-medium hover:text-primary line-clamp-2">
                                                         {product.name}
                                                     </Link>
-                                                    <p className="text-sm text-muted-foreground mt-1">₹{(product.salePrice || product.price).toLocaleString()}</p>
+                                                    {item.variant && (
+                                                        <p className="text-xs text-muted-foreground mt-1">
+                                                            {[item.variant.size, item.variant.color].filter(Boolean).join(' / ')}
+                                                        </p>
+                                                    )}
+                                                    <p className="text-sm text-muted-foreground mt-1">₹{(item.variant?.priceOverride ?? (product.salePrice || product.price)).toLocaleString()}</p>
                                                 </div>
                                             </div>
 
@@ -116,7 +128,7 @@ export default function CartPage() {
                                                 <div className="flex items-center border rounded-md">
                                                     <button
                                                         className="p-2 hover:bg-muted"
-                                                        onClick={() => updateItemQuantity(item.id, item.quantity - 1)}
+                                                        onClick={() => updateItemQuantity(item, item.quantity - 1)}
                                                         disabled={item.quantity <= 1 || isLoading}
                                                     >
                                                         <Minus className="h-4 w-4" />
@@ -124,8 +136,8 @@ export default function CartPage() {
                                                     <span className="w-10 text-center text-sm font-medium">{item.quantity}</span>
                                                     <button
                                                         className="p-2 hover:bg-muted"
-                                                        onClick={() => updateItemQuantity(item.id, item.quantity + 1)}
-                                                        disabled={item.quantity >= product.stockQuantity || isLoading}
+                                                        onClick={() => updateItemQuantity(item, item.quantity + 1)}
+                                                        disabled={item.quantity >= (item.variant?.stockQuantity ?? product.stockQuantity) || isLoading}
                                                     >
                                                         <Plus className="h-4 w-4" />
                                                     </button>
@@ -142,7 +154,7 @@ export default function CartPage() {
                                                     variant="ghost"
                                                     size="icon"
                                                     className="text-destructive hover:bg-destructive/10 hover:text-destructive"
-                                                    onClick={() => removeItem(item.id)}
+                                                    onClick={() => removeItem(item)}
                                                     disabled={isLoading}
                                                 >
                                                     <Trash2 className="h-4 w-4" />
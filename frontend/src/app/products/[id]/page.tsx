@@ -118,7 +118,9 @@ export default function ProductDetailPage({ params }: { params: Promise<{ id: st
 
     const handleAddToCart = async () => {
         try {
-            await addItem(product.id, quantity);
+            // Only a chosen size or color picks a variant; otherwise the product itself is added
+            const variantId = (selectedSize || selectedColor) ? selectedVariant?.id : undefined;
+            await addItem(product.id, quantity, variantId);
             toast.success(`${quantity} ${product.name} added to cart!`);
         } catch (error: any) {
             toast.error(error.response?.data?.message || 'Please log in to add items to cart');
@@ -19,7 +19,7 @@ import { Input } from '@/components/ui/input';
 
 export function Navbar() {
     const { user, isAuthenticated, logout } = useAuthStore();
-    const { cart, fetchCart } = useCartStore();
+    const { itemCount: cartItemsCount, fetchCart } = useCartStore();
     const [mounted, setMounted] = useState(false);
 
     useEffect(() => {
@@ -29,8 +29,6 @@ export function Navbar() {
         }
     }, [isAuthenticated, fetchCart]);
 
-    const cartItemsCount = cart?.items?.reduce((total, item) => total + item.quantity, 0) || 0;
-
     return (
         <header className="sticky top-0 z-50 w-full border-b bg-background/95 backdrop-blur supports-[backdrop-filter]:bg-background/60">
             <div className="container mx-auto px-4 h-16 flex items-center justify-between">
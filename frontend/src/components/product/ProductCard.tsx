@@ -1,12 +1,12 @@
 import Link from 'next/link';
 import { ShoppingCart, Star } from 'lucide-react';
-import { Product } from '@/types/product';
+import { ProductSummary } from '@/types/product';
 import { Button } from '@/components/ui/button';
 import { useCartStore } from '@/store/cartStore';
 import { toast } from 'sonner';
 
 interface ProductCardProps {
-    product: Product;
+    product: ProductSummary;
 }
 
 export function ProductCard({ product }: ProductCardProps) {
@@ -22,8 +22,7 @@ export function ProductCard({ product }: ProductCardProps) {
         }
     };
 
-    const primaryImage = product.images?.find(img => img.isPrimary)?.imageUrl ||
-        product.images?.[0]?.imageUrl ||
+    const primaryImage = product.imageUrl ||
         'https://images.unsplash.com/photo-1505740420928-5e560c06d30e?w=500&auto=format&fit=crop&q=60&ixlib=rb-4.0.3';
 
     return (
@@ -50,7 +49,7 @@ export function ProductCard({ product }: ProductCardProps) {
                     </div>
                 </div>
 
-                <p className="text-sm text-muted-foreground line-clamp-1">{product.category?.name || 'Category'}</p>
+                <p className="text-sm text-muted-foreground line-clamp-1">{product.categoryName || 'Category'}</p>
 
                 <div className="mt-auto pt-4 flex items-center justify-between z-20">
                     <div className="flex flex-col">
@@ -67,7 +66,7 @@ export function ProductCard({ product }: ProductCardProps) {
                         size="sm"
                         className="rounded-full"
                         onClick={handleAddToCart}
-                        disabled={product.stockQuantity === 0 || isLoading}
+                        disabled={!product.inStock || isLoading}
                     >
                         <ShoppingCart className="h-4 w-4" />
                         <span className="sr-only">Add to cart</span>
@@ -1,3 +1,4 @@
+import { useRef } from 'react';
 import { useQuery, useMutation, useQueryClient } from '@tanstack/react-query';
 import { api } from '@/api/client';
 import { Address, Order, PaymentInitiateResponse } from '@/types/checkout';
@@ -27,18 +28,27 @@ export const useCreateAddress = () => {
 };
 
 export const usePlaceOrder = () => {
+    // Same key until an order goes through, so a resubmitted checkout cannot place a second order
+    const idempotencyKey = useRef(crypto.randomUUID());
     return useMutation({
         mutationFn: async ({ addressId, notes }: { addressId: number; notes?: string }) => {
-            const { data } = await api.post<Order>('/orders', { addressId, notes });
+            const { data } = await api.post<Order>('/orders', { addressId, notes }, {
+                headers: { 'Idempotency-Key': idempotencyKey.current },
+            });
             return data;
         },
+        onSuccess: () => {
+            idempotencyKey.current = crypto.randomUUID();
+        },
     });
 };
 
 export const useInitiatePayment = () => {
     return useMutation({
         mutationFn: async (orderId: number) => {
-            const { data } = await api.post<PaymentInitiateResponse>('/payments/initiate', { orderId });
+            const { data } = await api.post<PaymentInitiateResponse>('/payments/initiate', { orderId }, {
+                headers: { 'Idempotency-Key': `initiate-${orderId}` },
+            });
             return data;
         },
     });
@@ -1,6 +1,6 @@
 import { useQuery, useMutation, useQueryClient } from '@tanstack/react-query';
 import { api } from '@/api/client';
-import { Product, Category, PaginatedResponse } from '@/types/product';
+import { Product, ProductSummary, Category, PaginatedResponse } from '@/types/product';
 
 // Categories
 export const useCategories = () => {
@@ -39,7 +39,7 @@ export const useProducts = (filters: ProductFilters = {}) => {
     return useQuery({
         queryKey: ['products', filters],
         queryFn: async () => {
-            const { data } = await api.get<PaginatedResponse<Product>>('/products', {
+            const { data } = await api.get<PaginatedResponse<ProductSummary>>('/products', {
                 params: filters,
             });
             return data;
@@ -1,16 +1,24 @@
 import { create } from 'zustand';
 import { api } from '@/api/client';
-import { Cart } from '@/types/cart';
+import { Cart, CartItem, CartSummary } from '@/types/cart';
+
+const countItems = (cart: Cart) => cart.items?.reduce((total, item) => total + item.quantity, 0) || 0;
+
+// A line is addressed by its product id, plus the variant id for a variant line
+const lineUrl = (item: CartItem) =>
+    `/cart/items/${item.product.id}` + (item.variant ? `?variantId=${item.variant.id}` : '');
 
 interface CartState {
     cart: Cart | null;
+    // Kept apart from cart: adding returns only a summary, so cart may lag until the next fetch
+    itemCount: number;
     isLoading: boolean;
     error: string | null;
 
     fetchCart: () => Promise<void>;
-    addItem: (productId: number, quantity?: number) => Promise<void>;
-    updateItemQuantity: (itemId: number, quantity: number) => Promise<void>;
-    removeItem: (itemId: number) => Promise<void>;
+    addItem: (productId: number, quantity?: number, variantId?: number) => Promise<void>;
+    updateItemQuantity: (item: CartItem, quantity: number) => Promise<void>;
+    removeItem: (item: CartItem) => Promise<void>;
     clearCart: () => Promise<void>;
     applyCoupon: (code: string) => Promise<void>;
     removeCoupon: () => Promise<void>;
@@ -18,6 +26,7 @@ interface CartState {
 
 export const useCartStore = create<CartState>((set, get) => ({
     cart: null,
+    itemCount: 0,
     isLoading: false,
     error: null,
 
@@ -25,39 +34,39 @@ export const useCartStore = create<CartState>((set, get) => ({
         set({ isLoading: true, error: null });
         try {
             const response = await api.get<Cart>('/cart');
-            set({ cart: response.data, isLoading: false });
+            set({ cart: response.data, itemCount: countItems(response.data), isLoading: false });
         } catch (error: any) {
             set({ error: error.response?.data?.message || 'Failed to fetch cart', isLoading: false });
         }
     },
 
-    addItem: async (productId: number, quantity: number = 1) => {
+    addItem: async (productId: number, quantity: number = 1, variantId?: number) => {
         set({ isLoading: true, error: null });
         try {
-            const response = await api.post<Cart>('/cart/items', { productId, quantity });
-            set({ cart: response.data, isLoading: false });
+            const response = await api.post<CartSummary>('/cart/items', { productId, variantId, quantity });
+            set({ itemCount: response.data.totalQuantity, isLoading: false });
         } catch (error: any) {
             set({ error: error.response?.data?.message || 'Failed to add item', isLoading: false });
             throw error;
         }
     },
 
-    updateItemQuantity: async (itemId: number, quantity: number) => {
+    updateItemQuantity: async (item: CartItem, quantity: number) => {
         set({ isLoading: true, error: null });
         try {
-            const response = await api.put<Cart>(`/cart/items/${itemId}`, { quantity });
-            set({ cart: response.data, isLoading: false });
+            const response = await api.put<Cart>(lineUrl(item), { quantity });
+            set({ cart: response.data, itemCount: countItems(response.data), isLoading: false });
         } catch (error: any) {
             set({ error: error.response?.data?.message || 'Failed to update quantity', isLoading: false });
             throw error;
         }
     },
 
-    removeItem: async (itemId: number) => {
+    removeItem: async (item: CartItem) => {
         set({ isLoading: true, error: null });
         try {
-            const response = await api.delete<Cart>(`/cart/items/${itemId}`);
-            set({ cart: response.data, isLoading: false });
+            const response = await api.delete<Cart>(lineUrl(item));
+            set({ cart: response.data, itemCount: countItems(response.data), isLoading: false });
         } catch (error: any) {
             set({ error: error.response?.data?.message || 'Failed to remove item', isLoading: false });
             throw error;
@@ -68,7 +77,7 @@ export const useCartStore = create<CartState>((set, get) => ({
         set({ isLoading: true, error: null });
         try {
             const response = await api.delete<Cart>('/cart');
-            set({ cart: response.data, isLoading: false });
+            set({ cart: response.data, itemCount: countItems(response.data), isLoading: false });
         } catch (error: any) {
             set({ error: error.response?.data?.message || 'Failed to clear cart', isLoading: false });
             throw error;
@@ -79,7 +88,7 @@ export const useCartStore = create<CartState>((set, get) => ({
         set({ isLoading: true, error: null });
         try {
             const response = await api.post<Cart>('/cart/coupon', { code });
-            set({ cart: response.data, isLoading: false });
+            set({ cart: response.data, itemCount: countItems(response.data), isLoading: false });
         } catch (error: any) {
             set({ error: error.response?.data?.message || 'Failed to apply coupon', isLoading: false });
             throw error;
@@ -90,7 +99,7 @@ export const useCartStore = create<CartState>((set, get) => ({
         set({ isLoading: true, error: null });
         try {
             const response = await api.delete<Cart>('/cart/coupon');
-            set({ cart: response.data, isLoading: false });
+            set({ cart: response.data, itemCount: countItems(response.data), isLoading: false });
         } catch (error: any) {
             set({ error: error.response?.data?.message || 'Failed to remove coupon', isLoading: false });
             throw error;
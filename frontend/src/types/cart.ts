@@ -1,5 +1,8 @@
 export interface CartItem {
+    /** The product id; shared by lines of different variants of one product. */
     id: number;
+    /** Unique within the cart: "productId" or "productId:variantId". */
+    lineId: string;
     product: {
         id: number;
         name: string;
@@ -8,6 +11,13 @@ export interface CartItem {
         images: { imageUrl: string; isPrimary: boolean }[];
         stockQuantity: number;
     };
+    variant?: {
+        id: number;
+        size: string | null;
+        color: string | null;
+        priceOverride: number | null;
+        stockQuantity: number;
+    } | null;
     quantity: number;
     subtotal: number;
 }
@@ -23,3 +33,13 @@ export interface Cart {
         minOrderAmount: number | null;
     } | null;
 }
+
+/** Returned when adding to the cart, instead of the whole cart. */
+export interface CartSummary {
+    cartId: number;
+    productId: number;
+    variantId: number | null;
+    quantity: number;
+    lineCount: number;
+    totalQuantity: number;
+}
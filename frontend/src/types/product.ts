@@ -27,6 +27,19 @@ export interface Product {
     active: boolean;
 }
 
+// Listing view returned by /products; the full Product comes from /products/{id}
+export interface ProductSummary {
+    id: number;
+    name: string;
+    price: number;
+    salePrice?: number;
+    imageUrl?: string;
+    averageRating: number;
+    reviewCount: number;
+    inStock: boolean;
+    categoryName?: string;
+}
+
 export interface PaginatedResponse<T> {
     content: T[];
     totalElements: number;